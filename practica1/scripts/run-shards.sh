@@ -0,0 +1,26 @@
+#!/bin/sh
+# Levanta N nodos de HttpSocketServer en esta máquina con el inventario repartido.
+# HTTP en 8081, 8082, ...; protocolo entre nodos en 9101, 9102, ...
+# Uso (desde practica1/): scripts/run-shards.sh [N]    Ctrl+C detiene todos los nodos
+set -e
+N=${1:-3}
+
+mvn -B -q compile
+mvn -B -q dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+CP="target/classes:$(cat target/classpath.txt)"
+
+SHARDS=""
+i=0
+while [ $i -lt "$N" ]; do
+    SHARDS="${SHARDS:+$SHARDS,}localhost:$((9101 + i))"
+    i=$((i + 1))
+done
+
+trap 'kill 0' INT TERM EXIT
+i=0
+while [ $i -lt "$N" ]; do
+    java -Daccesslog.dir="logs/node$i" -cp "$CP" org.api.server.HttpSocketServer \
+        --port $((8081 + i)) --shard $i --shards "$SHARDS" &
+    i=$((i + 1))
+done
+wait
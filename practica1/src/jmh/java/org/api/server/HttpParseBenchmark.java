@@ -0,0 +1,67 @@
+package org.api.server;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cli.server.Product;
+import org.openjdk.jmh.annotations.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parseo de peticiones HTTP (parseHttpRequest) y serialización de un solo
+ * producto con ProductJsonWriter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpParseBenchmark {
+    static final byte[] GET_REQUEST = ("GET /api/search?q=lavanda HTTP/1.1\r\n"
+            + "Host: localhost:8081\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64)\r\n"
+            + "Accept: application/json\r\n"
+            + "Session-Id: user-123\r\n"
+            + "Connection: keep-alive\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+
+    static final byte[] POST_REQUEST = ("POST /api/cart HTTP/1.1\r\n"
+            + "Host: localhost:8081\r\n"
+            + "Content-Type: application/json\r\n"
+            + "Session-Id: user-123\r\n"
+            + "Content-Length: 23\r\n\r\n"
+            + "{\"id\":101,\"quantity\":2}").getBytes(StandardCharsets.UTF_8);
+
+    final ObjectMapper mapper = new ObjectMapper();
+    Product product;
+
+    @Setup
+    public void setup() {
+        product = new Product(501, "Lavanda", "Aromática", "Aromas Naturales",
+                "Planta aromática ideal para interiores y jardines", 15.0, 12, "/images/lavanda.jpeg");
+    }
+
+    @Benchmark
+    public HttpSocketServer.HttpRequest parseGet() throws IOException {
+        return HttpSocketServer.parseHttpRequest(reader(GET_REQUEST));
+    }
+
+    @Benchmark
+    public HttpSocketServer.HttpRequest parsePost() throws IOException {
+        return HttpSocketServer.parseHttpRequest(reader(POST_REQUEST));
+    }
+
+    @Benchmark
+    public byte[] productToJson() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        try (JsonGenerator g = mapper.getFactory().createGenerator(buffer)) {
+            ProductJsonWriter.write(g, product, ProductJsonWriter.ALL);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static RequestReader reader(byte[] request) {
+        return new RequestReader(new ByteArrayInputStream(request), null);
+    }
+}
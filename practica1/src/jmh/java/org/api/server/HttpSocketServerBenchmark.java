@@ -0,0 +1,67 @@
+package org.api.server;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.cli.server.CatalogFixtures;
+import org.cli.server.Items;
+import org.cli.server.Product;
+import org.openjdk.jmh.annotations.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialización del listado completo (como en /api/products) en función del tamaño
+ * del catálogo: árbol Jackson -> String (como antes) contra JsonGenerator en streaming.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpSocketServerBenchmark {
+    @Param({"6", "1000", "100000", "1000000"})
+    int catalogSize;
+
+    final ObjectMapper mapper = new ObjectMapper();
+    Items items;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        items = CatalogFixtures.catalog(catalogSize);
+    }
+
+    // Versión anterior: ArrayNode con un ObjectNode por producto y luego un String
+    @Benchmark
+    public String listingToTree() throws IOException {
+        ArrayNode array = mapper.createArrayNode();
+        for (Product p : items.getItems().values()) {
+            ObjectNode node = array.addObject();
+            node.put("id", p.getId());
+            node.put("name", p.getName());
+            node.put("type", p.getType());
+            node.put("brand", p.getBrand());
+            node.put("info", p.getInfo());
+            node.put("price", p.getPrice());
+            node.put("stock", p.getStock());
+            node.put("imageUrl", p.getImageUrl());
+        }
+        return mapper.writeValueAsString(array);
+    }
+
+    // Versión actual: JsonGenerator -> StreamingBody (el socket se sustituye por un stream nulo)
+    @Benchmark
+    public boolean listingStreaming() throws IOException {
+        StreamingBody body = new StreamingBody(OutputStream.nullOutputStream(),
+                (o, length, chunked, keepAlive) -> {}, true, true);
+        JsonGenerator g = mapper.getFactory().createGenerator(body);
+        g.writeStartArray();
+        for (Product p : items.getItems().values()) ProductJsonWriter.write(g, p, ProductJsonWriter.ALL);
+        g.writeEndArray();
+        g.close();
+        return body.keepAlive();
+    }
+}
@@ -0,0 +1,32 @@
+package org.cli.server;
+
+import java.util.SplittableRandom;
+
+/**
+ * Catálogos sintéticos para los benchmarks: mismos campos que plants.json,
+ * con nombres, marcas y tipos repetidos como en un catálogo real.
+ */
+public final class CatalogFixtures {
+    static final String[] NAMES = {"Orquídea", "Helecho", "Lirio", "Sansevieria", "Begonia", "Bonsái",
+            "Bambú", "Peonía", "Cactus", "Suculenta", "Aloe", "Lavanda", "Menta", "Romero", "Rosa",
+            "Tulipán", "Girasol", "Geranio", "Camellia", "Crisantemo"};
+    static final String[] BRANDS = {"Flores del Valle", "EcoPlant", "Florencia Co.", "GreenHouse Co.",
+            "Jardín Zen", "ZenHouse", "Vivero Verde", "Aromas Naturales", "Flora Bella", "TulipWorld"};
+    static final String[] TYPES = {"Interior", "Decorativa", "Suculenta", "Medicinal", "Aromática", "Exterior"};
+
+    private CatalogFixtures() {}
+
+    // Inventario con size productos (IDs desde 100); stock alto para no agotarse en los benchmarks
+    public static Items catalog(int size) {
+        SplittableRandom rnd = new SplittableRandom(42);
+        Items items = new Items();
+        for (int i = 0; i < size; i++) {
+            int id = 100 + i;
+            String name = NAMES[rnd.nextInt(NAMES.length)] + " " + (i / NAMES.length);
+            items.add(id, new Product(id, name, TYPES[rnd.nextInt(TYPES.length)],
+                    BRANDS[rnd.nextInt(BRANDS.length)], "Planta de prueba número " + i,
+                    5.0 + rnd.nextInt(4000) / 100.0, Integer.MAX_VALUE / 2, "/images/p" + id + ".jpeg"));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,41 @@
+package org.cli.server;
+
+import org.openjdk.jmh.annotations.*;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BusinessLogic.checkout con un carrito de cartSize productos apartados.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckoutBenchmark {
+    @Param({"6", "1000", "100000", "1000000"})
+    int catalogSize;
+
+    @Param({"5"})
+    int cartSize;
+
+    BusinessLogic logic;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        logic = new BusinessLogic(CatalogFixtures.catalog(catalogSize), new TreeMap<>());
+    }
+
+    // El checkout vacía el carrito: se vuelve a llenar antes de cada invocación
+    @Setup(Level.Invocation)
+    public void fillCart() {
+        for (int i = 0; i < cartSize; i++)
+            logic.addToCart(100 + (i * 7919) % catalogSize, 1);
+    }
+
+    @Benchmark
+    public BusinessLogic.CheckoutResult checkout() {
+        return logic.checkout();
+    }
+}
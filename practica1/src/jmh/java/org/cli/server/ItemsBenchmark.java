@@ -0,0 +1,69 @@
+package org.cli.server;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rutas calientes del motor de inventario: búsqueda por texto (desde el caché
+ * y sin él), por ID y listado por tipo, en función del tamaño del catálogo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemsBenchmark {
+    @Param({"6", "1000", "100000", "1000000"})
+    int catalogSize;
+
+    // Término de búsqueda y tipo a listar
+    @Param({"lavanda"})
+    String term;
+
+    @Param({"Interior"})
+    String type;
+
+    Items items;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        items = CatalogFixtures.catalog(catalogSize);
+        normalizedTerm = SearchIndex.normalize(term);
+        typoTerm = normalizedTerm.length() > 2
+                ? normalizedTerm.substring(0, 2) + normalizedTerm.substring(3) : normalizedTerm;
+    }
+
+    String normalizedTerm;
+    String typoTerm;
+
+    @Benchmark
+    public Map<Integer, Product> find() {
+        return items.find(term);
+    }
+
+    // Consulta que no está en el caché: recorre el índice invertido y ordena por relevancia
+    @Benchmark
+    public Map<Integer, Product> findUncached() {
+        return items.searchIndex().search(normalizedTerm);
+    }
+
+    // Con un error de dedo (trigramas + distancia de edición)
+    @Benchmark
+    public Map<Integer, Product> findTypoUncached() {
+        return items.searchIndex().search(typoTerm);
+    }
+
+    @Benchmark
+    public Map<Integer, Product> findById() {
+        return items.find(String.valueOf(100 + catalogSize / 2));
+    }
+
+    @Benchmark
+    public void findByType(Blackhole bh) {
+        // El índice devuelve una vista: se recorre para medir el costo completo del listado
+        for (Product p : items.findByType(type).values()) bh.consume(p);
+    }
+}
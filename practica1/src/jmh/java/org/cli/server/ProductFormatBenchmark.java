@@ -0,0 +1,29 @@
+package org.cli.server;
+
+import org.openjdk.jmh.annotations.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formato de texto de un producto (Product.toString), usado en cada línea
+ * de SEARCH y LIST del servidor CLI.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductFormatBenchmark {
+    Product product;
+
+    @Setup
+    public void setup() {
+        product = new Product(501, "Lavanda", "Aromática", "Aromas Naturales",
+                "Planta aromática ideal para interiores y jardines", 15.0, 12, "/images/lavanda.jpeg");
+    }
+
+    @Benchmark
+    public String toStringFormat() {
+        return product.toString();
+    }
+}
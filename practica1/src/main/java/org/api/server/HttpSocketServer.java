@@ -1,17 +1,29 @@
 package org.api.server;
 
+import org.cli.server.AccessLog;
+import org.cli.server.Inventory;
 import org.cli.server.Items;
 import org.cli.server.Product;
+import org.cli.server.SearchResults;
 import org.cli.server.BusinessLogic;
+import org.cli.server.ReplicaClient;
+import org.cli.server.ReplicationLog;
+import org.cli.server.ShardedInventory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.ServerSocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 /**
  * Servidor HTTP implementado sobre Sockets TCP (java.net.Socket)
@@ -29,22 +41,113 @@ import java.util.*;
  */
 public class HttpSocketServer {
     private static final int PORT = 8081;
+    // HTTP/1.1 persistente: tiempo máximo de espera entre peticiones y peticiones por conexión
+    private static final int KEEP_ALIVE_TIMEOUT_MS = 5000;
+    private static final int MAX_KEEP_ALIVE_REQUESTS = 1000;
+    // Protección contra clientes lentos: plazo para recibir la petición completa (headers y body,
+    // contado desde su primer byte) y tamaños máximos
+    private static final int REQUEST_DEADLINE_MS = 10_000;
+    private static final int MAX_REQUEST_LINE_BYTES = 8 * 1024;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    // Control de admisión: cola de accept acotada, conexiones simultáneas y por IP
+    // (ajustables con -Dhttp.maxConnections=... y -Dhttp.maxConnectionsPerIp=...)
+    private static final int ACCEPT_BACKLOG = 128;
+    private static final int MAX_CONNECTIONS = Integer.getInteger("http.maxConnections", 256);
+    private static final int MAX_CONNECTIONS_PER_IP = Integer.getInteger("http.maxConnectionsPerIp", 64);
+    private static final Semaphore connectionSlots = new Semaphore(MAX_CONNECTIONS);
+    private static final Map<InetAddress, Integer> connectionsPerIp = new ConcurrentHashMap<>();
+    // Límite de peticiones a /api/cart y /api/checkout (token bucket por Session-Id y por IP)
+    // (ajustable con -Dhttp.sessionRate=... y -Dhttp.ipRate=..., peticiones por segundo)
+    private static final int SESSION_RATE = Integer.getInteger("http.sessionRate", 20);
+    private static final int IP_RATE = Integer.getInteger("http.ipRate", 200);
+    private static final int RATE_LIMIT_KEYS = 100_000;
+    private static final RateLimiter<String> sessionLimiter =
+            new RateLimiter<>(SESSION_RATE, 2 * SESSION_RATE, RATE_LIMIT_KEYS);
+    private static final RateLimiter<InetAddress> ipLimiter =
+            new RateLimiter<>(IP_RATE, 2 * IP_RATE, RATE_LIMIT_KEYS);
+    // Rondas de peticiones sintéticas antes de abrir el puerto (-Dhttp.warmupRounds=0 lo desactiva)
+    private static final int WARMUP_ROUNDS = Integer.getInteger("http.warmupRounds", 300);
     private static final ObjectMapper mapper = new ObjectMapper();
-    private static Items items;
-    // Mapa de carritos por sesión (Session-Id del cliente)
-    private static final Map<String, Map<Integer, Integer>> carts = new HashMap<>();
+    private static Inventory items;
+    // Bitácora de accesos asíncrona (logs/http-access.log)
+    private static AccessLog accessLog;
+    // Modo réplica de solo lectura (null en el primario o en un servidor solo)
+    private static ReplicaClient replica;
+    // Suscriptores de /api/stream (cambios de existencias por Server-Sent Events)
+    private static StockStream stockStream;
+    // Mapa de carritos por sesión (Session-Id del cliente), compartido entre threads
+    private static final Map<String, Map<Integer, Integer>> carts = new ConcurrentHashMap<>();
 
+    /**
+     * java org.api.server.HttpSocketServer [--port 8081] [--shard I --shards HOST:PUERTO,HOST:PUERTO,...]
+     *                                      [--replication-port PUERTO] [--replica-of HOST:PUERTO]
+     *
+     * Con --shards el inventario se reparte entre varios procesos: este es el nodo I y
+     * cada HOST:PUERTO es el puerto del protocolo entre nodos (distinto del puerto HTTP)
+     * Con --replication-port este proceso es primario y envía sus cambios de existencias
+     * a las réplicas; con --replica-of es una réplica que solo atiende lecturas
+     * (con ambas, una réplica reenvía los cambios a otras réplicas)
+     * Con --warmup-only solo se hace el calentamiento y el proceso termina (para generar
+     * el archivo de AppCDS, ver el perfil appcds del pom.xml)
+     */
     public static void main(String[] args) throws Exception {
+        int port = PORT;
+        int shard = 0;
+        List<InetSocketAddress> shards = new ArrayList<>();
+        int replicationPort = 0;
+        InetSocketAddress primary = null;
+        boolean warmupOnly = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--shard" -> shard = Integer.parseInt(args[++i]);
+                case "--shards" -> {
+                    for (String node : args[++i].split(",")) shards.add(address(node));
+                }
+                case "--replication-port" -> replicationPort = Integer.parseInt(args[++i]);
+                case "--replica-of" -> primary = address(args[++i]);
+                case "--warmup-only" -> warmupOnly = true;
+                default -> throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+
         // Cargar inventario desde archivo JSON
-        items = new Items("/plants.json");
+        Items catalog = new Items("/plants.json");
+        System.out.println("Inventario cargado desde: " + catalog.source());
+
+        // CALENTAMIENTO: carga de clases, Jackson y JIT antes de aceptar clientes
+        warmUp(WARMUP_ROUNDS, catalog);
+        if (warmupOnly) return;
+        if (shards.isEmpty()) {
+            items = catalog;
+        } else {
+            items = ShardedInventory.start(catalog, shard, shards);
+            System.out.println("Inventario repartido: nodo " + shard + " de " + shards.size());
+        }
+        if (replicationPort != 0) {
+            ReplicationLog.start(catalog, replicationPort);
+            System.out.println("Primario: réplicas en el puerto " + replicationPort);
+        }
+        if (primary != null) {
+            replica = ReplicaClient.start(catalog, primary);
+            System.out.println("Réplica de solo lectura de " + primary);
+        }
+        accessLog = AccessLog.open("http");
+        stockStream = new StockStream();
+        items.addStockListener(stockStream);
 
         // ═══════════════════════════════════════════════════════════
         // SOCKET NIVEL TRANSPORTE (TCP) - Modelo OSI Capa 4
         // ═══════════════════════════════════════════════════════════
         // ServerSocket: Crea un socket de servidor que escucha conexiones TCP entrantes
         // El socket se vincula (bind) al puerto 8081 en todas las interfaces de red
-        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-            System.out.println("HTTP API running on port " + PORT + " (blocking sockets)");
+        // El backlog acota las conexiones completadas que esperan accept() en el kernel
+        // Se abre como ServerSocketChannel (en modo bloqueante, igual que un ServerSocket) para
+        // que cada Socket tenga su canal: /api/stream lo pasa a no bloqueante (ver StockStream)
+        try (ServerSocket serverSocket = ServerSocketChannel.open().socket()) {
+            serverSocket.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+            System.out.println("HTTP API running on port " + port + " (blocking sockets)");
 
             // Bucle infinito: el servidor acepta conexiones continuamente
             while (true) {
@@ -55,6 +158,13 @@ public class HttpSocketServer {
                 // 3. El ServerSocket sigue escuchando en el puerto 8081
                 Socket clientSocket = serverSocket.accept();
 
+                // ADMISIÓN: con el servidor saturado (o demasiadas conexiones de la misma IP)
+                // se responde 503 de inmediato en vez de crear otro thread
+                if (!admit(clientSocket)) {
+                    reject(clientSocket);
+                    continue;
+                }
+
                 // MANEJO CONCURRENTE: Cada cliente se maneja en un thread separado
                 // Esto permite atender múltiples clientes simultáneamente
                 // El socket del cliente se pasa al nuevo thread
@@ -63,6 +173,115 @@ public class HttpSocketServer {
         }
     }
 
+    /**
+     * CALENTAMIENTO: antes de abrir el puerto se atienden peticiones sintéticas sobre un
+     * catálogo desechable, para que la carga de clases, la introspección de Jackson y la
+     * compilación JIT ocurran aquí y no en las primeras peticiones reales.
+     *
+     * Recorre el mismo camino que handleClient (parseo, routeRequest y envío de la respuesta,
+     * a un stream que descarta los bytes), sin bitácora, sobre una copia de catalog; al terminar
+     * se olvidan los carritos, las cubetas del límite de peticiones y las métricas que dejó
+     */
+    private static void warmUp(int rounds, Items catalog) throws Exception {
+        if (rounds <= 0) return;
+        long start = System.nanoTime();
+        items = catalog.copy();
+        List<Product> products = new ArrayList<>(items.getItems().values());
+        OutputStream sink = OutputStream.nullOutputStream();
+        int requests = 0;
+
+        for (int i = 0; i < rounds && !products.isEmpty(); i++) {
+            Product p = products.get(i % products.size());
+            String session = "warmup-" + i;
+            String name = p.getName();
+            String[] raw = {
+                    warmUpRequest("GET", "/api/products", null, null),
+                    warmUpRequest("GET", "/api/products?limit=20&cursor=" + p.getId() + "&fields=id,name,price", null, null),
+                    warmUpRequest("GET", "/api/products?type=" + encode(p.getType()), null, null),
+                    warmUpRequest("GET", "/api/search?q=" + encode(name), null, null),
+                    warmUpRequest("GET", "/api/search?q=" + encode(name.substring(0, name.length() - 1)) + "&limit=5", null, null),
+                    warmUpRequest("POST", "/api/cart", session, "{\"id\":" + p.getId() + ",\"quantity\":1}"),
+                    warmUpRequest("PUT", "/api/cart", session, "{\"id\":" + p.getId() + ",\"quantity\":2}"),
+                    warmUpRequest("GET", "/api/cart", session, null),
+                    warmUpRequest("POST", "/api/checkout", session, "")
+            };
+            for (String r : raw) {
+                RequestReader in = new RequestReader(new ByteArrayInputStream(r.getBytes(StandardCharsets.UTF_8)), null);
+                sendHttpResponse(sink, routeRequest(parseHttpRequest(in)), true, true);
+                requests++;
+            }
+        }
+
+        items = null;
+        carts.clear();
+        sessionLimiter.clear();
+        ipLimiter.clear();
+        Metrics.reset();
+        System.out.printf("Calentamiento: %d peticiones en %d ms%n",
+                requests, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static String encode(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    private static String warmUpRequest(String method, String path, String session, String body) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(method).append(' ').append(path).append(" HTTP/1.1\r\nHost: localhost\r\n");
+        if (session != null) sb.append("Session-Id: ").append(session).append("\r\n");
+        if (body != null) {
+            sb.append("Content-Type: application/json\r\nContent-Length: ")
+              .append(body.getBytes(StandardCharsets.UTF_8).length).append("\r\n");
+        }
+        return sb.append("\r\n").append(body == null ? "" : body).toString();
+    }
+
+    // HOST:PUERTO
+    private static InetSocketAddress address(String hostPort) {
+        int colon = hostPort.lastIndexOf(':');
+        return new InetSocketAddress(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1)));
+    }
+
+    /**
+     * CONTROL DE ADMISIÓN: reserva un lugar global y uno para la IP del cliente
+     * @return false si se alcanzó alguno de los dos límites
+     */
+    private static boolean admit(Socket socket) {
+        if (!connectionSlots.tryAcquire()) return false;
+        int fromIp = connectionsPerIp.merge(socket.getInetAddress(), 1, Integer::sum);
+        if (fromIp > MAX_CONNECTIONS_PER_IP) {
+            release(socket);
+            return false;
+        }
+        return true;
+    }
+
+    // Libera los lugares reservados por admit()
+    private static void release(Socket socket) {
+        connectionsPerIp.computeIfPresent(socket.getInetAddress(), (ip, n) -> n == 1 ? null : n - 1);
+        connectionSlots.release();
+    }
+
+    // Respuesta 503 corta desde el thread de accept (cabe en el buffer del socket: no bloquea)
+    private static void reject(Socket socket) {
+        Metrics.rejectedConnections.increment();
+        try (socket) {
+            HttpResponse response = new HttpResponse(503, "{\"error\":\"Server busy\"}", "application/json");
+            response.headers.put("Retry-After", "1");
+            Metrics.CountingOutputStream out = new Metrics.CountingOutputStream(socket.getOutputStream());
+            sendHttpResponse(out, response);
+            socket.shutdownOutput();
+            logAccess(null, 503, out.count, 0);
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Registro en la bitácora (petición null = no se pudo parsear o no se admitió)
+    private static void logAccess(HttpRequest req, int status, long bytes, long nanos) {
+        if (accessLog == null) return;
+        accessLog.log(req != null ? req.method : null, req != null ? req.path : null, status, bytes, nanos);
+    }
+
     /**
      * Maneja la comunicación con UN cliente específico
      * Este método se ejecuta en un thread separado por cada conexión
@@ -73,32 +292,94 @@ public class HttpSocketServer {
         // ═══════════════════════════════════════════════════════════
         // STREAMS DEL SOCKET: Lectura y escritura de bytes
         // ═══════════════════════════════════════════════════════════
-        // BufferedReader: Para leer datos del cliente (del InputStream del socket)
-        // OutputStream: Para enviar datos al cliente
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             OutputStream out = socket.getOutputStream()) {
-
-            // PARSEO MANUAL DEL PROTOCOLO HTTP
-            // Lee los bytes del socket y los interpreta como HTTP request
-            HttpRequest request = parseHttpRequest(in);
-            if (request == null) {
-                sendError(out, 400, "Bad Request");
-                return;
+        // RequestReader: Lee la petición del InputStream del socket, con límites y plazos
+        // OutputStream: Para enviar datos al cliente; con buffer para que headers y body
+        // pequeños salgan en una sola escritura al socket
+        // Los streams cuentan los bytes leídos y escritos (métricas /metrics)
+        // (no se cierran aquí: cerrar un stream cierra el socket, y /api/stream lo deja abierto)
+        Metrics.connectionsAccepted.increment();
+        Metrics.activeConnections.increment();
+        boolean streaming = false;
+        try {
+            InputStream socketIn = new Metrics.CountingInputStream(socket.getInputStream());
+            Metrics.CountingOutputStream socketOut = new Metrics.CountingOutputStream(socket.getOutputStream());
+            OutputStream out = new BufferedOutputStream(socketOut, 8 * 1024);
+            RequestReader in = new RequestReader(socketIn, socket);
+
+            // CONEXIÓN PERSISTENTE (keep-alive): varias peticiones por la misma conexión TCP
+            // Si el cliente no envía otra petición en KEEP_ALIVE_TIMEOUT_MS, se cierra
+            for (int served = 0; served < MAX_KEEP_ALIVE_REQUESTS; served++) {
+                // Desde el primer byte corre un solo plazo para toda la petición: un cliente lento recibe 408
+                if (!in.awaitRequest(KEEP_ALIVE_TIMEOUT_MS, REQUEST_DEADLINE_MS)) return;   // el cliente cerró
+
+                // PARSEO MANUAL DEL PROTOCOLO HTTP
+                // Lee los bytes del socket y los interpreta como HTTP request
+                HttpRequest request;
+                try {
+                    request = parseHttpRequest(in);
+                    in.clearDeadline();
+                } catch (HttpError e) {
+                    Metrics.parseFailures.increment();
+                    long sentBefore = socketOut.count;
+                    sendError(out, e.status, e.getMessage());
+                    logAccess(null, e.status, socketOut.count - sentBefore, 0);
+                    return;
+                } catch (SocketTimeoutException e) {
+                    Metrics.requestTimeouts.increment();
+                    long sentBefore = socketOut.count;
+                    sendError(out, 408, "Request Timeout");
+                    logAccess(null, 408, socketOut.count - sentBefore, 0);
+                    return;
+                }
+                if (request == null) return;    // conexión cerrada a mitad de la petición
+                request.clientAddress = socket.getInetAddress();
+                long start = System.nanoTime();
+                long sentBefore = socketOut.count;
+
+                // STREAM: la conexión pasa a StockStream, que escribe los eventos sin un thread por cliente
+                if ("/api/stream".equals(request.path) && "GET".equals(request.method)) {
+                    streaming = stockStream != null && stockStream.subscribe(socket, out);
+                    int status = streaming ? 200 : 503;
+                    if (!streaming) {
+                        HttpResponse busy = new HttpResponse(503, "{\"error\":\"Too many subscribers\"}", "application/json");
+                        busy.headers.put("Retry-After", "5");
+                        sendHttpResponse(out, busy);
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    Metrics.record(Metrics.Route.STREAM, status, elapsed);
+                    logAccess(request, status, socketOut.count - sentBefore, elapsed);
+                    return;
+                }
+
+                // LÓGICA DE NEGOCIO: Procesa la petición
+                HttpResponse response = routeRequest(request);
+
+                // CONSTRUCCIÓN MANUAL DE LA RESPUESTA HTTP
+                // Escribe los bytes al socket siguiendo el formato HTTP
+                // (chunked solo existe en HTTP/1.1; si una respuesta HTTP/1.0 no cabe en el
+                // buffer, el fin del body lo marca el cierre de la conexión)
+                boolean keepAlive = request.keepAlive() && served + 1 < MAX_KEEP_ALIVE_REQUESTS;
+                keepAlive = sendHttpResponse(out, response, keepAlive, "HTTP/1.1".equals(request.version));
+                long elapsed = System.nanoTime() - start;
+                Metrics.record(Metrics.Route.of(request.path), response.statusCode, elapsed);
+                logAccess(request, response.statusCode, socketOut.count - sentBefore, elapsed);
+                if (!keepAlive) return;
             }
 
-            // LÓGICA DE NEGOCIO: Procesa la petición
-            HttpResponse response = routeRequest(request);
-
-            // CONSTRUCCIÓN MANUAL DE LA RESPUESTA HTTP
-            // Escribe los bytes al socket siguiendo el formato HTTP
-            sendHttpResponse(out, response);
-
+        } catch (SocketTimeoutException e) {
+            // Conexión inactiva: se cierra sin ruido
         } catch (Exception e) {
+            Metrics.internalErrors.increment();
             e.printStackTrace();
         } finally {
+            // Un suscriptor de /api/stream deja de contar como conexión atendida por un thread
+            Metrics.activeConnections.decrement();
+            release(socket);
             // CIERRE DEL SOCKET: Libera los recursos de red
             // Envía FIN al cliente (cierre graceful de TCP)
-            try { socket.close(); } catch (IOException ignored) {}
+            if (!streaming) {
+                try { socket.close(); } catch (IOException ignored) {}
+            }
         }
     }
 
@@ -114,18 +395,24 @@ public class HttpSocketServer {
      * \r\n                                     <- Línea vacía
      * {"id":101,"quantity":2}                 <- Body (opcional)
      */
-    private static HttpRequest parseHttpRequest(BufferedReader in) throws IOException {
+    static HttpRequest parseHttpRequest(RequestReader in) throws IOException {
         // LEE PRIMERA LÍNEA DEL SOCKET: Request Line
         // Ejemplo: "GET /api/products HTTP/1.1"
-        String requestLine = in.readLine();
-        if (requestLine == null || requestLine.isEmpty()) return null;
+        String requestLine;
+        try {
+            requestLine = in.readLine(MAX_REQUEST_LINE_BYTES);
+        } catch (RequestReader.LineTooLongException e) {
+            throw new HttpError(414, "URI Too Long");
+        }
+        if (requestLine == null) return null;
 
         // PARSEA REQUEST LINE: Método, Path, Versión HTTP
         String[] parts = requestLine.split(" ");
-        if (parts.length < 3) return null;
+        if (parts.length < 3) throw new HttpError(400, "Bad Request");
 
         HttpRequest req = new HttpRequest();
         req.method = parts[0];  // GET, POST, PUT, DELETE, OPTIONS
+        req.version = parts[2]; // HTTP/1.0 o HTTP/1.1
 
         // PARSEA PATH Y QUERY STRING
         // Ejemplo: "/api/products?type=Interior" -> path="/api/products", query="type=Interior"
@@ -139,9 +426,19 @@ public class HttpSocketServer {
         }
 
         // LEE HEADERS DEL SOCKET línea por línea
-        // Los headers terminan con una línea vacía (\r\n)
+        // Los headers terminan con una línea vacía (\r\n); en total no pueden pasar de MAX_HEADER_BYTES
+        int headerBudget = MAX_HEADER_BYTES;
         String line;
-        while ((line = in.readLine()) != null && !line.isEmpty()) {
+        while (true) {
+            try {
+                line = in.readLine(headerBudget);
+            } catch (RequestReader.LineTooLongException e) {
+                throw new HttpError(431, "Request Header Fields Too Large");
+            }
+            if (line == null) return null;
+            if (line.isEmpty()) break;
+            headerBudget -= in.lastLineBytes();
+
             int colonIndex = line.indexOf(':');
             if (colonIndex > 0) {
                 // Parsea "Header-Name: value"
@@ -152,15 +449,22 @@ public class HttpSocketServer {
         }
 
         // LEE BODY DEL SOCKET (solo para POST/PUT)
-        // El tamaño del body viene en el header "Content-Length"
+        // El tamaño del body (en bytes) viene en el header "Content-Length"
         if ("POST".equals(req.method) || "PUT".equals(req.method)) {
             String contentLength = req.headers.get("content-length");
             if (contentLength != null) {
-                int length = Integer.parseInt(contentLength);
-                // Lee exactamente 'length' bytes del socket
-                char[] bodyChars = new char[length];
-                in.read(bodyChars, 0, length);
-                req.body = new String(bodyChars);
+                int length;
+                try {
+                    length = Integer.parseInt(contentLength);
+                } catch (NumberFormatException e) {
+                    throw new HttpError(400, "Bad Request");
+                }
+                if (length < 0) throw new HttpError(400, "Bad Request");
+                if (length > MAX_BODY_BYTES) throw new HttpError(413, "Payload Too Large");
+
+                byte[] body = in.readBytes(length);
+                if (body == null) return null;
+                req.body = new String(body, StandardCharsets.UTF_8);
             }
         }
         return req;
@@ -179,70 +483,176 @@ public class HttpSocketServer {
             // Manejo de imágenes estáticas
             if (req.path.startsWith("/images/")) return handleImages(req);
 
+            // RÉPLICA: el carrito y la compra se atienden en el primario;
+            // las lecturas solo mientras el atraso esté acotado
+            if (replica != null) {
+                HttpResponse refused = checkReplica(req);
+                if (refused != null) return refused;
+            }
+
+            // LÍMITE DE PETICIONES: el carrito y la compra compiten por el stock
+            if ("/api/cart".equals(req.path) || "/api/checkout".equals(req.path)) {
+                HttpResponse limited = checkRateLimit(req);
+                if (limited != null) return limited;
+            }
+
             // API REST endpoints
             return switch (req.path) {
                 case "/api/products" -> handleProducts(req);
                 case "/api/search" -> handleSearch(req);
                 case "/api/cart" -> handleCart(req);
                 case "/api/checkout" -> handleCheckout(req);
+                case "/metrics" -> handleMetrics(req);
+                case "/api/stream" -> new HttpResponse(405, "{\"error\":\"Method not allowed\"}", "application/json");
                 default -> new HttpResponse(404, "{\"error\":\"Not Found\"}", "application/json");
             };
         } catch (Exception e) {
+            Metrics.internalErrors.increment();
             e.printStackTrace();
             return new HttpResponse(500, "{\"error\":\"Internal error\"}", "application/json");
         }
     }
 
+    /**
+     * RÉPLICA DE SOLO LECTURA
+     * @return 403 para el carrito y la compra, 503 si las existencias están demasiado atrasadas,
+     *         o null si la petición puede seguir
+     */
+    private static HttpResponse checkReplica(HttpRequest req) {
+        if ("/api/cart".equals(req.path) || "/api/checkout".equals(req.path))
+            return new HttpResponse(403, "{\"error\":\"Read-only replica\"}", "application/json");
+        if ("/metrics".equals(req.path) || replica.fresh()) return null;
+
+        HttpResponse response = new HttpResponse(503, "{\"error\":\"Replica is behind the primary\"}", "application/json");
+        response.headers.put("Retry-After", "1");
+        return response;
+    }
+
+    /**
+     * LÍMITE DE PETICIONES por sesión y por IP
+     * @return respuesta 429 con Retry-After, o null si la petición puede seguir
+     */
+    private static HttpResponse checkRateLimit(HttpRequest req) {
+        // Primero la IP: así una IP que inventa Session-Id no llena la tabla de sesiones (ni
+        // desplaza las legítimas); solo se crea cubeta de sesión si la IP pasó.
+        // Sin Session-Id solo aplica el límite de la IP
+        long waitNanos = req.clientAddress != null ? ipLimiter.acquire(req.clientAddress) : 0;
+        String sessionId = req.headers.get("session-id");
+        if (waitNanos == 0 && sessionId != null) waitNanos = sessionLimiter.acquire(sessionId);
+        if (waitNanos == 0) return null;
+
+        Metrics.rateLimited.increment();
+        HttpResponse response = new HttpResponse(429, "{\"error\":\"Too many requests\"}", "application/json");
+        response.headers.put("Retry-After", String.valueOf(Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L)));
+        return response;
+    }
+
     /**
      * ENDPOINT: GET /api/products o GET /api/products?type=Interior
      * Retorna lista de productos en formato JSON
+     *
+     * PAGINACIÓN (opcional): ?limit=50&cursor=<último id de la página anterior>
+     * El siguiente cursor se envía en el header X-Next-Cursor (si hay más resultados)
+     * PROYECCIÓN (opcional): ?fields=id,name,price
      */
     private static HttpResponse handleProducts(HttpRequest req) throws Exception {
         if (!"GET".equals(req.method))
             return new HttpResponse(405, "{\"error\":\"Method not allowed\"}", "application/json");
 
-        // IDENTIFICACIÓN DE SESIÓN: Cada cliente tiene su propio carrito
-        // El navegador envía un header "Session-Id" para identificarse
-        String sessionId = req.headers.getOrDefault("session-id", "default");
-        Map<Integer, Integer> cart = carts.computeIfAbsent(sessionId, k -> new TreeMap<>());
-        BusinessLogic logic = new BusinessLogic(items, cart);
+        PageRequest page = PageRequest.of(req);
+        Integer after = page == null ? null : page.idCursor();
+        if (page == null || (page.cursor != null && after == null))
+            return new HttpResponse(400, "{\"error\":\"Invalid limit, cursor or fields\"}", "application/json");
 
         // FILTRADO: Por tipo de producto si se especifica en query string
-        Map<Integer, Product> products;
-        if (req.query != null && req.query.startsWith("type=")) {
-            String type = URLDecoder.decode(req.query.substring(5), StandardCharsets.UTF_8);
-            products = logic.listProductsByType(type);
-        } else {
-            products = logic.listAllProducts();
-        }
+        // Los índices están ordenados por ID: el cursor es un tailMap, sin recorrer lo anterior
+        String type = req.param("type");
+        NavigableMap<Integer, Product> products = type != null ? items.findByType(type) : items.getItems();
+        if (after != null) products = products.tailMap(after, false);
 
-        // SERIALIZACIÓN A JSON: Convierte objetos Java a JSON
-        ArrayNode jsonArray = mapper.createArrayNode();
-        for (Product p : products.values()) jsonArray.add(productToJson(p));
-        return new HttpResponse(200, mapper.writeValueAsString(jsonArray), "application/json");
+        return writeProducts(products.values(), page, (i, last) -> String.valueOf(last.getId()));
     }
 
     /**
      * ENDPOINT: GET /api/search?q=cactus
-     * Busca productos por nombre, marca o ID
+     * Busca productos por nombre, marca, tipo, descripción o ID, del más al menos relevante
+     * (admite limit, cursor y fields como /api/products)
+     *
+     * El cursor es "<posición>.<id>" del último producto enviado: la página siguiente empieza
+     * en la posición sin recorrer las anteriores. Si el catálogo cambió y el producto se movió
+     * se sigue después de su nueva posición; si ya no está en los resultados, 400
      */
     private static HttpResponse handleSearch(HttpRequest req) throws Exception {
         if (!"GET".equals(req.method))
             return new HttpResponse(405, "{\"error\":\"Method not allowed\"}", "application/json");
-        if (req.query == null || !req.query.startsWith("q="))
+        String term = req.param("q");
+        if (term == null)
             return new HttpResponse(400, "{\"error\":\"Missing query\"}", "application/json");
 
-        String sessionId = req.headers.getOrDefault("session-id", "default");
-        Map<Integer, Integer> cart = carts.computeIfAbsent(sessionId, k -> new TreeMap<>());
-        BusinessLogic logic = new BusinessLogic(items, cart);
+        PageRequest page = PageRequest.of(req);
+        if (page == null)
+            return new HttpResponse(400, "{\"error\":\"Invalid limit, cursor or fields\"}", "application/json");
+
+        SearchResults results = items.find(term);
+        int from = 0;
+        if (page.cursor != null) {
+            int rank = resumeRank(results, page.cursor);
+            if (rank < 0)
+                return new HttpResponse(400, "{\"error\":\"Invalid cursor\"}", "application/json");
+            from = rank + 1;
+        }
+        int first = from;
+        return writeProducts(results.from(from), page, (i, last) -> (first + i) + "." + last.getId());
+    }
 
-        // DECODIFICACIÓN URL: "cactus%20espiral" -> "cactus espiral"
-        String term = URLDecoder.decode(req.query.substring(2), StandardCharsets.UTF_8);
-        Map<Integer, Product> results = logic.searchProducts(term);
+    // Posición del producto del cursor "<posición>.<id>" en los resultados (-1 si es inválido o ya no está)
+    private static int resumeRank(SearchResults results, String cursor) {
+        int dot = cursor.indexOf('.');
+        if (dot <= 0) return -1;
+        int rank, id;
+        try {
+            rank = Integer.parseInt(cursor, 0, dot, 10);
+            id = Integer.parseInt(cursor, dot + 1, cursor.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (rank >= 0 && rank < results.size() && results.at(rank).getId() == id) return rank;
+        return results.rankOf(id);
+    }
+
+    // Cursor de la página siguiente a partir del último producto enviado (index: su posición en la página)
+    private interface CursorOf {
+        String of(int index, Product last);
+    }
+
+    /**
+     * SERIALIZACIÓN EN STREAMING: la página se escribe con JsonGenerator directo al socket
+     * al enviar la respuesta, sin construir un ArrayNode, un String ni un byte[] completo
+     *
+     * Con limit solo se guardan las referencias de la página (máximo MAX_LIMIT) para saber,
+     * antes de escribir los headers, si hay más resultados (X-Next-Cursor)
+     */
+    private static HttpResponse writeProducts(Collection<Product> products, PageRequest page, CursorOf cursorOf) {
+        HttpResponse response = new HttpResponse(200, "", "application/json");
+        Collection<Product> rows = products;
+
+        if (page.limit != Integer.MAX_VALUE) {
+            List<Product> slice = new ArrayList<>(Math.min(page.limit, 64));
+            Iterator<Product> it = products.iterator();
+            while (slice.size() < page.limit && it.hasNext()) slice.add(it.next());
+            if (it.hasNext() && !slice.isEmpty())
+                response.headers.put("X-Next-Cursor", cursorOf.of(slice.size() - 1, slice.get(slice.size() - 1)));
+            rows = slice;
+        }
 
-        ArrayNode jsonArray = mapper.createArrayNode();
-        for (Product p : results.values()) jsonArray.add(productToJson(p));
-        return new HttpResponse(200, mapper.writeValueAsString(jsonArray), "application/json");
+        Collection<Product> body = rows;
+        int fields = page.fields;
+        response.json = g -> {
+            g.writeStartArray();
+            for (Product p : body) ProductJsonWriter.write(g, p, fields);
+            g.writeEndArray();
+        };
+        return response;
     }
 
     /**
@@ -254,7 +664,7 @@ public class HttpSocketServer {
     private static HttpResponse handleCart(HttpRequest req) throws Exception {
         String sessionId = req.headers.getOrDefault("session-id", "default");
         Map<Integer, Integer> cart = carts.computeIfAbsent(sessionId, k -> new TreeMap<>());
-        BusinessLogic logic = new BusinessLogic(items, cart);
+        BusinessLogic logic = new BusinessLogic(items, cart, sessionId);
 
         return switch (req.method) {
             case "GET" -> handleGetCart(logic);
@@ -267,19 +677,24 @@ public class HttpSocketServer {
     /**
      * GET /api/cart: Retorna contenido del carrito
      */
-    private static HttpResponse handleGetCart(BusinessLogic logic) throws Exception {
+    private static HttpResponse handleGetCart(BusinessLogic logic) {
+        // getCart() devuelve una copia: se puede recorrer al enviar sin bloquear el carrito
         Map<Integer, Integer> cart = logic.getCart();
-        ArrayNode jsonArray = mapper.createArrayNode();
-
-        for (Map.Entry<Integer, Integer> entry : cart.entrySet()) {
-            Product p = logic.getProductById(entry.getKey());
-            if (p != null) {
-                ObjectNode item = productToJson(p);
-                item.put("quantity", entry.getValue());
-                jsonArray.add(item);
+        HttpResponse response = new HttpResponse(200, "", "application/json");
+        response.json = g -> {
+            g.writeStartArray();
+            for (Map.Entry<Integer, Integer> entry : cart.entrySet()) {
+                Product p = logic.getProductById(entry.getKey());
+                if (p != null) {
+                    g.writeStartObject();
+                    ProductJsonWriter.writeFields(g, p, ProductJsonWriter.ALL);
+                    g.writeNumberField("quantity", entry.getValue());
+                    g.writeEndObject();
+                }
             }
-        }
-        return new HttpResponse(200, mapper.writeValueAsString(jsonArray), "application/json");
+            g.writeEndArray();
+        };
+        return response;
     }
 
     /**
@@ -295,7 +710,9 @@ public class HttpSocketServer {
         BusinessLogic.AddToCartResult result = logic.addToCart(id, qty);
 
         if (!result.success) {
+            if (result.message.contains("no está disponible")) return inventoryUnavailable(result.message);
             int statusCode = result.message.contains("no encontrado") ? 404 : 400;
+            if (result.message.contains("existencias")) Metrics.stockConflicts.increment();
             return new HttpResponse(statusCode,
                     "{\"error\":\"" + result.message + "\"}",
                     "application/json");
@@ -316,7 +733,9 @@ public class HttpSocketServer {
         int qty = (int) data.get("quantity");
 
         BusinessLogic.UpdateCartResult result = logic.updateCart(id, qty);
+        if (!result.success && result.actualQuantity != null) Metrics.stockConflicts.increment();
 
+        if (!result.success && result.message.contains("no está disponible")) return inventoryUnavailable(result.message);
         if (!result.success && result.message.contains("no se encuentra")) {
             return new HttpResponse(404,
                     "{\"error\":\"" + result.message + "\"}",
@@ -328,6 +747,13 @@ public class HttpSocketServer {
                 "application/json");
     }
 
+    // Inventario repartido: el nodo dueño del producto no respondió (se puede reintentar)
+    private static HttpResponse inventoryUnavailable(String message) {
+        HttpResponse response = new HttpResponse(503, "{\"error\":\"" + message + "\"}", "application/json");
+        response.headers.put("Retry-After", "1");
+        return response;
+    }
+
     /**
      * POST /api/checkout: Finalizar compra
      * Retorna un ticket con los productos comprados
@@ -342,7 +768,7 @@ public class HttpSocketServer {
         if (cart == null || cart.isEmpty())
             return new HttpResponse(400, "{\"error\":\"Cart is empty\"}", "application/json");
 
-        BusinessLogic logic = new BusinessLogic(items, cart);
+        BusinessLogic logic = new BusinessLogic(items, cart, sessionId);
         BusinessLogic.CheckoutResult result = logic.checkout();
 
         if (!result.success) {
@@ -351,25 +777,36 @@ public class HttpSocketServer {
                     "application/json");
         }
 
-        // CONSTRUCCIÓN DEL TICKET EN JSON
-        ObjectNode receipt = mapper.createObjectNode();
-        receipt.put("datetime", result.datetime);
-
-        ArrayNode itemsArray = mapper.createArrayNode();
-        for (BusinessLogic.CheckoutItem item : result.items) {
-            ObjectNode itemNode = mapper.createObjectNode();
-            itemNode.put("id", item.id);
-            itemNode.put("name", item.name);
-            itemNode.put("quantity", item.quantity);
-            itemNode.put("price", item.price);
-            itemNode.put("subtotal", item.subtotal);
-            itemsArray.add(itemNode);
-        }
-
-        receipt.set("items", itemsArray);
-        receipt.put("total", result.total);
+        // CONSTRUCCIÓN DEL TICKET EN JSON (se escribe al enviar la respuesta)
+        HttpResponse response = new HttpResponse(200, "", "application/json");
+        response.json = g -> {
+            g.writeStartObject();
+            g.writeStringField("datetime", result.datetime);
+            g.writeArrayFieldStart("items");
+            for (BusinessLogic.CheckoutItem item : result.items) {
+                g.writeStartObject();
+                g.writeNumberField("id", item.id);
+                g.writeStringField("name", item.name);
+                g.writeNumberField("quantity", item.quantity);
+                g.writeNumberField("price", item.price);
+                g.writeNumberField("subtotal", item.subtotal);
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeNumberField("total", result.total);
+            g.writeEndObject();
+        };
+        return response;
+    }
 
-        return new HttpResponse(200, mapper.writeValueAsString(receipt), "application/json");
+    /**
+     * ENDPOINT: GET /metrics
+     * Contadores e histogramas del servidor en formato de texto de Prometheus
+     */
+    private static HttpResponse handleMetrics(HttpRequest req) {
+        if (!"GET".equals(req.method))
+            return new HttpResponse(405, "{\"error\":\"Method not allowed\"}", "application/json");
+        return new HttpResponse(200, Metrics.render(accessLog, replica), "text/plain; version=0.0.4; charset=utf-8");
     }
 
     /**
@@ -402,42 +839,95 @@ public class HttpSocketServer {
      * Formato HTTP Response:
      * HTTP/1.1 200 OK\r\n                      <- Status line
      * Content-Type: application/json\r\n       <- Headers
-     * Content-Length: 123\r\n
+     * Content-Length: 123\r\n                  <- o Transfer-Encoding: chunked
      * Access-Control-Allow-Origin: *\r\n
      * \r\n                                      <- Línea vacía
      * {"id":101,"name":"Cactus"}              <- Body
+     *
+     * @return true si la conexión puede seguir abierta para otra petición
      */
-    private static void sendHttpResponse(OutputStream out, HttpResponse response) throws IOException {
-        // PrintWriter: Para escribir texto al socket
-        PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), false);
+    private static boolean sendHttpResponse(OutputStream out, HttpResponse response) throws IOException {
+        return sendHttpResponse(out, response, false, false);
+    }
+
+    private static boolean sendHttpResponse(OutputStream out, HttpResponse response,
+                                            boolean keepAlive, boolean chunkedAllowed) throws IOException {
+        // BODY EN STREAMING: el generador escribe a un buffer reutilizable que decide
+        // entre Content-Length (si todo cupo) y chunked (si no) al momento de enviar
+        if (response.json != null) {
+            StreamingBody body = new StreamingBody(out,
+                    (o, length, chunked, alive) -> writeHead(o, response, length, chunked, alive),
+                    keepAlive, chunkedAllowed);
+            // Sin try-with-resources: si el handler falla no se debe cerrar (y enviar) un body a medias
+            JsonGenerator g = mapper.getFactory().createGenerator(body);
+            try {
+                response.json.write(g);
+            } catch (Exception e) {
+                if (body.broken()) throw e;     // falló el socket: el cliente se fue
+                // FALLÓ QUIEN GENERA EL BODY (fuera de routeRequest): error interno
+                Metrics.internalErrors.increment();
+                e.printStackTrace();
+                response.statusCode = 500;
+                if (body.headSent()) {
+                    // Ya salieron headers y parte del body: se corta sin el chunk final y se cierra
+                    body.abort();
+                    return false;
+                }
+                // Todavía no salió nada: lo generado se descarta y se responde 500
+                HttpResponse error = new HttpResponse(500, "{\"error\":\"Internal error\"}", "application/json");
+                return sendHttpResponse(out, error, keepAlive, chunkedAllowed);
+            }
+            g.close();      // cierra también el StreamingBody: envía lo que falte
+            return body.keepAlive();
+        }
+
+        // BODY YA EN MEMORIA: texto (JSON) o binario (imagen)
+        byte[] body = response.binaryData != null
+                ? response.binaryData
+                : response.body.getBytes(StandardCharsets.UTF_8);
+        writeHead(out, response, body.length, false, keepAlive);
+        out.write(body);
+        out.flush();
+        return keepAlive;
+    }
+
+    // Status line y headers; contentLength = -1 cuando el body va en chunks o hasta el cierre
+    private static void writeHead(OutputStream out, HttpResponse response, long contentLength,
+                                  boolean chunked, boolean keepAlive) throws IOException {
+        StringBuilder head = new StringBuilder(512);
 
         // STATUS LINE: "HTTP/1.1 200 OK"
-        writer.write("HTTP/1.1 " + response.statusCode + " " + getStatusText(response.statusCode) + "\r\n");
+        head.append("HTTP/1.1 ").append(response.statusCode).append(' ')
+            .append(getStatusText(response.statusCode)).append("\r\n");
+
+        // HEADER Connection: indica si el socket sigue abierto para otra petición
+        if (keepAlive) {
+            head.append("Connection: keep-alive\r\n");
+            head.append("Keep-Alive: timeout=").append(KEEP_ALIVE_TIMEOUT_MS / 1000).append("\r\n");
+        } else {
+            head.append("Connection: close\r\n");
+        }
 
         // HEADERS CORS: Permiten peticiones desde navegadores de otros orígenes
-        writer.write("Access-Control-Allow-Origin: *\r\n");
-        writer.write("Access-Control-Allow-Methods: GET, POST, PUT, DELETE, OPTIONS\r\n");
-        writer.write("Access-Control-Allow-Headers: Content-Type, Session-Id\r\n");
+        head.append("Access-Control-Allow-Origin: *\r\n");
+        head.append("Access-Control-Allow-Methods: GET, POST, PUT, DELETE, OPTIONS\r\n");
+        head.append("Access-Control-Allow-Headers: Content-Type, Session-Id\r\n");
+        head.append("Access-Control-Expose-Headers: X-Next-Cursor, Retry-After\r\n");
+
+        // HEADERS PROPIOS DE LA RESPUESTA (p. ej. X-Next-Cursor)
+        for (Map.Entry<String, String> h : response.headers.entrySet()) {
+            head.append(h.getKey()).append(": ").append(h.getValue()).append("\r\n");
+        }
 
         // HEADER Content-Type: Indica formato del body
-        writer.write("Content-Type: " + response.contentType + "\r\n");
-
-        // ENVÍA BODY: Puede ser texto (JSON) o binario (imagen)
-        if (response.binaryData != null) {
-            // DATOS BINARIOS (imágenes)
-            writer.write("Content-Length: " + response.binaryData.length + "\r\n");
-            writer.write("\r\n");  // Línea vacía = fin de headers
-            writer.flush();
-            out.write(response.binaryData);  // Escribe bytes al socket
-            out.flush();
-        } else {
-            // DATOS DE TEXTO (JSON)
-            byte[] bodyBytes = response.body.getBytes(StandardCharsets.UTF_8);
-            writer.write("Content-Length: " + bodyBytes.length + "\r\n");
-            writer.write("\r\n");  // Línea vacía = fin de headers
-            writer.write(response.body);
-            writer.flush();
-        }
+        head.append("Content-Type: ").append(response.contentType).append("\r\n");
+
+        // TAMAÑO DEL BODY: conocido, en chunks, o hasta que se cierre la conexión
+        if (chunked) head.append("Transfer-Encoding: chunked\r\n");
+        else if (contentLength >= 0) head.append("Content-Length: ").append(contentLength).append("\r\n");
+        head.append("\r\n");  // Línea vacía = fin de headers
+
+        out.write(head.toString().getBytes(StandardCharsets.UTF_8));
     }
 
     /**
@@ -461,46 +951,125 @@ public class HttpSocketServer {
             case 400 -> "Bad Request";
             case 404 -> "Not Found";
             case 405 -> "Method Not Allowed";
+            case 408 -> "Request Timeout";
+            case 413 -> "Payload Too Large";
+            case 414 -> "URI Too Long";
+            case 429 -> "Too Many Requests";
+            case 431 -> "Request Header Fields Too Large";
             case 500 -> "Internal Server Error";
+            case 503 -> "Service Unavailable";
             default -> "Unknown";
         };
     }
 
-    /**
-     * Convierte un objeto Product a JSON
-     */
-    private static ObjectNode productToJson(Product p) {
-        ObjectNode node = mapper.createObjectNode();
-        node.put("id", p.getId());
-        node.put("name", p.getName());
-        node.put("type", p.getType());
-        node.put("brand", p.getBrand());
-        node.put("info", p.getInfo());
-        node.put("price", p.getPrice());
-        node.put("stock", p.getStock());
-        node.put("imageUrl", p.getImageUrl());
-        return node;
-    }
-
     /**
      * ESTRUCTURA DE DATOS: Representa un HTTP Request parseado
      */
     static class HttpRequest {
         String method;       // GET, POST, PUT, DELETE, OPTIONS
+        String version;      // HTTP/1.1
         String path;         // /api/products
         String query;        // type=Interior (sin el ?)
         String body = "";    // {"id":101,"quantity":2}
         Map<String, String> headers = new HashMap<>();  // Header-Name -> value
+        Map<String, String> params;                     // query string decodificado (se parsea al usarlo)
+        InetAddress clientAddress;                      // IP del cliente (límite de peticiones)
+
+        // Valor de un parámetro del query string (?type=Interior&limit=20), ya decodificado
+        String param(String name) {
+            if (params == null) {
+                params = new HashMap<>();
+                if (query != null) {
+                    for (String pair : query.split("&")) {
+                        if (pair.isEmpty()) continue;
+                        int eq = pair.indexOf('=');
+                        String key = eq == -1 ? pair : pair.substring(0, eq);
+                        String value = eq == -1 ? "" : pair.substring(eq + 1);
+                        params.putIfAbsent(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                                URLDecoder.decode(value, StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            return params.get(name);
+        }
+
+        // HTTP/1.1 mantiene la conexión salvo "Connection: close"; HTTP/1.0 solo con "keep-alive"
+        boolean keepAlive() {
+            String connection = headers.getOrDefault("connection", "");
+            if ("HTTP/1.1".equals(version)) return !connection.equalsIgnoreCase("close");
+            return connection.equalsIgnoreCase("keep-alive");
+        }
+    }
+
+    /**
+     * Petición que no se puede atender: se responde con este código y se cierra la conexión
+     */
+    static class HttpError extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * ESTRUCTURA DE DATOS: Paginación y proyección pedidas en el query string
+     */
+    static class PageRequest {
+        static final int MAX_LIMIT = 1000;
+
+        int limit = Integer.MAX_VALUE;   // sin limit: todos los resultados
+        String cursor;                   // X-Next-Cursor de la página anterior (cada endpoint lo interpreta)
+        int fields = ProductJsonWriter.ALL;
+
+        // null si algún parámetro es inválido
+        static PageRequest of(HttpRequest req) {
+            PageRequest page = new PageRequest();
+            try {
+                String limit = req.param("limit");
+                if (limit != null) {
+                    page.limit = Integer.parseInt(limit);
+                    if (page.limit <= 0) return null;
+                    page.limit = Math.min(page.limit, MAX_LIMIT);
+                }
+                String cursor = req.param("cursor");
+                if (cursor != null && !cursor.isEmpty()) page.cursor = cursor;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            page.fields = ProductJsonWriter.parseFields(req.param("fields"));
+            return page.fields == -1 ? null : page;
+        }
+
+        // Cursor como último ID ya enviado (null si no hay o no es un número)
+        Integer idCursor() {
+            if (cursor == null) return null;
+            try {
+                return Integer.parseInt(cursor);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
     }
 
     /**
      * ESTRUCTURA DE DATOS: Representa un HTTP Response a construir
      */
+    // Escribe el body JSON directo al socket mientras se envía la respuesta
+    interface JsonBody {
+        void write(JsonGenerator g) throws IOException;
+    }
+
     static class HttpResponse {
         int statusCode;         // 200, 404, 500, etc.
         String body;            // Texto (JSON) del body
         String contentType;     // application/json, image/png, etc.
         byte[] binaryData;      // Datos binarios (imágenes)
+        JsonBody json;          // Body JSON que se genera al enviar (streaming)
+        Map<String, String> headers = new LinkedHashMap<>();  // Headers adicionales
 
         HttpResponse(int statusCode, String body, String contentType) {
             this.statusCode = statusCode;
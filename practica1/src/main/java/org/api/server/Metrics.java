@@ -0,0 +1,222 @@
+package org.api.server;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import org.cli.server.AccessLog;
+import org.cli.server.ReplicaClient;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas del servidor HTTP, expuestas en /metrics con formato de texto de Prometheus.
+ *
+ * Registrar una muestra no reserva memoria: solo contadores LongAdder (sin contención
+ * entre threads) y un histograma de latencia con cubetas fijas por ruta.
+ */
+final class Metrics {
+    // Rutas conocidas (la etiqueta "route" de cada serie)
+    enum Route {
+        PRODUCTS("/api/products"), SEARCH("/api/search"), CART("/api/cart"), CHECKOUT("/api/checkout"),
+        STREAM("/api/stream"), IMAGES("/images"), METRICS("/metrics"), OTHER("other");
+
+        final String label;
+        Route(String label) { this.label = label; }
+
+        static Route of(String path) {
+            if (path == null) return OTHER;
+            if (path.startsWith("/images/")) return IMAGES;
+            return switch (path) {
+                case "/api/products" -> PRODUCTS;
+                case "/api/search" -> SEARCH;
+                case "/api/cart" -> CART;
+                case "/api/checkout" -> CHECKOUT;
+                case "/api/stream" -> STREAM;
+                case "/metrics" -> METRICS;
+                default -> OTHER;
+            };
+        }
+    }
+
+    // Límites superiores de las cubetas de latencia (segundos), al estilo de Prometheus
+    private static final double[] BUCKETS_SEC = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5};
+    private static final long[] BUCKETS_NANOS = new long[BUCKETS_SEC.length];
+    private static final String[] BUCKET_LABELS = new String[BUCKETS_SEC.length];
+    static {
+        for (int i = 0; i < BUCKETS_SEC.length; i++) {
+            BUCKETS_NANOS[i] = (long) (BUCKETS_SEC[i] * 1e9);
+            BUCKET_LABELS[i] = BigDecimal.valueOf(BUCKETS_SEC[i]).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private static final int ROUTES = Route.values().length;
+    // [ruta][clase de estado]
+    private static final LongAdder[][] requests = new LongAdder[ROUTES][STATUS_CLASSES.length];
+    // [ruta][cubeta] (la última cubeta es +Inf)
+    private static final LongAdder[][] latencyBuckets = new LongAdder[ROUTES][BUCKETS_NANOS.length + 1];
+    private static final LongAdder[] latencySumNanos = new LongAdder[ROUTES];
+
+    static final LongAdder connectionsAccepted = new LongAdder();
+    static final LongAdder activeConnections = new LongAdder();
+    static final LongAdder bytesIn = new LongAdder();
+    static final LongAdder bytesOut = new LongAdder();
+    static final LongAdder parseFailures = new LongAdder();
+    static final LongAdder requestTimeouts = new LongAdder();
+    static final LongAdder rejectedConnections = new LongAdder();
+    static final LongAdder stockConflicts = new LongAdder();
+    static final LongAdder rateLimited = new LongAdder();
+    static final LongAdder internalErrors = new LongAdder();
+    static final LongAdder streamSubscribers = new LongAdder();
+    static final LongAdder streamEvents = new LongAdder();
+    static final LongAdder streamSlowDisconnects = new LongAdder();
+
+    static {
+        for (int r = 0; r < ROUTES; r++) {
+            for (int s = 0; s < STATUS_CLASSES.length; s++) requests[r][s] = new LongAdder();
+            for (int b = 0; b <= BUCKETS_NANOS.length; b++) latencyBuckets[r][b] = new LongAdder();
+            latencySumNanos[r] = new LongAdder();
+        }
+    }
+
+    private Metrics() {}
+
+    // Todo a cero (lo que dejó el calentamiento no son peticiones reales)
+    static void reset() {
+        for (int r = 0; r < ROUTES; r++) {
+            for (LongAdder a : requests[r]) a.reset();
+            for (LongAdder a : latencyBuckets[r]) a.reset();
+            latencySumNanos[r].reset();
+        }
+        for (LongAdder a : new LongAdder[]{connectionsAccepted, activeConnections, bytesIn, bytesOut, parseFailures,
+                requestTimeouts, rejectedConnections, stockConflicts, rateLimited, internalErrors,
+                streamSubscribers, streamEvents, streamSlowDisconnects})
+            a.reset();
+    }
+
+    // Registra una petición atendida: ruta, código de estado y tiempo total en nanosegundos
+    static void record(Route route, int status, long nanos) {
+        int r = route.ordinal();
+        int s = status / 100 - 1;
+        if (s >= 0 && s < STATUS_CLASSES.length) requests[r][s].increment();
+
+        int b = 0;
+        while (b < BUCKETS_NANOS.length && nanos > BUCKETS_NANOS[b]) b++;
+        latencyBuckets[r][b].increment();
+        latencySumNanos[r].add(nanos);
+    }
+
+    // Formato de exposición de texto de Prometheus (version 0.0.4)
+    static String render(AccessLog accessLog, ReplicaClient replica) {
+        StringBuilder sb = new StringBuilder(8 * 1024);
+
+        sb.append("# HELP http_requests_total Peticiones atendidas por ruta y clase de estado\n");
+        sb.append("# TYPE http_requests_total counter\n");
+        for (Route route : Route.values()) {
+            for (int s = 0; s < STATUS_CLASSES.length; s++) {
+                long v = requests[route.ordinal()][s].sum();
+                if (v == 0) continue;
+                sb.append("http_requests_total{route=\"").append(route.label)
+                  .append("\",status=\"").append(STATUS_CLASSES[s]).append("\"} ").append(v).append('\n');
+            }
+        }
+
+        sb.append("# HELP http_request_duration_seconds Tiempo desde la petición parseada hasta la respuesta enviada\n");
+        sb.append("# TYPE http_request_duration_seconds histogram\n");
+        for (Route route : Route.values()) {
+            int r = route.ordinal();
+            long cumulative = 0;
+            for (int b = 0; b <= BUCKETS_NANOS.length; b++) {
+                cumulative += latencyBuckets[r][b].sum();
+                sb.append("http_request_duration_seconds_bucket{route=\"").append(route.label).append("\",le=\"")
+                  .append(b < BUCKET_LABELS.length ? BUCKET_LABELS[b] : "+Inf")
+                  .append("\"} ").append(cumulative).append('\n');
+            }
+            sb.append("http_request_duration_seconds_sum{route=\"").append(route.label).append("\"} ")
+              .append(latencySumNanos[r].sum() / 1e9).append('\n');
+            sb.append("http_request_duration_seconds_count{route=\"").append(route.label).append("\"} ")
+              .append(cumulative).append('\n');
+        }
+
+        counter(sb, "http_connections_accepted_total", "Conexiones TCP aceptadas", connectionsAccepted.sum());
+        gauge(sb, "http_connections_active", "Conexiones TCP abiertas", activeConnections.sum());
+        counter(sb, "http_received_bytes_total", "Bytes leídos de los sockets", bytesIn.sum());
+        counter(sb, "http_sent_bytes_total", "Bytes escritos a los sockets", bytesOut.sum());
+        counter(sb, "http_parse_failures_total", "Peticiones HTTP que no se pudieron parsear", parseFailures.sum());
+        counter(sb, "http_request_timeouts_total", "Peticiones cortadas por no llegar completas dentro del plazo", requestTimeouts.sum());
+        counter(sb, "http_rejected_connections_total", "Conexiones rechazadas con 503 por el control de admisión", rejectedConnections.sum());
+        counter(sb, "http_rate_limited_total", "Peticiones a carrito o compra rechazadas con 429", rateLimited.sum());
+        counter(sb, "shop_stock_conflicts_total", "Operaciones de carrito rechazadas o recortadas por falta de existencias", stockConflicts.sum());
+        counter(sb, "http_internal_errors_total", "Excepciones no controladas al atender peticiones", internalErrors.sum());
+        gauge(sb, "sse_subscribers", "Conexiones suscritas a /api/stream", streamSubscribers.sum());
+        counter(sb, "sse_events_total", "Eventos de existencias (o pings) enviados a los suscriptores", streamEvents.sum());
+        counter(sb, "sse_slow_disconnects_total", "Suscriptores desconectados por no leer los eventos", streamSlowDisconnects.sum());
+        if (accessLog != null) {
+            counter(sb, "access_log_written_total", "Registros escritos a la bitácora de accesos", accessLog.written());
+            counter(sb, "access_log_dropped_total", "Registros descartados con la bitácora de accesos llena", accessLog.dropped());
+        }
+        if (replica != null) {
+            long lag = replica.lagMillis();
+            gauge(sb, "replica_lag_ms", "Milisegundos desde el último mensaje del primario (-1 = sin sincronizar)",
+                    lag == Long.MAX_VALUE ? -1 : lag);
+        }
+        return sb.toString();
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, long value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" counter\n");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(" gauge\n");
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    // Stream de entrada que suma los bytes leídos del socket
+    static final class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) { super(in); }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) bytesIn.increment();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) bytesIn.add(n);
+            return n;
+        }
+    }
+
+    // Stream de salida que suma los bytes escritos al socket
+    // (también lleva la cuenta de su conexión, para la bitácora de accesos)
+    static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) { super(out); }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytesOut.increment();
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytesOut.add(len);
+            count += len;
+        }
+    }
+}
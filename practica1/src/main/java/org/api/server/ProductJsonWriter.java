@@ -0,0 +1,59 @@
+package org.api.server;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.cli.server.Product;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Serializa productos directo a un JsonGenerator (sin construir ObjectNode/ArrayNode),
+ * con proyección de campos: cada campo es un bit de la máscara.
+ */
+final class ProductJsonWriter {
+    static final int ID = 1, NAME = 1 << 1, TYPE = 1 << 2, BRAND = 1 << 3,
+            INFO = 1 << 4, PRICE = 1 << 5, STOCK = 1 << 6, IMAGE_URL = 1 << 7;
+    static final int ALL = 0xFF;
+
+    private ProductJsonWriter() {}
+
+    // "id,name,price" -> máscara; -1 si algún campo no existe
+    static int parseFields(String fields) {
+        if (fields == null || fields.isBlank()) return ALL;
+        int mask = 0;
+        for (String f : fields.split(",")) {
+            int bit = switch (f.trim().toLowerCase(Locale.ROOT)) {
+                case "id" -> ID;
+                case "name" -> NAME;
+                case "type" -> TYPE;
+                case "brand" -> BRAND;
+                case "info" -> INFO;
+                case "price" -> PRICE;
+                case "stock" -> STOCK;
+                case "imageurl" -> IMAGE_URL;
+                default -> -1;
+            };
+            if (bit == -1) return -1;
+            mask |= bit;
+        }
+        return mask;
+    }
+
+    // Escribe un producto como objeto JSON con los campos pedidos
+    static void write(JsonGenerator g, Product p, int fields) throws IOException {
+        g.writeStartObject();
+        writeFields(g, p, fields);
+        g.writeEndObject();
+    }
+
+    // Escribe solo los campos (para agregar otros al mismo objeto, p. ej. quantity)
+    static void writeFields(JsonGenerator g, Product p, int fields) throws IOException {
+        if ((fields & ID) != 0) g.writeNumberField("id", p.getId());
+        if ((fields & NAME) != 0) g.writeStringField("name", p.getName());
+        if ((fields & TYPE) != 0) g.writeStringField("type", p.getType());
+        if ((fields & BRAND) != 0) g.writeStringField("brand", p.getBrand());
+        if ((fields & INFO) != 0) g.writeStringField("info", p.getInfo());
+        if ((fields & PRICE) != 0) g.writeNumberField("price", p.getPrice());
+        if ((fields & STOCK) != 0) g.writeNumberField("stock", p.getStock());
+        if ((fields & IMAGE_URL) != 0) g.writeStringField("imageUrl", p.getImageUrl());
+    }
+}
@@ -0,0 +1,66 @@
+package org.api.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket por llave (sesión, IP...) sin locks.
+ *
+ * Cada cubeta es un solo AtomicLong con el instante (nanoTime) en que quedaría
+ * llena otra vez (forma GCRA del token bucket): consumir un token es una lectura
+ * y un compareAndSet, sin guardar contador y fecha por separado.
+ *
+ * Memoria acotada: cuando hay maxKeys cubetas se eliminan las que ya están llenas
+ * (equivalen a una cubeta nueva); si aun así no hay espacio, las llaves nuevas se rechazan.
+ * El barrido recorre todas las cubetas, así que se hace a lo más una vez cada SWEEP_NANOS:
+ * con la tabla llena de cubetas activas, una llave nueva se rechaza sin recorrer nada.
+ */
+final class RateLimiter<K> {
+    private static final long SWEEP_NANOS = 100_000_000L;
+
+    private final long intervalNanos;   // tiempo para reponer un token
+    private final long burstNanos;      // tolerancia: (burst - 1) tokens adelantados
+    private final int maxKeys;
+    private final ConcurrentHashMap<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+    RateLimiter(double perSecond, int burst, int maxKeys) {
+        this.intervalNanos = (long) (1e9 / perSecond);
+        this.burstNanos = (burst - 1) * intervalNanos;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Intenta consumir un token de la cubeta de key
+     * @return 0 si se permite; si no, nanosegundos hasta que haya un token
+     */
+    long acquire(K key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys && !evictIdle(now)) return intervalNanos;
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        while (true) {
+            long full = bucket.get();
+            long wait = full - now - burstNanos;
+            if (wait > 0) return wait;
+            if (bucket.compareAndSet(full, Math.max(full - now, 0) + now + intervalNanos)) return 0;
+        }
+    }
+
+    // Olvida todas las cubetas (p. ej. las que dejó el calentamiento)
+    void clear() {
+        buckets.clear();
+    }
+
+    // Quita las cubetas llenas (un thread, a lo más cada SWEEP_NANOS); true si quedó espacio
+    private boolean evictIdle(long now) {
+        long next = nextSweep.get();
+        if (now - next >= 0 && nextSweep.compareAndSet(next, now + SWEEP_NANOS)) {
+            buckets.values().removeIf(b -> b.get() - now <= 0);
+        }
+        return buckets.size() < maxKeys;
+    }
+}
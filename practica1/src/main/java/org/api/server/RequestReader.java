@@ -0,0 +1,134 @@
+package org.api.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lectura de peticiones HTTP a nivel de bytes, con límites:
+ * - Cada línea tiene un tamaño máximo (no se acumulan headers sin fin)
+ * - Plazo absoluto (deadline) para la petición completa, contado desde su primer byte:
+ *   un cliente que envía un byte cada pocos segundos no puede mantener el thread ocupado
+ *   indefinidamente, aunque cada read() llegue antes del timeout del socket
+ *
+ * Sin socket (p. ej. en los benchmarks) no hay plazos.
+ */
+final class RequestReader {
+    private final InputStream in;
+    private final Socket socket;
+    private final byte[] buf = new byte[8 * 1024];
+    private int pos, limit;
+    private int lastLineBytes;  // bytes que ocupó la última línea leída, con su \r\n
+    private long deadline;      // System.nanoTime() límite; 0 = sin plazo
+
+    RequestReader(InputStream in, Socket socket) {
+        this.in = in;
+        this.socket = socket;
+    }
+
+    void clearDeadline() {
+        deadline = 0;
+    }
+
+    /**
+     * Espera el primer byte de la siguiente petición (como mucho idleMillis); desde que llega,
+     * la petición completa (headers y body) se tiene que leer en requestMillis
+     * @return false si el cliente cerró la conexión
+     */
+    boolean awaitRequest(int idleMillis, int requestMillis) throws IOException {
+        deadline = 0;
+        if (pos == limit) {
+            if (socket != null) socket.setSoTimeout(idleMillis);
+            if (!fill()) return false;
+        }
+        deadline = System.nanoTime() + requestMillis * 1_000_000L;
+        return true;
+    }
+
+    /**
+     * Lee una línea terminada en \n (sin \r\n); null si la conexión se cerró antes
+     * @throws LineTooLongException si la línea pasa de maxBytes
+     */
+    String readLine(int maxBytes) throws IOException {
+        int start = pos;
+        byte[] line = null;     // solo se usa si la línea cruza el final del buffer
+        int lineLength = 0;
+        while (true) {
+            for (int i = pos; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    int n = i - start;
+                    if (lineLength + n > maxBytes) throw new LineTooLongException();
+                    String s;
+                    if (line == null) {
+                        s = decode(buf, start, n);
+                    } else {
+                        System.arraycopy(buf, start, line, lineLength, n);
+                        s = decode(line, 0, lineLength + n);
+                    }
+                    pos = i + 1;
+                    lastLineBytes = lineLength + n + 1;
+                    return s;
+                }
+            }
+            // Sin fin de línea en el buffer: se guarda lo leído y se pide más
+            int n = limit - start;
+            if (lineLength + n > maxBytes) throw new LineTooLongException();
+            if (n > 0) {
+                if (line == null) line = new byte[maxBytes + 1];
+                System.arraycopy(buf, start, line, lineLength, n);
+                lineLength += n;
+            }
+            pos = limit;
+            if (!fill()) return null;
+            start = pos;
+        }
+    }
+
+    // Bytes que ocupó en la conexión la última línea de readLine (el String puede tener menos caracteres)
+    int lastLineBytes() {
+        return lastLineBytes;
+    }
+
+    // Lee exactamente length bytes (el body); null si la conexión se cerró antes
+    byte[] readBytes(int length) throws IOException {
+        byte[] out = new byte[length];
+        int read = 0;
+        while (read < length) {
+            if (pos == limit && !fill()) return null;
+            int n = Math.min(length - read, limit - pos);
+            System.arraycopy(buf, pos, out, read, n);
+            pos += n;
+            read += n;
+        }
+        return out;
+    }
+
+    // Rellena el buffer respetando el plazo; false en fin de stream
+    private boolean fill() throws IOException {
+        if (deadline != 0 && socket != null) {
+            long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+            if (remaining <= 0) throw new SocketTimeoutException("Request deadline exceeded");
+            socket.setSoTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+        }
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) return false;
+        pos = 0;
+        limit = n;
+        return true;
+    }
+
+    // Quita el \r final (HTTP usa \r\n, pero se tolera \n solo)
+    private static String decode(byte[] b, int off, int len) {
+        if (len > 0 && b[off + len - 1] == '\r') len--;
+        return new String(b, off, len, StandardCharsets.UTF_8);
+    }
+
+    // Línea (request line o header) más larga de lo permitido
+    static final class LineTooLongException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        LineTooLongException() { super("Line too long"); }
+    }
+}
@@ -0,0 +1,253 @@
+package org.api.server;
+
+import org.cli.server.Product;
+import org.cli.server.StockListener;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cambios de existencias en tiempo real para /api/stream (Server-Sent Events).
+ *
+ * - El inventario avisa cada cambio (StockListener): solo se anota el producto
+ * - Cada WINDOW_MS se juntan los cambios (un producto aparece una vez, con sus
+ *   existencias actuales) y se arma UN evento que se envía a todos los suscriptores
+ * - Los sockets suscritos pasan a modo no bloqueante y los atiende un solo thread con
+ *   un Selector: una escritura que no cabe en el buffer del socket deja el resto en la
+ *   cola del suscriptor y se sigue con los demás (un cliente lento no frena a nadie)
+ * - La cola de cada suscriptor es acotada: si se llena, o lleva WRITE_TIMEOUT sin poder
+ *   escribir, se desconecta (el navegador se reconecta solo con "retry")
+ *
+ * Evento:
+ * id: 42
+ * event: stock
+ * data: [{"id":101,"stock":22},{"id":300,"stock":9}]
+ */
+final class StockStream implements StockListener {
+    private static final int WINDOW_MS = 100;
+    private static final long HEARTBEAT_NANOS = 15_000_000_000L;   // comentario ": ping" si no hubo cambios
+    private static final long WRITE_TIMEOUT_NANOS = 5_000_000_000L;
+    private static final int MAX_PENDING_EVENTS = 64;
+    static final int MAX_SUBSCRIBERS = Integer.getInteger("http.maxStreamSubscribers", 10_000);
+
+    private static final byte[] HEADERS = ("HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/event-stream; charset=utf-8\r\n"
+            + "Cache-Control: no-cache\r\n"
+            + "Connection: keep-alive\r\n"
+            + "Access-Control-Allow-Origin: *\r\n"
+            + "\r\n"
+            + "retry: 3000\n\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PING = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+
+    // Productos con cambios en la ventana actual
+    private final Map<Integer, Product> changed = new ConcurrentHashMap<>();
+    // Suscriptores nuevos que el thread del selector todavía no registra
+    private final Queue<Subscriber> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Selector selector;
+    // Solo los usa el thread del selector
+    private final Set<Subscriber> subscribers = new HashSet<>();
+    private final ByteBuffer discard = ByteBuffer.allocate(512);
+    private long eventId;
+    private long lastSentNanos = System.nanoTime();
+
+    StockStream() throws IOException {
+        selector = Selector.open();
+        Thread loop = new Thread(this::run, "sse-selector");
+        loop.setDaemon(true);
+        loop.start();
+    }
+
+    @Override
+    public void stockChanged(Product product) {
+        changed.put(product.getId(), product);
+    }
+
+    /**
+     * Convierte la conexión en suscriptor: envía los headers y deja el socket abierto
+     * (el socket tiene que venir de un ServerSocketChannel para poder pasar a no bloqueante)
+     * @return false si ya hay MAX_SUBSCRIBERS (la conexión sigue siendo del llamador)
+     */
+    boolean subscribe(Socket socket, OutputStream out) throws IOException {
+        SocketChannel channel = socket.getChannel();
+        if (channel == null) throw new IOException("El socket no tiene canal: no puede ser suscriptor");
+        if (subscriberCount.incrementAndGet() > MAX_SUBSCRIBERS) {
+            subscriberCount.decrementAndGet();
+            return false;
+        }
+        try {
+            out.write(HEADERS);
+            out.flush();
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            subscriberCount.decrementAndGet();
+            throw e;
+        }
+        incoming.add(new Subscriber(channel));
+        Metrics.streamSubscribers.increment();
+        selector.wakeup();
+        return true;
+    }
+
+    /**
+     * Thread del selector: registra suscriptores, termina escrituras pendientes, detecta
+     * desconexiones (lectura -1) y cada WINDOW_MS envía los cambios juntados
+     */
+    private void run() {
+        long nextTick = System.nanoTime() + WINDOW_MS * 1_000_000L;
+        while (true) {
+            try {
+                long wait = Math.max(1, (nextTick - System.nanoTime()) / 1_000_000L);
+                selector.select(wait);
+
+                Subscriber s;
+                while ((s = incoming.poll()) != null) s.register();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Subscriber sub = (Subscriber) key.attachment();
+                    if (!key.isValid()) continue;
+                    if (key.isReadable()) sub.read();
+                    if (key.isValid() && key.isWritable()) sub.flush(System.nanoTime());
+                }
+
+                long now = System.nanoTime();
+                if (now - nextTick >= 0) {
+                    tick(now);
+                    nextTick = now + WINDOW_MS * 1_000_000L;
+                }
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (Throwable t) {
+                // Una excepción terminaría el thread y dejaría a todos los suscriptores sin eventos
+                Metrics.internalErrors.increment();
+                t.printStackTrace();
+            }
+        }
+    }
+
+    // Un evento con los cambios juntados (o un ping para detectar conexiones muertas)
+    private void tick(long now) {
+        // Suscriptores que llevan demasiado sin poder escribir: el cliente no está leyendo
+        for (Subscriber s : List.copyOf(subscribers)) {
+            if (s.blockedSince != 0 && now - s.blockedSince > WRITE_TIMEOUT_NANOS) {
+                Metrics.streamSlowDisconnects.increment();
+                s.close();
+            }
+        }
+
+        byte[] event = null;
+        if (!changed.isEmpty()) {
+            event = encode();
+        } else if (now - lastSentNanos > HEARTBEAT_NANOS) {
+            event = PING;
+        }
+        if (event == null) return;
+        lastSentNanos = now;
+        Metrics.streamEvents.increment();
+        for (Subscriber s : List.copyOf(subscribers)) s.offer(event, now);
+    }
+
+    // Un cambio que llega mientras se arma el evento queda para la siguiente ventana
+    private byte[] encode() {
+        StringBuilder sb = new StringBuilder(64 + changed.size() * 24);
+        sb.append("id: ").append(++eventId).append("\nevent: stock\ndata: [");
+        boolean first = true;
+        for (Integer id : changed.keySet()) {
+            Product p = changed.remove(id);
+            if (p == null) continue;
+            if (!first) sb.append(',');
+            sb.append("{\"id\":").append(id).append(",\"stock\":").append(p.getStock()).append('}');
+            first = false;
+        }
+        sb.append("]\n\n");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Una conexión suscrita: cola acotada de eventos que todavía no caben en el socket
+     * (solo la usa el thread del selector)
+     */
+    private final class Subscriber {
+        final SocketChannel channel;
+        final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        SelectionKey key;
+        long blockedSince;      // 0 = la cola está vacía
+        boolean closed;
+
+        Subscriber(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void register() {
+            try {
+                key = channel.register(selector, SelectionKey.OP_READ, this);
+                subscribers.add(this);
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void offer(byte[] event, long now) {
+            if (pending.size() >= MAX_PENDING_EVENTS) {
+                Metrics.streamSlowDisconnects.increment();
+                close();
+                return;
+            }
+            pending.add(ByteBuffer.wrap(event));
+            if (pending.size() == 1) flush(now);
+        }
+
+        // Escribe lo que quepa sin bloquear; el resto espera a OP_WRITE
+        void flush(long now) {
+            try {
+                ByteBuffer head;
+                while ((head = pending.peek()) != null) {
+                    Metrics.bytesOut.add(channel.write(head));
+                    if (head.hasRemaining()) {
+                        if (blockedSince == 0) blockedSince = now;
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    pending.poll();
+                }
+                blockedSince = 0;
+                key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                close();    // el cliente se desconectó
+            }
+        }
+
+        // El cliente no envía nada después de la petición: -1 es que cerró
+        void read() {
+            try {
+                discard.clear();
+                if (channel.read(discard) < 0) close();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            subscribers.remove(this);
+            pending.clear();
+            subscriberCount.decrementAndGet();
+            Metrics.streamSubscribers.decrement();
+            try { channel.close(); } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.api.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cuerpo de respuesta que se escribe directo al socket.
+ *
+ * Los bytes se acumulan en un buffer reutilizable (uno por thread):
+ * - Si el cuerpo cabe en el buffer, se envía con Content-Length (una sola escritura)
+ * - Si no cabe, se cambia a Transfer-Encoding: chunked y cada buffer lleno se envía
+ *   como un chunk; la respuesta completa nunca se guarda en memoria
+ * - Con clientes HTTP/1.0 (sin chunked) el cuerpo termina al cerrar la conexión
+ * - Si quien genera el cuerpo falla a medias, abort() lo deja sin terminar (sin el chunk
+ *   final) y la conexión se cierra: el cliente ve una respuesta truncada, no una completa
+ */
+final class StreamingBody extends OutputStream {
+    // Escribe status line y headers; contentLength = -1 si no se conoce
+    interface Head {
+        void write(OutputStream out, long contentLength, boolean chunked, boolean keepAlive) throws IOException;
+    }
+
+    static final int BUFFER_SIZE = 16 * 1024;
+    private static final ThreadLocal<byte[]> POOL = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final Head head;
+    private final boolean chunkedAllowed;
+    private boolean keepAlive;
+    private final byte[] buf = POOL.get();
+    private int count;
+    private boolean headSent;
+    private boolean chunked;
+    private boolean closed;
+    private boolean broken;         // falló una escritura al socket (el cliente se fue)
+
+    StreamingBody(OutputStream out, Head head, boolean keepAlive, boolean chunkedAllowed) {
+        this.out = out;
+        this.head = head;
+        this.keepAlive = keepAlive;
+        this.chunkedAllowed = chunkedAllowed;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buf.length) drain();
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buf.length) drain();
+            int n = Math.min(len, buf.length - count);
+            System.arraycopy(b, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    // Buffer lleno: a partir de aquí la respuesta va en chunks (o delimitada por cierre)
+    private void drain() throws IOException {
+        try {
+            sendPending();
+        } catch (IOException e) {
+            broken = true;
+            throw e;
+        }
+    }
+
+    private void sendPending() throws IOException {
+        if (!headSent) {
+            chunked = chunkedAllowed;
+            if (!chunked) keepAlive = false;
+            head.write(out, -1, chunked, keepAlive);
+            headSent = true;
+        }
+        writeChunk();
+    }
+
+    private void writeChunk() throws IOException {
+        if (count == 0) return;
+        if (chunked) {
+            out.write(Integer.toHexString(count).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            out.write(buf, 0, count);
+            out.write(CRLF);
+        } else {
+            out.write(buf, 0, count);
+        }
+        count = 0;
+    }
+
+    // El generador JSON hace flush al cerrar; el envío real ocurre en close()
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (!headSent) {
+            // Todo cupo en el buffer: respuesta normal con Content-Length
+            head.write(out, count, false, keepAlive);
+            out.write(buf, 0, count);
+        } else {
+            writeChunk();
+            if (chunked) out.write(LAST_CHUNK);
+        }
+        out.flush();
+    }
+
+    /**
+     * El cuerpo no se pudo generar: se descarta lo que quede en el buffer y no se envía el
+     * fin del cuerpo. Después de esto la conexión se debe cerrar
+     */
+    void abort() throws IOException {
+        closed = true;
+        keepAlive = false;
+        count = 0;
+        out.flush();
+    }
+
+    // Si ya se enviaron status line y headers (ya no se puede responder otra cosa)
+    boolean headSent() { return headSent; }
+
+    // Si falló el socket (y no quien genera el cuerpo)
+    boolean broken() { return broken; }
+
+    // Si la conexión puede seguir abierta después de esta respuesta
+    boolean keepAlive() { return keepAlive; }
+}
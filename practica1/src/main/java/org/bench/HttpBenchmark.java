@@ -0,0 +1,339 @@
+package org.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Benchmark de carga y latencia para los endpoints de HttpSocketServer.
+ *
+ * - Cliente HTTP/1.1 propio sobre sockets bloqueantes (sin librerías), para controlar
+ *   si la conexión se reutiliza (keep-alive) o se abre una por petición
+ * - Cada sesión manda su propio Session-Id, así cada una tiene su carrito
+ * - Lazo abierto a tasa fija (OpenLoop, el mismo calendario que LoadGenerator); la latencia
+ *   se mide desde el instante programado (corrige coordinated omission) y se guarda en HdrHistogram
+ * - Resultados en JSON (--out) para comparar corridas en CI
+ * - Solo se permite apuntar a localhost
+ *
+ * Uso:
+ *   java org.bench.HttpBenchmark [--port 8081] [--sessions N] [--rate OPS_POR_SEG]
+ *        [--duration SEG] [--warmup SEG] [--keep-alive true|false]
+ *        [--mix products=40,search=30,cart=20,checkout=10] [--out resultados.json]
+ *
+ * El servidor limita /api/cart y /api/checkout por IP (200/s) y por Session-Id (20/s), y todo
+ * el benchmark sale de 127.0.0.1: si --rate por la fracción de cart+checkout pasa de 200/s
+ * (o de 20/s por sesión), arrancar el servidor con -Dhttp.ipRate=... (y -Dhttp.sessionRate=...)
+ * más altos, o las respuestas 429 se mezclan con la latencia medida
+ */
+public class HttpBenchmark {
+    enum Endpoint { PRODUCTS, SEARCH, CART, CHECKOUT }
+
+    private final String host;
+    private final int port;
+    private final int sessions;
+    private final double rate;
+    private final int durationSec;
+    private final int warmupSec;
+    private final boolean keepAlive;
+    private final OpenLoop<Endpoint> loop;
+    private final LoadGenerator.Workload workload;
+
+    public HttpBenchmark(String host, int port, int sessions, double rate, int durationSec, int warmupSec,
+                         boolean keepAlive, int[] weights, LoadGenerator.Workload workload) {
+        this.host = host;
+        this.port = port;
+        this.sessions = sessions;
+        this.rate = rate;
+        this.durationSec = durationSec;
+        this.warmupSec = warmupSec;
+        this.keepAlive = keepAlive;
+        this.workload = workload;
+        this.loop = new OpenLoop<>(Endpoint.class, weights, sessions, rate, warmupSec, durationSec);
+    }
+
+    public ObjectNode run() throws InterruptedException {
+        return report(loop.run("HTTP-BENCH", HttpSession::new));
+    }
+
+    // Una sesión con su Session-Id; los errores de E/S cuentan como estado -1 y se reconecta
+    private final class HttpSession implements OpenLoop.Session<Endpoint> {
+        private final String sessionId;
+        private HttpConnection conn;
+        private int connects;
+
+        HttpSession(int idx) {
+            this.sessionId = "bench-" + idx + "-" + Long.toHexString(System.nanoTime());
+        }
+
+        @Override
+        public int execute(Endpoint ep, SplittableRandom rnd) {
+            byte[] request = buildRequest(ep, sessionId, rnd);
+            try {
+                if (conn == null) {
+                    conn = new HttpConnection(host, port);
+                    connects++;
+                }
+                int status = conn.exchange(request);
+                if (!keepAlive || !conn.isReusable()) close();
+                return status;
+            } catch (IOException e) {
+                close();
+                return -1;
+            }
+        }
+
+        @Override
+        public int connects() { return connects; }
+
+        @Override
+        public void close() {
+            if (conn != null) conn.close();
+            conn = null;
+        }
+    }
+
+    private byte[] buildRequest(Endpoint ep, String sessionId, SplittableRandom rnd) {
+        String method = "GET";
+        String target;
+        String body = "";
+        switch (ep) {
+            case PRODUCTS -> target = "/api/products";
+            case SEARCH -> target = "/api/search?q="
+                    + URLEncoder.encode(workload.terms[rnd.nextInt(workload.terms.length)], StandardCharsets.UTF_8);
+            case CART -> {
+                method = "POST";
+                target = "/api/cart";
+                body = "{\"id\":" + workload.ids[rnd.nextInt(workload.ids.length)] + ",\"quantity\":1}";
+            }
+            default -> {
+                method = "POST";
+                target = "/api/checkout";
+            }
+        }
+        StringBuilder sb = new StringBuilder(160)
+                .append(method).append(' ').append(target).append(" HTTP/1.1\r\n")
+                .append("Host: ").append(host).append(':').append(port).append("\r\n")
+                .append("Session-Id: ").append(sessionId).append("\r\n")
+                .append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        if (!method.equals("GET")) {
+            sb.append("Content-Type: application/json\r\n")
+              .append("Content-Length: ").append(bodyBytes.length).append("\r\n");
+        }
+        sb.append("\r\n").append(body);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private ObjectNode report(OpenLoop.Stats stats) {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+        ObjectNode config = root.putObject("config");
+        config.put("host", host);
+        config.put("port", port);
+        config.put("sessions", sessions);
+        config.put("rate", rate);
+        config.put("durationSec", durationSec);
+        config.put("warmupSec", warmupSec);
+        config.put("keepAlive", keepAlive);
+
+        int connects = stats.connects;
+        root.put("connections", connects);
+
+        System.out.printf("%n[HTTP-BENCH] %s:%d  sesiones=%d  tasa=%.1f ops/s  keep-alive=%s  conexiones=%d%n",
+                host, port, sessions, rate, keepAlive, connects);
+        System.out.printf("%-9s %8s %9s %6s %6s %9s %9s %9s %9s %9s%n",
+                "endpoint", "ops", "ops/s", "4xx", "err", "p50", "p90", "p99", "p99.9", "max");
+
+        ArrayNode endpoints = root.putArray("endpoints");
+        Histogram all = new Histogram(3);
+        for (Endpoint ep : Endpoint.values()) {
+            int e = ep.ordinal();
+            Histogram lat = stats.latency[e];
+            Histogram svc = stats.service[e];
+            Map<Integer, Long> statuses = stats.outcomes[e];
+            all.add(lat);
+
+            long clientErrors = 0, errors = 0;
+            for (var s : statuses.entrySet()) {
+                if (s.getKey() >= 400 && s.getKey() < 500) clientErrors += s.getValue();
+                else if (s.getKey() < 0 || s.getKey() >= 500) errors += s.getValue();
+            }
+
+            ObjectNode node = endpoints.addObject();
+            node.put("name", ep.name().toLowerCase(Locale.ROOT));
+            node.put("count", lat.getTotalCount());
+            node.put("throughput", lat.getTotalCount() / (double) durationSec);
+            node.put("clientErrors", clientErrors);
+            node.put("errors", errors);
+            ObjectNode codes = node.putObject("status");
+            statuses.forEach((k, v) -> codes.put(k < 0 ? "io-error" : String.valueOf(k), v));
+            node.set("latencyUs", percentiles(mapper, lat));
+            node.set("serviceTimeUs", percentiles(mapper, svc));
+
+            System.out.printf("%-9s %8d %9.1f %6d %6d %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                    ep.name().toLowerCase(Locale.ROOT), lat.getTotalCount(), lat.getTotalCount() / (double) durationSec,
+                    clientErrors, errors,
+                    lat.getValueAtPercentile(50) / 1e6, lat.getValueAtPercentile(90) / 1e6,
+                    lat.getValueAtPercentile(99) / 1e6, lat.getValueAtPercentile(99.9) / 1e6,
+                    lat.getMaxValue() / 1e6);
+        }
+        root.set("totalLatencyUs", percentiles(mapper, all));
+        System.out.println("(latencias en ms, medidas desde el instante programado)");
+        return root;
+    }
+
+    private static ObjectNode percentiles(ObjectMapper mapper, Histogram h) {
+        ObjectNode n = mapper.createObjectNode();
+        n.put("mean", h.getTotalCount() == 0 ? 0 : h.getMean() / 1000.0);
+        n.put("p50", h.getValueAtPercentile(50) / 1000.0);
+        n.put("p90", h.getValueAtPercentile(90) / 1000.0);
+        n.put("p99", h.getValueAtPercentile(99) / 1000.0);
+        n.put("p999", h.getValueAtPercentile(99.9) / 1000.0);
+        n.put("max", h.getMaxValue() / 1000.0);
+        return n;
+    }
+
+    /**
+     * Conexión HTTP/1.1 mínima: envía una petición y consume la respuesta
+     * completa (Content-Length o Transfer-Encoding: chunked).
+     */
+    static class HttpConnection implements Closeable {
+        private final Socket socket;
+        private final BufferedInputStream in;
+        private final OutputStream out;
+        private boolean reusable = true;
+
+        HttpConnection(String host, int port) throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), 2000);
+            socket.setSoTimeout(10_000);
+            in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+            out = socket.getOutputStream();
+        }
+
+        // Devuelve el código de estado de la respuesta
+        int exchange(byte[] request) throws IOException {
+            out.write(request);
+            out.flush();
+
+            String statusLine = readLine();
+            if (statusLine == null) throw new EOFException("Conexión cerrada por el servidor");
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2) throw new IOException("Respuesta inválida: " + statusLine);
+            int status = Integer.parseInt(parts[1]);
+
+            long contentLength = -1;
+            boolean chunked = false;
+            String line;
+            while ((line = readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) continue;
+                String key = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                if (key.equalsIgnoreCase("Content-Length")) contentLength = Long.parseLong(value);
+                else if (key.equalsIgnoreCase("Transfer-Encoding")) chunked = value.equalsIgnoreCase("chunked");
+                else if (key.equalsIgnoreCase("Connection")) reusable = !value.equalsIgnoreCase("close");
+            }
+
+            if (chunked) {
+                long size;
+                while ((size = Long.parseLong(readLine().split(";")[0].trim(), 16)) > 0) {
+                    skip(size);
+                    readLine();
+                }
+                while ((line = readLine()) != null && !line.isEmpty()) { /* trailers */ }
+            } else if (contentLength >= 0) {
+                skip(contentLength);
+            } else {
+                // sin longitud: el cuerpo termina cuando el servidor cierra
+                while (in.read() != -1) { }
+                reusable = false;
+            }
+            return status;
+        }
+
+        boolean isReusable() { return reusable; }
+
+        private void skip(long n) throws IOException {
+            while (n > 0) {
+                long s = in.skip(n);
+                if (s <= 0) {
+                    if (in.read() == -1) throw new EOFException("Cuerpo incompleto");
+                    s = 1;
+                }
+                n -= s;
+            }
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder sb = new StringBuilder(64);
+            int c;
+            while ((c = in.read()) != -1) {
+                if (c == '\n') {
+                    int len = sb.length();
+                    if (len > 0 && sb.charAt(len - 1) == '\r') sb.setLength(len - 1);
+                    return sb.toString();
+                }
+                sb.append((char) c);
+            }
+            return sb.length() == 0 ? null : sb.toString();
+        }
+
+        @Override
+        public void close() {
+            try { socket.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = 8081;
+        int sessions = 16;
+        double rate = 500;
+        int duration = 30;
+        int warmup = 5;
+        boolean keepAlive = true;
+        String mixArg = "products=40,search=30,cart=20,checkout=10";
+        String outFile = null;
+
+        for (int i = 0; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "--host" -> host = args[++i];
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--sessions" -> sessions = Integer.parseInt(args[++i]);
+                case "--rate" -> rate = Double.parseDouble(args[++i]);
+                case "--duration" -> duration = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--keep-alive" -> keepAlive = Boolean.parseBoolean(args[++i]);
+                case "--mix" -> mixArg = args[++i];
+                case "--out" -> outFile = args[++i];
+            }
+        }
+
+        // El benchmark solo corre contra la máquina local
+        if (!InetAddress.getByName(host).isLoopbackAddress()) {
+            System.err.println("[HTTP-BENCH] Solo se permite localhost (recibido: " + host + ")");
+            System.exit(2);
+        }
+
+        int[] weights = OpenLoop.parseMix(Endpoint.class, mixArg);
+
+        LoadGenerator.Workload workload = LoadGenerator.Workload.fromResource(false, "/plants.json");
+        ObjectNode result = new HttpBenchmark(host, port, sessions, rate, duration, warmup, keepAlive, weights, workload).run();
+
+        ObjectMapper mapper = new ObjectMapper();
+        if (outFile != null) {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(outFile), result);
+            System.out.println("[HTTP-BENCH] Resultados guardados en " + outFile);
+        }
+    }
+}
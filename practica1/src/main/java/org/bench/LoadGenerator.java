@@ -0,0 +1,204 @@
+package org.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.cli.client.ShopConnection;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Generador de carga para los servidores de texto por sockets
+ * (org.cli.server.Server y org.example.server.ShopServer).
+ *
+ * - Abre N sesiones concurrentes con ShopConnection (mismo protocolo que los clientes)
+ * - Carga de lazo abierto (OpenLoop): las operaciones se programan a una tasa fija, sin esperar
+ *   a que termine la anterior; la latencia se mide desde el instante programado,
+ *   así un servidor lento no "frena" la carga (sin coordinated omission)
+ * - Mezcla de comandos configurable (search/list/add/checkout)
+ * - Reporta throughput y percentiles (HdrHistogram) por comando
+ *
+ * Uso:
+ *   java org.bench.LoadGenerator [--target cli|shop] [--host HOST] [--port PORT]
+ *        [--sessions N] [--rate OPS_POR_SEG] [--duration SEG] [--warmup SEG]
+ *        [--mix search=40,list=30,add=20,checkout=10]
+ */
+public class LoadGenerator {
+    enum Command { SEARCH, LIST, ADD, CHECKOUT }
+
+    // Resultado de cada operación (código que cuenta OpenLoop)
+    private static final int OK = 0;
+    private static final int ERROR = 1;         // el servidor respondió ERROR
+    private static final int IO_ERROR = -1;     // conexión perdida
+
+    private final String host;
+    private final int port;
+    private final int sessions;
+    private final double rate;
+    private final int durationSec;
+    private final OpenLoop<Command> loop;
+    private final Workload workload;
+
+    public LoadGenerator(String host, int port, int sessions, double rate,
+                         int durationSec, int warmupSec, int[] weights, Workload workload) {
+        this.host = host;
+        this.port = port;
+        this.sessions = sessions;
+        this.rate = rate;
+        this.durationSec = durationSec;
+        this.workload = workload;
+        this.loop = new OpenLoop<>(Command.class, weights, sessions, rate, warmupSec, durationSec);
+    }
+
+    public void run() throws InterruptedException {
+        report(loop.run("LOAD", idx -> new ShopSession()));
+    }
+
+    // Una conexión de texto; si se pierde se reabre en la siguiente operación
+    private final class ShopSession implements OpenLoop.Session<Command> {
+        private ShopConnection conn;
+        private int connects;
+
+        @Override
+        public int execute(Command cmd, SplittableRandom rnd) throws IOException {
+            if (conn == null) {
+                conn = new ShopConnection(host, port);
+                connects++;
+            }
+            String res;
+            try {
+                res = conn.send(workload.command(cmd, rnd));
+            } catch (IOException e) {
+                res = null;
+            }
+            if (res == null) {
+                try { conn.close(); } catch (IOException ignored) {}
+                conn = null;
+                return IO_ERROR;
+            }
+            return res.regionMatches(true, 0, "ERROR", 0, 5) ? ERROR : OK;
+        }
+
+        @Override
+        public int connects() { return connects; }
+
+        @Override
+        public void close() {
+            if (conn != null) {
+                try { conn.send(workload.exitCommand()); conn.close(); } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private void report(OpenLoop.Stats stats) {
+        double seconds = durationSec;
+        System.out.printf("%n[LOAD] %s:%d  sesiones=%d  tasa objetivo=%.1f ops/s  duración=%.0f s%n",
+                host, port, sessions, rate, seconds);
+        System.out.printf("%-9s %8s %9s %6s %9s %9s %9s %9s %9s %11s%n",
+                "comando", "ops", "ops/s", "err", "p50", "p90", "p99", "p99.9", "max", "servicio99");
+
+        Histogram allLatency = new Histogram(3);
+        long allErrors = 0;
+        for (Command cmd : Command.values()) {
+            int c = cmd.ordinal();
+            Histogram lat = stats.latency[c];
+            long errors = lat.getTotalCount() - stats.outcomes[c].getOrDefault(OK, 0L);
+            allLatency.add(lat);
+            allErrors += errors;
+            printRow(cmd.name().toLowerCase(Locale.ROOT), lat, stats.service[c], errors, seconds);
+        }
+        printRow("total", allLatency, null, allErrors, seconds);
+        System.out.println("(latencias en ms, medidas desde el instante programado; conexiones=" + stats.connects
+                + ", sesiones fallidas=" + stats.failedSessions + ")");
+    }
+
+    private static void printRow(String name, Histogram lat, Histogram svc, long errors, double seconds) {
+        long n = lat.getTotalCount();
+        System.out.printf("%-9s %8d %9.1f %6d %9.3f %9.3f %9.3f %9.3f %9.3f %11s%n",
+                name, n, n / seconds, errors,
+                ms(lat.getValueAtPercentile(50)), ms(lat.getValueAtPercentile(90)),
+                ms(lat.getValueAtPercentile(99)), ms(lat.getValueAtPercentile(99.9)),
+                ms(lat.getMaxValue()),
+                svc == null ? "-" : String.format("%.3f", ms(svc.getValueAtPercentile(99))));
+    }
+
+    private static double ms(long nanos) { return nanos / 1e6; }
+
+    /**
+     * Datos del catálogo usados para armar comandos (IDs, términos y tipos reales)
+     * y la sintaxis de cada servidor.
+     */
+    static class Workload {
+        final boolean shop;          // true = org.example (QUIT), false = org.cli (EXIT)
+        final int[] ids;
+        final String[] terms;
+        final String[] types;
+
+        Workload(boolean shop, int[] ids, String[] terms, String[] types) {
+            this.shop = shop;
+            this.ids = ids;
+            this.terms = terms;
+            this.types = types;
+        }
+
+        // Lee el mismo JSON que carga el servidor desde resources
+        static Workload fromResource(boolean shop, String path) throws IOException {
+            try (InputStream in = LoadGenerator.class.getResourceAsStream(path)) {
+                if (in == null) throw new IOException("No se encontró " + path);
+                JsonNode root = new ObjectMapper().readTree(in);
+                List<Integer> ids = new ArrayList<>();
+                Set<String> terms = new LinkedHashSet<>();
+                Set<String> types = new LinkedHashSet<>();
+                for (JsonNode p : root) {
+                    ids.add(p.get("id").asInt());
+                    terms.add(p.get("name").asText().split("\\s+")[0].toLowerCase(Locale.ROOT));
+                    types.add(p.get("type").asText());
+                }
+                return new Workload(shop, ids.stream().mapToInt(Integer::intValue).toArray(),
+                        terms.toArray(new String[0]), types.toArray(new String[0]));
+            }
+        }
+
+        String command(Command cmd, SplittableRandom rnd) {
+            return switch (cmd) {
+                case SEARCH -> "SEARCH " + terms[rnd.nextInt(terms.length)];
+                case LIST -> "LIST " + types[rnd.nextInt(types.length)];
+                case ADD -> "ADD " + ids[rnd.nextInt(ids.length)] + " 1";
+                case CHECKOUT -> "CHECKOUT";
+            };
+        }
+
+        String exitCommand() { return shop ? "QUIT" : "EXIT"; }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String target = "cli";
+        String host = "127.0.0.1";
+        Integer port = null;
+        int sessions = 16;
+        double rate = 500;
+        int duration = 30;
+        int warmup = 5;
+        String mixArg = "search=40,list=30,add=20,checkout=10";
+
+        for (int i = 0; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "--target" -> target = args[++i];
+                case "--host" -> host = args[++i];
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--sessions" -> sessions = Integer.parseInt(args[++i]);
+                case "--rate" -> rate = Double.parseDouble(args[++i]);
+                case "--duration" -> duration = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--mix" -> mixArg = args[++i];
+            }
+        }
+
+        boolean shop = target.equals("shop");
+        if (port == null) port = shop ? 5001 : 5006;
+        Workload workload = Workload.fromResource(shop, shop ? "/products.json" : "/plants.json");
+
+        new LoadGenerator(host, port, sessions, rate, duration, warmup, OpenLoop.parseMix(Command.class, mixArg), workload).run();
+    }
+}
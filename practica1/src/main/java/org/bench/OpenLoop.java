@@ -0,0 +1,168 @@
+package org.bench;
+
+import org.HdrHistogram.Histogram;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Calendario de lazo abierto compartido por LoadGenerator y HttpBenchmark.
+ *
+ * - Las operaciones se programan a una tasa fija global; la sesión idx atiende las
+ *   operaciones idx, idx+N, idx+2N... sin esperar a que terminen las anteriores
+ * - La latencia se mide desde el instante programado (sin coordinated omission) y el
+ *   tiempo de servicio desde que se envía; ambos por operación en HdrHistogram
+ * - Cada sesión lleva sus propios histogramas y contadores (sin contención) y se
+ *   combinan al final
+ * - La operación de cada instante se elige al azar según la mezcla de pesos
+ */
+final class OpenLoop<E extends Enum<E>> {
+    /**
+     * Lo que hace una sesión en cada instante programado
+     */
+    interface Session<E> {
+        /**
+         * Ejecuta op y devuelve su resultado, que se cuenta por código (p. ej. el estado HTTP).
+         * Una IOException termina la sesión
+         */
+        int execute(E op, SplittableRandom rnd) throws IOException;
+
+        int connects();     // conexiones abiertas hasta ahora
+
+        void close();
+    }
+
+    private final E[] ops;
+    private final int[] mix;            // peso acumulado por operación
+    private final int sessions;
+    private final double rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+
+    OpenLoop(Class<E> type, int[] weights, int sessions, double rate, int warmupSec, int durationSec) {
+        this.ops = type.getEnumConstants();
+        this.sessions = sessions;
+        this.rate = rate;
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSec);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSec);
+        this.mix = new int[weights.length];
+        int acc = 0;
+        for (int i = 0; i < weights.length; i++) {
+            acc += weights[i];
+            mix[i] = acc;
+        }
+        if (acc <= 0) throw new IllegalArgumentException("La mezcla de operaciones no puede ser vacía");
+    }
+
+    /**
+     * Corre las sesiones (una por hilo, creadas con open) y devuelve sus estadísticas combinadas.
+     * name se usa en los nombres de los hilos y en los mensajes de error
+     */
+    Stats run(String name, IntFunction<Session<E>> open) throws InterruptedException {
+        long interval = (long) (1_000_000_000L / rate);   // separación entre operaciones (global)
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        long end = start + warmupNanos + durationNanos;
+
+        Stats[] stats = new Stats[sessions];
+        Thread[] threads = new Thread[sessions];
+        for (int i = 0; i < sessions; i++) {
+            stats[i] = new Stats(ops.length);
+            final int idx = i;
+            threads[i] = new Thread(() -> runSession(name, idx, open.apply(idx), start, end, interval, stats[idx]),
+                    name.toLowerCase(Locale.ROOT) + "-" + i);
+            threads[i].start();
+        }
+        for (Thread t : threads) t.join();
+
+        Stats all = new Stats(ops.length);
+        for (Stats st : stats) all.add(st);
+        return all;
+    }
+
+    private void runSession(String name, int idx, Session<E> session, long start, long end, long interval, Stats st) {
+        SplittableRandom rnd = new SplittableRandom(idx * 7919L + 17);
+        long recordFrom = start + warmupNanos;
+        try {
+            for (long k = 0; ; k++) {
+                long intended = start + (k * sessions + idx) * interval;
+                if (intended >= end) break;
+
+                // Espera al instante programado (si vamos tarde, se envía de inmediato)
+                long now;
+                while ((now = System.nanoTime()) < intended)
+                    LockSupport.parkNanos(intended - now);
+
+                E op = pick(rnd);
+                long sent = System.nanoTime();
+                int outcome = session.execute(op, rnd);
+                long done = System.nanoTime();
+                if (intended < recordFrom) continue;
+
+                int o = op.ordinal();
+                st.latency[o].recordValue(done - intended);
+                st.service[o].recordValue(done - sent);
+                st.outcomes[o].merge(outcome, 1L, Long::sum);
+            }
+        } catch (IOException e) {
+            System.err.println("[" + name + "] sesión " + idx + ": " + e.getMessage());
+            st.failedSessions++;
+        } finally {
+            st.connects += session.connects();
+            session.close();
+        }
+    }
+
+    private E pick(SplittableRandom rnd) {
+        int r = rnd.nextInt(mix[mix.length - 1]);
+        for (int i = 0; i < mix.length; i++)
+            if (r < mix[i]) return ops[i];
+        return ops[0];
+    }
+
+    // "search=40,list=30,..." -> pesos en el orden de las constantes de type
+    static <E extends Enum<E>> int[] parseMix(Class<E> type, String arg) {
+        int[] weights = new int[type.getEnumConstants().length];
+        for (String part : arg.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("Mezcla inválida: " + part);
+            weights[Enum.valueOf(type, kv[0].trim().toUpperCase(Locale.ROOT)).ordinal()] = Integer.parseInt(kv[1].trim());
+        }
+        return weights;
+    }
+
+    /**
+     * Histogramas y conteo de resultados por operación (indexados por ordinal)
+     */
+    static final class Stats {
+        final Histogram[] latency;
+        final Histogram[] service;
+        final Map<Integer, Long>[] outcomes;
+        int connects;
+        int failedSessions;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Stats(int ops) {
+            latency = new Histogram[ops];
+            service = new Histogram[ops];
+            outcomes = new Map[ops];
+            for (int i = 0; i < ops; i++) {
+                latency[i] = new Histogram(3);
+                service[i] = new Histogram(3);
+                outcomes[i] = new TreeMap<>();
+            }
+        }
+
+        void add(Stats other) {
+            for (int i = 0; i < latency.length; i++) {
+                latency[i].add(other.latency[i]);
+                service[i].add(other.service[i]);
+                Map<Integer, Long> mine = outcomes[i];
+                other.outcomes[i].forEach((k, v) -> mine.merge(k, v, Long::sum));
+            }
+            connects += other.connects;
+            failedSessions += other.failedSessions;
+        }
+    }
+}
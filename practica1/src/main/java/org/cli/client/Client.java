@@ -1,7 +1,5 @@
 package org.cli.client;
 
-import java.io.*;
-import java.net.Socket;
 import java.util.Scanner;
 
 public class Client {
@@ -10,16 +8,14 @@ public class Client {
         final String HOST = "127.0.0.1";
         final int PORT = 5006;
 
-        // Abre el socket y streams (auto-flush en PrintWriter)
+        // Abre la conexión (socket y streams) con el servidor
         try(
-            Socket socket = new Socket(HOST, PORT);
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+            ShopConnection conn = new ShopConnection(HOST, PORT);
             Scanner sc = new Scanner(System.in)
         ) {
             // Mensajes de bienvenida del servidor
             System.out.println("Conectado al servidor en " + HOST + ":" + PORT);
-            System.out.println(in.readLine());
+            System.out.println(conn.getGreeting());
 
             // Mientras la sesión se encuentre activa
             while(true) {
@@ -28,25 +24,14 @@ public class Client {
                 String cmd = sc.nextLine().trim();   // Lee respuesta del usuario
                 if(cmd.isEmpty()) continue;
 
-                out.println(cmd);               // Envía comando del cliente al servidor
-
-
-                // Lee primera línea y comprueba si hay una conexión vigente
-                String res = in.readLine();
+                // Envía comando al servidor y lee la respuesta completa
+                String res = conn.send(cmd);
                 if(res == null) { 
                     System.out.println("¡Conexión perdida o finalizada!");
                      break;         
                 }
 
-                // Leer líneas de respuesta restantes
-                StringBuilder block = new StringBuilder(res);
-                while (in.ready()) {
-                    String line = in.readLine();
-                    if (line == null) break;
-                    block.append("\n").append(line);
-                }
-
-                System.out.println(block);
+                System.out.println(res);
                 // Fin de sesión si el servidor responde con el comando exit
                 if(res.equals("¡Sesión cerrada exitosamente!")) {
                     break;
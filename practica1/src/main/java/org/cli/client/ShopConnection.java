@@ -0,0 +1,41 @@
+package org.cli.client;
+
+import org.cli.server.LineProtocol;
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * Conexión con el servidor de la tienda (CLI o org.example): envía un comando
+ * y lee la respuesta completa hasta el terminador del protocolo.
+ * La usan los clientes interactivos y el generador de carga.
+ */
+public class ShopConnection implements Closeable {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final PrintWriter out;
+    private final String greeting;
+
+    // Abre el socket y lee el saludo inicial del servidor
+    public ShopConnection(String host, int port) throws IOException {
+        this.socket = new Socket(host, port);
+        this.socket.setTcpNoDelay(true);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        this.out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), false);
+        this.greeting = LineProtocol.readResponse(in);
+    }
+
+    // Envía un comando y devuelve la respuesta (null si el servidor cerró la conexión)
+    public String send(String cmd) throws IOException {
+        out.print(cmd);
+        out.print("\r\n");
+        out.flush();
+        return LineProtocol.readResponse(in);
+    }
+
+    public String getGreeting() { return greeting; }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,282 @@
+package org.cli.server;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bitácora de accesos asíncrona, compartida por los tres servidores.
+ *
+ * - Los threads que atienden clientes solo copian el registro (método, ruta, estado,
+ *   bytes, latencia) a una casilla de un buffer circular preasignado: sin locks,
+ *   sin consola y sin crear objetos
+ * - Un solo thread de fondo vacía el buffer por lotes a un archivo que rota por tamaño
+ * - Si el buffer está lleno el registro se descarta y se cuenta en dropped()
+ *
+ * Formato de cada línea:
+ * 2026-10-19 04:08:16.123 GET /api/products 200 1834 0.512
+ * (fecha, método o comando, ruta o argumentos, estado, bytes, latencia en ms)
+ * Los bytes son los que salieron al socket ya codificados (no caracteres de la respuesta);
+ * los servidores de texto los miden con CountingOutputStream
+ */
+public final class AccessLog implements Closeable {
+    private static final int CAPACITY = 8192;               // casillas (potencia de 2)
+    private static final int METHOD_CHARS = 16;
+    private static final int PATH_CHARS = 128;
+    private static final int BATCH = 1024;                  // registros por escritura
+    private static final long IDLE_PARK_NANOS = 5_000_000;  // espera del thread con el buffer vacío
+    private static final long MAX_FILE_BYTES = 10L * 1024 * 1024;
+    private static final int KEEP_FILES = 5;                // access.log.1 ... access.log.5
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    // Casilla del buffer: sequence indica si está libre o ya tiene un registro publicado
+    private static final class Slot {
+        volatile long sequence;
+        long timeMillis;
+        final char[] method = new char[METHOD_CHARS];
+        int methodLength;
+        final char[] path = new char[PATH_CHARS];
+        int pathLength;
+        int status;
+        long bytes;
+        long latencyNanos;
+    }
+
+    private final Slot[] slots = new Slot[CAPACITY];
+    private final int mask = CAPACITY - 1;
+    private final AtomicLong tail = new AtomicLong();   // siguiente casilla a reservar (productores)
+    private long head;                                  // siguiente casilla a leer (solo el thread de fondo)
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    private final Path file;
+    private OutputStream out;
+    private long fileBytes;
+    private final Thread drainer;
+    private volatile boolean closed;
+
+    private AccessLog(Path file) {
+        this.file = file;
+        for (int i = 0; i < CAPACITY; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+        drainer = new Thread(this::run, "access-log");
+        drainer.setDaemon(true);
+    }
+
+    /**
+     * Abre (o continúa) la bitácora logs/<name>-access.log
+     * El directorio se puede cambiar con -Daccesslog.dir=...
+     */
+    public static AccessLog open(String name) {
+        Path dir = Paths.get(System.getProperty("accesslog.dir", "logs"));
+        AccessLog log = new AccessLog(dir.resolve(name + "-access.log"));
+        log.drainer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(log::close));   // vacía lo pendiente al salir
+        return log;
+    }
+
+    /**
+     * Registra un acceso; nunca bloquea (si no hay espacio, se descarta)
+     */
+    public void log(String method, String path, int status, long bytes, long latencyNanos) {
+        int split = method == null ? 0 : method.length();
+        publish(method, 0, split, path, 0, path == null ? 0 : path.length(), status, bytes, latencyNanos);
+    }
+
+    /**
+     * Registra un comando de los servidores de texto: la primera palabra es el método
+     * y el resto los argumentos (se copian por rangos, sin substring)
+     */
+    public void logCommand(String line, int status, long bytes, long latencyNanos) {
+        int space = line.indexOf(' ');
+        int split = space == -1 ? line.length() : space;
+        publish(line, 0, split, line, Math.min(split + 1, line.length()), line.length(), status, bytes, latencyNanos);
+    }
+
+    private void publish(String method, int methodFrom, int methodTo, String path, int pathFrom, int pathTo,
+                         int status, long bytes, long latencyNanos) {
+        long pos = tail.get();
+        while (true) {
+            Slot slot = slots[(int) (pos & mask)];
+            long diff = slot.sequence - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slot.timeMillis = System.currentTimeMillis();
+                    slot.methodLength = copy(method, methodFrom, methodTo, slot.method);
+                    slot.pathLength = copy(path, pathFrom, pathTo, slot.path);
+                    slot.status = status;
+                    slot.bytes = bytes;
+                    slot.latencyNanos = latencyNanos;
+                    slot.sequence = pos + 1;    // publica el registro al thread de fondo
+                    return;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                dropped.increment();            // buffer lleno
+                return;
+            } else {
+                pos = tail.get();               // otro thread tomó la casilla
+            }
+        }
+    }
+
+    // Registros descartados por buffer lleno (o por error al escribir el archivo)
+    public long dropped() { return dropped.sum(); }
+
+    // Registros escritos al archivo
+    public long written() { return written.sum(); }
+
+    // Copia truncada; espacios y caracteres de control se cambian por '_' (una línea = un registro)
+    private static int copy(String s, int from, int to, char[] dst) {
+        if (s == null || from >= to) {
+            dst[0] = '-';
+            return 1;
+        }
+        int n = Math.min(to - from, dst.length);
+        s.getChars(from, from + n, dst, 0);
+        for (int i = 0; i < n; i++)
+            if (dst[i] <= ' ') dst[i] = '_';
+        return n;
+    }
+
+    /* THREAD DE FONDO */
+    private void run() {
+        StringBuilder batch = new StringBuilder(BATCH * 96);
+        while (true) {
+            int n = drain(batch);
+            if (n > 0) {
+                write(batch, n);
+            } else if (closed) {
+                break;
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        try {
+            if (out != null) out.close();
+        } catch (IOException ignored) {}
+    }
+
+    // Pasa hasta BATCH registros publicados al lote de texto y libera sus casillas
+    private int drain(StringBuilder sb) {
+        sb.setLength(0);
+        int n = 0;
+        while (n < BATCH) {
+            Slot slot = slots[(int) (head & mask)];
+            if (slot.sequence != head + 1) break;   // aún no hay registro publicado
+
+            TIME.formatTo(Instant.ofEpochMilli(slot.timeMillis), sb);
+            sb.append(' ').append(slot.method, 0, slot.methodLength)
+              .append(' ').append(slot.path, 0, slot.pathLength)
+              .append(' ').append(slot.status)
+              .append(' ').append(slot.bytes)
+              .append(' ');
+            long micros = slot.latencyNanos / 1000;
+            long fraction = micros % 1000;
+            sb.append(micros / 1000).append('.');
+            if (fraction < 100) sb.append('0');
+            if (fraction < 10) sb.append('0');
+            sb.append(fraction).append('\n');
+
+            slot.sequence = head + CAPACITY;        // la casilla queda libre para la siguiente vuelta
+            head++;
+            n++;
+        }
+        return n;
+    }
+
+    // Una escritura por lote; rota el archivo al pasar de MAX_FILE_BYTES
+    private void write(StringBuilder batch, int records) {
+        byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            if (out == null) openFile();
+            if (fileBytes + bytes.length > MAX_FILE_BYTES && fileBytes > 0) rotate();
+            out.write(bytes);
+            out.flush();
+            fileBytes += bytes.length;
+            written.add(records);
+        } catch (IOException e) {
+            dropped.add(records);
+            if (out != null) {
+                try { out.close(); } catch (IOException ignored) {}
+                out = null;     // se reintenta abrir en el siguiente lote
+            }
+        }
+    }
+
+    private void openFile() throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileBytes = Files.size(file);
+    }
+
+    // access.log -> access.log.1 -> ... -> access.log.KEEP_FILES (el más viejo se borra)
+    private void rotate() throws IOException {
+        out.close();
+        out = null;
+        Files.deleteIfExists(rotated(KEEP_FILES));
+        for (int i = KEEP_FILES - 1; i >= 1; i--) {
+            if (Files.exists(rotated(i)))
+                Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        openFile();
+    }
+
+    private Path rotated(int i) {
+        return file.resolveSibling(file.getFileName() + "." + i);
+    }
+
+    /**
+     * Cuenta los bytes escritos al socket (después de codificar el texto), para la columna
+     * de bytes: con acentos, caracteres y bytes no coinciden
+     */
+    public static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        public CountingOutputStream(OutputStream out) { super(out); }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        public long count() { return count; }
+    }
+
+    // Detiene el thread de fondo después de escribir lo pendiente
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,15 +5,27 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 /**
- * Lógica de negocio compartida entre el servidor CLI y la API HTTP
+ * Lógica de negocio compartida entre el servidor CLI, la tienda y la API HTTP.
+ * Todas las operaciones sobre un mismo carrito se serializan con su monitor;
+ * las existencias las protege el motor de inventario.
  */
 public class BusinessLogic {
-    private final Items items;
+    private static final String UNAVAILABLE_MESSAGE = "El inventario no está disponible por el momento, intenta de nuevo";
+
+    private final Inventory items;
     private final Map<Integer, Integer> cart;
+    // Dueño del carrito ante el inventario (con el inventario repartido, cada nodo lleva lo apartado por dueño)
+    private final String owner;
+
+    public BusinessLogic(Inventory items, Map<Integer, Integer> cart) {
+        this(items, cart, UUID.randomUUID().toString());
+    }
 
-    public BusinessLogic(Items items, Map<Integer, Integer> cart) {
+    // owner debe ser el mismo para todas las operaciones sobre cart (p. ej. el Session-Id)
+    public BusinessLogic(Inventory items, Map<Integer, Integer> cart, String owner) {
         this.items = items;
         this.cart = cart;
+        this.owner = owner;
     }
 
     // Buscar productos por nombre, marca o ID
@@ -31,84 +43,136 @@ public class BusinessLogic {
         return items.findByType(type);
     }
 
-    // Agregar producto al carrito
+    // Agregar producto al carrito (aparta las existencias)
     public AddToCartResult addToCart(int id, int quantity) {
-        int result = items.addToCart(id, quantity);
-
-        if (result == 0) {
-            return new AddToCartResult(false, "Producto no encontrado", null);
-        }
-        if (result == -1) {
-            return new AddToCartResult(false, "El producto no cuenta con suficientes existencias", null);
+        if (quantity <= 0) {
+            return new AddToCartResult(false, "La cantidad debe ser mayor a 0", null);
         }
 
-        int current = cart.getOrDefault(id, 0);
-        cart.put(id, current + quantity);
-        return new AddToCartResult(true, "Producto agregado correctamente al carrito!", null);
+        synchronized (cart) {
+            int result = items.reserve(owner, id, quantity);
+
+            if (result == Inventory.NOT_FOUND) {
+                return new AddToCartResult(false, "Producto no encontrado", null);
+            }
+            if (result == Inventory.INSUFFICIENT_STOCK) {
+                return new AddToCartResult(false, "El producto no cuenta con suficientes existencias", null);
+            }
+            if (result == Inventory.UNAVAILABLE) {
+                return new AddToCartResult(false, UNAVAILABLE_MESSAGE, null);
+            }
+
+            int current = cart.getOrDefault(id, 0);
+            cart.put(id, current + quantity);
+            return new AddToCartResult(true, "Producto agregado correctamente al carrito!", current + quantity);
+        }
     }
 
     // Ver carrito
     public Map<Integer, Integer> getCart() {
-        return new TreeMap<>(cart);
+        synchronized (cart) {
+            return new TreeMap<>(cart);
+        }
     }
 
     // Actualizar cantidad en el carrito
     public UpdateCartResult updateCart(int id, int quantity) {
-        if (!cart.containsKey(id)) {
-            return new UpdateCartResult(false, "Producto no se encuentra en el carrito!", null);
+        synchronized (cart) {
+            if (!cart.containsKey(id)) {
+                return new UpdateCartResult(false, "Producto no se encuentra en el carrito!", null);
+            }
+
+            if (quantity <= 0) {
+                items.release(owner, id, cart.get(id));
+                cart.remove(id);
+                return new UpdateCartResult(true, "Producto eliminado del carrito!", null);
+            }
+
+            int current = cart.get(id);
+            if (quantity < current) {
+                items.release(owner, id, current - quantity);
+            } else if (quantity > current) {
+                int wanted = quantity - current;
+                int taken = items.reserveUpTo(owner, id, wanted);
+                if (taken == Inventory.UNAVAILABLE) {
+                    return new UpdateCartResult(false, UNAVAILABLE_MESSAGE, null);
+                }
+                int available = Math.max(0, taken);
+                if (available < wanted) {
+                    cart.put(id, current + available);
+                    return new UpdateCartResult(false,
+                            "No hay suficientes existencias, se agregaron " + available + " al carrito!",
+                            available);
+                }
+            }
+
+            cart.put(id, quantity);
+            return new UpdateCartResult(true, "Cantidades actualizadas correctamente!", null);
         }
+    }
 
-        if (quantity <= 0) {
-            items.returnFromCart(id, cart.get(id));
-            cart.remove(id);
-            return new UpdateCartResult(true, "Producto eliminado del carrito!", null);
+    // Quitar un producto del carrito y regresar sus existencias
+    public boolean removeFromCart(int id) {
+        synchronized (cart) {
+            Integer qty = cart.remove(id);
+            if (qty == null) return false;
+            items.release(owner, id, qty);
+            return true;
         }
+    }
 
-        int current = cart.getOrDefault(id, 0);
-        int result = items.addToCart(id, quantity - current);
-
-        if (result == -1) {
-            int available = items.findById(id).getStock();
-            items.addToCart(id, available);
-            cart.put(id, current + available);
-            return new UpdateCartResult(false,
-                    "No hay suficientes existencias, se agregaron " + available + " al carrito!",
-                    available);
+    // Regresa todo el carrito al inventario (fin de sesión)
+    public void releaseCart() {
+        synchronized (cart) {
+            for (Map.Entry<Integer, Integer> entry : cart.entrySet()) {
+                items.release(owner, entry.getKey(), entry.getValue());
+            }
+            cart.clear();
         }
-
-        cart.put(id, quantity);
-        return new UpdateCartResult(true, "Cantidades actualizadas correctamente!", null);
     }
 
-    // Realizar checkout
+    // Realizar checkout: las existencias ya están apartadas, solo se confirma la compra
+    // (en dos fases si el inventario está repartido: preparar en cada nodo y luego confirmar)
     public CheckoutResult checkout() {
-        if (cart.isEmpty()) {
-            return new CheckoutResult(false, "El carrito está vacío", null, null, 0.0);
+        synchronized (cart) {
+            if (cart.isEmpty()) {
+                return new CheckoutResult(false, "El carrito está vacío", null, null, 0.0);
+            }
+            if (!items.prepare(owner, cart)) {
+                return new CheckoutResult(false,
+                        "Algunas existencias apartadas ya no están disponibles, actualiza el carrito",
+                        null, null, 0.0);
+            }
+
+            String datetime = LocalDateTime.now()
+                    .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+
+            List<CheckoutItem> checkoutItems = new ArrayList<>();
+            double total = 0.0;
+
+            for (Map.Entry<Integer, Integer> entry : cart.entrySet()) {
+                Product p = items.findById(entry.getKey());
+                if (p == null) continue;
+                double subtotal = p.getPrice() * entry.getValue();
+                total += subtotal;
+
+                checkoutItems.add(new CheckoutItem(
+                        p.getId(),
+                        p.getName(),
+                        entry.getValue(),
+                        p.getPrice(),
+                        subtotal
+                ));
+            }
+
+            if (!items.commit(owner, cart)) {
+                return new CheckoutResult(false,
+                        "No se pudo confirmar la compra, no se cobró nada; intenta de nuevo", null, null, 0.0);
+            }
+            cart.clear();
+            return new CheckoutResult(true, "Compra finalizada exitosamente",
+                    datetime, checkoutItems, total);
         }
-
-        String datetime = LocalDateTime.now()
-                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-
-        List<CheckoutItem> checkoutItems = new ArrayList<>();
-        double total = 0.0;
-
-        for (Map.Entry<Integer, Integer> entry : cart.entrySet()) {
-            Product p = items.findById(entry.getKey());
-            double subtotal = p.getPrice() * entry.getValue();
-            total += subtotal;
-
-            checkoutItems.add(new CheckoutItem(
-                    p.getId(),
-                    p.getName(),
-                    entry.getValue(),
-                    p.getPrice(),
-                    subtotal
-            ));
-        }
-
-        cart.clear();
-        return new CheckoutResult(true, "Compra finalizada exitosamente",
-                datetime, checkoutItems, total);
     }
 
     // Obtener producto por ID
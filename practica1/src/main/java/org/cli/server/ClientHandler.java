@@ -2,20 +2,26 @@ package org.cli.server;
 import java.net.Socket;
 import java.util.*;
 import java.io.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 // Maneja la conexión de un cliente con el servidor
 public class ClientHandler {
     /* ATRIBUTOS */
     private final Socket socket;
-    private final Items items;
-    private final Map<Integer, Integer> cart = new TreeMap<>();
+    private final BusinessLogic logic;
+    private final AccessLog accessLog;
+    private final ReplicaClient replica;    // null si este servidor no es réplica
 
     /* CONSTRUCTORES */
-    public ClientHandler(Socket socket, Items items) {
+    public ClientHandler(Socket socket, Inventory items, AccessLog accessLog) {
+        this(socket, items, accessLog, null);
+    }
+
+    // Réplica de solo lectura: SEARCH y LIST mientras el atraso esté acotado; el carrito no se atiende
+    public ClientHandler(Socket socket, Inventory items, AccessLog accessLog, ReplicaClient replica) {
         this.socket = socket;
-        this.items = items;
+        this.logic = new BusinessLogic(items, new TreeMap<>());
+        this.accessLog = accessLog;
+        this.replica = replica;
     }
 
     /* FUNCIONES */
@@ -23,14 +29,20 @@ public class ClientHandler {
     public void handle() {
         String line;
         try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true)) {
+             AccessLog.CountingOutputStream sent = new AccessLog.CountingOutputStream(socket.getOutputStream());
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(sent), true)) {
 
-            out.println("¡Bienvenido a nuestra tienda! ^.^");
+            LineProtocol.writeResponse(out, "¡Bienvenido a nuestra tienda! ^.^");
 
             // Recepción de comandos
             while ((line = in.readLine()) != null) {
-                String res = handleCommand(line.trim());
-                out.println(res);
+                long start = System.nanoTime();
+                String command = line.trim();
+                String res = handleCommand(command);
+                long sentBefore = sent.count();
+                LineProtocol.writeResponse(out, res);   // respuesta + terminador "."
+                accessLog.logCommand(command, res.regionMatches(true, 0, "Error", 0, 5) ? 400 : 200,
+                        sent.count() - sentBefore, System.nanoTime() - start);
 
                 if (res.equals("¡Sesión cerrada exitosamente!")) {
                     handleExit();
@@ -59,6 +71,17 @@ public class ClientHandler {
         if(parts.length > 1)
             value = String.join(" ", Arrays.copyOfRange(parts, 1, parts.length));
 
+        if(replica != null) {
+            switch(cmd) {
+                case "ADD", "VIEW", "UPDATE", "CHECKOUT" -> {
+                    return "Error: este servidor es una réplica de solo lectura, usa el primario para comprar";
+                }
+                case "SEARCH", "LIST" -> {
+                    if(!replica.fresh()) return "Error: la réplica está atrasada, intenta de nuevo en un momento";
+                }
+            }
+        }
+
         switch(cmd) {
             case "SEARCH" -> { return handleSearch(value); }
             case "LIST" -> { return handleList(value); } 
@@ -78,8 +101,7 @@ public class ClientHandler {
     private String handleSearch(String value) {
         if(value.isEmpty()) return "Error: SEARCH [name|brand|ID]";
         
-        Map<Integer, Product> res = items.find(value);
-        res = items.find(value);
+        Map<Integer, Product> res = logic.searchProducts(value);
         if(res.isEmpty())
             return "Lo sentimos, no encontramos ningún producto";
 
@@ -99,12 +121,12 @@ public class ClientHandler {
     private String handleList(String value) {
         Map<Integer, Product> res;
         if(value.isEmpty()) {
-            res = items.getItems();
+            res = logic.listAllProducts();
             if(res.isEmpty())
                 return "Lo sentimos, el inventario está vacío :(";
         }
         else {
-            res = items.findByType(value);
+            res = logic.listProductsByType(value);
             if(res.isEmpty()) 
                 return "Lo sentimos, no encontramos el tipo solicitado :(";
         }
@@ -125,22 +147,22 @@ public class ClientHandler {
     private String handleAdd(String[] parts) {
         if(parts.length != 3)
             return "Error: ADD [ID] [quantity]";
-        
-        int id = Integer.parseInt(parts[1]);
-        int qty = Integer.parseInt(parts[2]);
 
-        int ok = items.addToCart(id, qty);
-        if(ok == 0)       return "Error: Producto no encontrado";
-        else if(ok == -1) return "Error: El producto no cuenta con suficientes existencias";
-        else {
-            int curr = cart.getOrDefault(id, 0);
-            cart.put(id, curr + qty);
-            return "Producto agregado correctamente al carrito!";
+        int id, qty;
+        try {
+            id = Integer.parseInt(parts[1]);
+            qty = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            return "Error: ID y cantidad deben ser números";
         }
+
+        BusinessLogic.AddToCartResult res = logic.addToCart(id, qty);
+        return res.success ? res.message : "Error: " + res.message;
     }
 
     // Maneja el comando de ver el carrito
     private String handleView() {
+        Map<Integer, Integer> cart = logic.getCart();
         if(cart.isEmpty())
             return "¡El carrito está vacío!";
         
@@ -149,7 +171,7 @@ public class ClientHandler {
                     cart.size() == 1 ? "" : "s")
         );
         for(Map.Entry<Integer, Integer> entry : cart.entrySet()) {
-            Product p = items.findById(entry.getKey());
+            Product p = logic.getProductById(entry.getKey());
             sb.append(String.format("#%d - %s (x%d)\n", entry.getKey(), p.getName(), entry.getValue()));
         }
         return sb.toString().trim();
@@ -159,73 +181,52 @@ public class ClientHandler {
     private String handleUpdate(String[] parts) {
         if(parts.length != 3)
             return "Error: UPDATE [ID] [qty]";
-        if(cart.isEmpty())
+        if(logic.getCart().isEmpty())
             return "El carrito está vacío";
-        
-        int id = Integer.parseInt(parts[1]);
-        int qty = Integer.parseInt(parts[2]);
 
-        if(!cart.containsKey(id))
-            return "Error: Producto no se encuentra en el carrito!";
-        
-        if(qty <= 0) {
-            items.returnFromCart(id, cart.get(id));
-            cart.remove(id);
-            return "Producto eliminado del carrito!";
-        }
-        else {
-            int curr = cart.getOrDefault(id, 0);
-            int ok = items.addToCart(id, qty - curr);
-            if (ok == -1) {
-                int mn = items.findById(id).getStock();
-                items.addToCart(id, mn);
-                cart.put(id, curr + mn);
-                return "No hay suficientes existencias, se agregaron " + mn + " al carrito!";
-            }
-            cart.put(id, qty);
-            return "Cantidades agregadas correctamente!";
+        int id, qty;
+        try {
+            id = Integer.parseInt(parts[1]);
+            qty = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            return "Error: ID y cantidad deben ser números";
         }
+
+        BusinessLogic.UpdateCartResult res = logic.updateCart(id, qty);
+        if(!res.success && res.actualQuantity == null)
+            return "Error: " + res.message;
+        return res.message;
     }
 
     // Maneja el comando para finalizar la compra
     private String handleCheckout() {
-        if(cart.isEmpty())
-            return "Error: El carrito está vacío";
+        BusinessLogic.CheckoutResult res = logic.checkout();
+        if(!res.success)
+            return "Error: " + res.message;
 
-        String datetime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         StringBuilder sb = new StringBuilder();
         sb.append("================================================\n");
         sb.append("TICKET\n");
-        sb.append(datetime).append("\n");
+        sb.append(res.datetime).append("\n");
         sb.append("------------------------------------------------\n");
 
         // Cabecera de la tabla
         sb.append(String.format("%-4s | %-25s | %-3s | %-8s\n", "ID", "Producto", "Qty", "Subtotal"));
         sb.append("------------------------------------------------\n");
 
-        double total = 0.0;
-
-        for(Map.Entry<Integer, Integer> entry : cart.entrySet()) {
-            Product p = items.findById(entry.getKey());
-            double curr = p.getPrice() * entry.getValue();
-            sb.append(String.format("%-4d | %-25s | %-3d | $%-7.2f\n", p.getId(), p.getName(), entry.getValue(), curr));
-            total += curr;
+        for(BusinessLogic.CheckoutItem item : res.items) {
+            sb.append(String.format("%-4d | %-25s | %-3d | $%-7.2f\n", item.id, item.name, item.quantity, item.subtotal));
         }
 
         sb.append("------------------------------------------------\n");
-        sb.append(String.format("%-35s | $%-7.2f\n", "TOTAL", total));
+        sb.append(String.format("%-35s | $%-7.2f\n", "TOTAL", res.total));
         sb.append("================================================\n");
-        cart.clear();
 
         return sb.toString();
     }
 
+    // Si el carrito no está vacío, regresa sus elementos
     private void handleExit() {
-        // Si el carrito no está vacío, regresa sus elementos
-        if(cart.isEmpty()) return;
-        for(Map.Entry<Integer, Integer> entry : cart.entrySet()) {
-            items.returnFromCart(entry.getKey(), entry.getValue());
-        }
-        cart.clear();
+        logic.releaseCart();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,130 @@
+package org.cli.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bitácora en disco de las decisiones de este nodo como coordinador del checkout en dos
+ * fases (ShardedInventory).
+ *
+ * - Antes de enviar el primer COMMIT de una tx se escribe "C tx nodos dueño" y se fuerza
+ *   a disco: si el nodo se cae, al arrancar sigue enviando COMMIT a los que faltaban
+ * - Cada nodo que confirma se anota con "D tx nodo" (sin forzar: perderlo solo repite
+ *   un COMMIT, que el participante contesta igual)
+ * - Una tx sin registro "C" no se confirmó: abortarla es seguro (abort presunto). Si el "C"
+ *   no se pudo forzar a disco la tx se aborta y se anota "A tx", que anula un "C" que sí
+ *   haya quedado escrito
+ * - Al abrir se reescribe el archivo solo con lo pendiente
+ *
+ * Una línea por registro, campos separados por tabulador (el dueño va al final).
+ */
+final class DecisionLog {
+    // COMMIT decidido que todavía no confirman todos los nodos
+    record Pending(String tx, String owner, Set<Integer> shards) {}
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final FileChannel channel;
+
+    private DecisionLog(Path path) throws IOException {
+        replay(path);
+        // Compactación: archivo nuevo con lo pendiente, que reemplaza al anterior de forma atómica
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Pending p : pending.values()) write(out, commitRecord(p.tx, p.owner, p.shards));
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    static DecisionLog open(Path path) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        return new DecisionLog(path);
+    }
+
+    private void replay(Path path) throws IOException {
+        if (!Files.exists(path)) return;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String[] f = line.split("\t", 4);
+            try {
+                if (f[0].equals("C") && f.length == 4) {
+                    Set<Integer> shards = ConcurrentHashMap.newKeySet();
+                    for (String s : f[2].split(",")) shards.add(Integer.parseInt(s));
+                    pending.put(f[1], new Pending(f[1], f[3], shards));
+                } else if (f[0].equals("D") && f.length == 3) {
+                    done(f[1], Integer.parseInt(f[2]), false);
+                } else if (f[0].equals("A") && f.length == 2) {
+                    pending.remove(f[1]);
+                }
+            } catch (NumberFormatException ignored) {
+                // línea cortada por una caída a mitad de la escritura
+            }
+        }
+    }
+
+    /**
+     * Registra la decisión COMMIT de tx para los nodos shards; cuando regresa ya está en disco.
+     * Si falla la tx queda abortada (no hay que enviar COMMIT)
+     */
+    synchronized void commit(String tx, String owner, Collection<Integer> shards) throws IOException {
+        try {
+            write(channel, commitRecord(tx, owner, shards));
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                write(channel, "A\t" + tx + "\n");
+                channel.force(false);
+            } catch (IOException ignored) {
+                // el disco no responde: lo que haya quedado del "C" se recupera como pendiente al arrancar
+            }
+            throw e;
+        }
+        Set<Integer> left = ConcurrentHashMap.newKeySet();
+        left.addAll(shards);
+        pending.put(tx, new Pending(tx, owner, left));
+    }
+
+    // El nodo shard ya confirmó tx
+    void done(String tx, int shard) {
+        done(tx, shard, true);
+    }
+
+    private synchronized void done(String tx, int shard, boolean append) {
+        Pending p = pending.get(tx);
+        if (p == null || !p.shards.remove(shard)) return;
+        if (p.shards.isEmpty()) pending.remove(tx);
+        if (!append) return;
+        try {
+            write(channel, "D\t" + tx + "\t" + shard + "\n");
+        } catch (IOException e) {
+            // al arrancar se repetirá el COMMIT a ese nodo
+            System.err.println("Bitácora de decisiones: " + e.getMessage());
+        }
+    }
+
+    boolean isCommitted(String tx) {
+        return pending.containsKey(tx);
+    }
+
+    Collection<Pending> pending() {
+        return pending.values();
+    }
+
+    private static String commitRecord(String tx, String owner, Collection<Integer> shards) {
+        StringJoiner nodes = new StringJoiner(",");
+        for (int s : shards) nodes.add(String.valueOf(s));
+        return "C\t" + tx + "\t" + nodes + "\t" + owner + "\n";
+    }
+
+    private static void write(FileChannel out, String record) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(record.getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) out.write(buf);
+    }
+}
@@ -0,0 +1,59 @@
+package org.cli.server;
+
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Motor de inventario compartido por el servidor CLI, la tienda (org.example)
+ * y la API HTTP. Un solo modelo de reservas: las existencias se apartan al
+ * agregar al carrito y se regresan al quitar o al cerrar la sesión.
+ */
+public interface Inventory {
+    // Resultados de reserve()
+    int NOT_FOUND = 0;
+    int INSUFFICIENT_STOCK = -1;
+    int RESERVED = 1;
+    int UNAVAILABLE = -2;   // inventario repartido: el nodo dueño no respondió (también en reserveUpTo)
+
+    // Encuentra un producto por ID (null si no existe)
+    Product findById(int id);
+
+    // Todos los productos ordenados por ID (vista de solo lectura)
+    NavigableMap<Integer, Product> getItems();
+
+    // Productos que coinciden con la consulta (nombre, marca, tipo, descripción o ID),
+    // del más al menos relevante (mapa de solo lectura con la posición de cada uno)
+    SearchResults find(String query);
+
+    // Productos de un tipo (sin distinguir mayúsculas), ordenados por ID
+    NavigableMap<Integer, Product> findByType(String type);
+
+    // Aparta qty existencias de forma atómica: RESERVED, NOT_FOUND o INSUFFICIENT_STOCK
+    int reserve(int id, int qty);
+
+    // Aparta hasta qty existencias y devuelve cuántas se apartaron (-1 si no existe)
+    int reserveUpTo(int id, int qty);
+
+    // Regresa existencias apartadas al inventario
+    boolean release(int id, int qty);
+
+    /* CARRITOS CON DUEÑO Y COMPRA EN DOS FASES
+     * Con el inventario repartido entre procesos (ShardedInventory) cada nodo lleva la cuenta
+     * de lo apartado por cada carrito (owner) y el checkout se confirma en dos fases.
+     * En un solo proceso lo apartado ya es definitivo: owner se ignora y las fases no hacen nada.
+     */
+    default int reserve(String owner, int id, int qty) { return reserve(id, qty); }
+
+    default int reserveUpTo(String owner, int id, int qty) { return reserveUpTo(id, qty); }
+
+    default boolean release(String owner, int id, int qty) { return release(id, qty); }
+
+    // Fase 1: cada nodo verifica que siga apartado lo del carrito y lo bloquea (false = no se puede comprar)
+    default boolean prepare(String owner, Map<Integer, Integer> cart) { return true; }
+
+    // Fase 2: lo apartado queda vendido (false = no se pudo confirmar y la compra se anuló; lo apartado sigue apartado)
+    default boolean commit(String owner, Map<Integer, Integer> cart) { return true; }
+
+    // Suscribe un listener a los cambios de existencias (reserve, reserveUpTo, release)
+    void addStockListener(StockListener listener);
+}
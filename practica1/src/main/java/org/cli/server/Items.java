@@ -1,37 +1,73 @@
 package org.cli.server;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.InputStream;
 
-public class Items {
-    private final Map<Integer, Product> items = new HashMap<>();
+/**
+ * Motor de inventario concurrente e indexado.
+ * - Índice principal ordenado por ID (lecturas sin bloqueo)
+ * - Índice secundario por tipo, para LIST sin recorrer todo el catálogo
+ * - Búsqueda de texto con relevancia (SearchIndex) y caché de consultas recientes
+ * - Las existencias se modifican de forma atómica por producto y cada cambio
+ *   se avisa a los StockListener suscritos
+ */
+public class Items implements Inventory {
+    private final ConcurrentSkipListMap<Integer, Product> items = new ConcurrentSkipListMap<>();
+    private final Map<String, ConcurrentSkipListMap<Integer, Product>> byType = new ConcurrentHashMap<>();
+    // Versión del catálogo: cambia con cada add() e invalida el índice de búsqueda y el caché
+    private final AtomicLong version = new AtomicLong();
+    private volatile SearchIndex searchIndex;
+    private final QueryCache queryCache = new QueryCache(1024);
+    private final List<StockListener> stockListeners = new CopyOnWriteArrayList<>();
+    private String source = "vacío";   // de dónde se cargó (el servidor lo muestra al arrancar)
 
     /* CONSTRUCTORES */
     // Cargar inventario por defecto si no hay un JSON disponible
+    // (no escribe en consola: el servidor muestra source() una vez al arrancar)
     public Items() {}
     public Items(String path) throws Exception {
         // Intenta cargar archivo JSON
-        System.out.println(path);
+        String problem;
         try(InputStream in = Items.class.getResourceAsStream(path)) {
             if(in != null) {
-                System.out.println("Inventario cargado desde: resources:" + path);
                 Items loaded = fromJson(in);
-                this.items.putAll(loaded.items);
+                loaded.items.values().forEach(p -> add(p.getId(), p));
+                source = "resources:" + path;
                 return;
             }
-            System.err.println("Archivo " + path + " JSON no encontrado");
+            problem = "archivo " + path + " JSON no encontrado";
         } catch(Exception e) {
-            System.err.println("No fue posible cargar el archivo JSON: " + e.getMessage());
+            problem = "no fue posible cargar el archivo JSON: " + e.getMessage();
         }
 
         // Carga inventario por defecto
-        System.out.println("Inventario por defecto cargado");
-        this.items.putAll(defaultItems().items);
+        defaultItems().items.values().forEach(p -> add(p.getId(), p));
+        source = "inventario por defecto (" + problem + ")";
     }
 
     /* FUNCIONES */
+    // De dónde se cargó el inventario: "resources:/ruta.json" o el motivo del inventario por defecto
+    public String source() {
+        return source;
+    }
+
+    // Copia independiente del catálogo (productos nuevos): lo que se aparte en la copia no toca este
+    public Items copy() {
+        Items it = new Items();
+        it.source = source;
+        for (Product p : items.values()) {
+            it.add(p.getId(), new Product(p.getId(), p.getName(), p.getType(), p.getBrand(), p.getInfo(),
+                    p.getPrice(), p.getStock(), p.getImageUrl()));
+        }
+        return it;
+    }
+
     // Carga el inventario con un JSON
     public static Items fromJson(InputStream in) throws Exception {
         ObjectMapper mapper = new ObjectMapper();
@@ -58,8 +94,9 @@ public class Items {
                 throw new IllegalArgumentException("Negative stock for product in JSON (id=" + p.getId() + ")");
 
             // Detecta IDs duplicados
-            if (it.items.putIfAbsent(p.getId(), p) != null)
+            if (it.items.containsKey(p.getId()))
                 throw new IllegalArgumentException("ID de producto duplicado en JSON: " + p.getId());
+            it.add(p.getId(), p);
         }
         return it;
     }
@@ -77,60 +114,114 @@ public class Items {
         return it;
     }
 
-    // Agrega o actualiza valores al inventario
+    // Agrega o actualiza valores al inventario (y sus índices)
     public void add(int id, Product p) {
-        items.put(id, p);
+        Product old = items.put(id, p);
+        if (old != null) {
+            Map<Integer, Product> oldType = byType.get(typeKey(old.getType()));
+            if (oldType != null) oldType.remove(id);
+        }
+        byType.computeIfAbsent(typeKey(p.getType()), k -> new ConcurrentSkipListMap<>()).put(id, p);
+        version.incrementAndGet();
     }
 
     // Encuentra un producto por ID
+    @Override
     public Product findById(int id) {
         return items.get(id);
     }
 
-    // Encuentra un producto por nombre, marca o ID
-    public Map<Integer, Product> find(String name) {
-        String newName = name.toLowerCase();
-        Map<Integer, Product> aux = new LinkedHashMap<>();
-        boolean isID = name.matches("\\d+");     // Validamos si es un número
+    // Busca por nombre, marca, tipo, descripción o ID (resultados por relevancia)
+    // Una consulta repetida sale del caché mientras el catálogo no cambie
+    @Override
+    public SearchResults find(String query) {
+        String key = SearchIndex.normalize(query);
+        if (key.isEmpty()) return SearchResults.EMPTY;
+
+        long current = version.get();
+        SearchResults cached = queryCache.get(key, current);
+        if (cached != null) return cached;
+
+        SearchIndex index = searchIndex();
+        SearchResults result = index.search(key);
+        queryCache.put(key, index.version, result);
+        return result;
+    }
 
-        for (Map.Entry<Integer, Product> entry : items.entrySet()) {
-            Product p = entry.getValue();
-            if(p.getName().toLowerCase().contains(newName)  ||
-                    p.getBrand().toLowerCase().contains(newName) ||
-                    (isID && Integer.parseInt(name) == entry.getKey()))
-                aux.put(entry.getKey(), p);
+    // Índice de búsqueda de la versión actual (se reconstruye si el catálogo cambió)
+    SearchIndex searchIndex() {
+        SearchIndex index = searchIndex;
+        if (index != null && index.version == version.get()) return index;
+        synchronized (this) {
+            long current = version.get();   // se lee antes de recorrer: si add() corre a la vez, se reconstruye otra vez
+            index = searchIndex;
+            if (index == null || index.version != current) {
+                index = SearchIndex.build(items.values(), current);
+                searchIndex = index;
+            }
+            return index;
         }
-
-        return aux;
     }
 
-    // Encuentra un producto por tipo
-    public Map<Integer, Product> findByType(String type) {
-        Map<Integer, Product> aux = new LinkedHashMap<>();
-        for (Map.Entry<Integer, Product> entry : items.entrySet()) {
-            Product p = entry.getValue();
-            if(p.getType().equalsIgnoreCase(type))
-                aux.put(entry.getKey(), p);
-        }
+    // Encuentra un producto por tipo usando el índice secundario
+    @Override
+    public NavigableMap<Integer, Product> findByType(String type) {
+        NavigableMap<Integer, Product> res = byType.get(typeKey(type));
+        return res == null ? Collections.emptyNavigableMap() : Collections.unmodifiableNavigableMap(res);
+    }
 
-        return aux;
+    // Aparta productos del inventario para un carrito
+    @Override
+    public int reserve(int id, int qty) {
+        Product p = items.get(id);
+        if (p == null) return NOT_FOUND;
+        if (!p.tryTake(qty)) return INSUFFICIENT_STOCK;
+        stockChanged(p);
+        return RESERVED;
     }
 
-    // Añade productos al carrito y ajusta existencias
-    public int addToCart(int id, int qty) {
-        if(items.get(id) == null) return 0;
-        if(items.get(id).getStock() - qty < 0) return -1;
-        items.get(id).changeStock(-qty);
-        return 1;
+    // Aparta lo que haya disponible, hasta qty
+    @Override
+    public int reserveUpTo(int id, int qty) {
+        Product p = items.get(id);
+        if (p == null) return -1;
+        int taken = p.takeUpTo(qty);
+        if (taken > 0) stockChanged(p);
+        return taken;
     }
 
     // Regresa productos del carrito al inventario y ajusta existencias
-    public boolean returnFromCart(int id, int qty) {
-        if(items.get(id) == null) return false;
-        items.get(id).changeStock(Math.abs(qty));
+    @Override
+    public boolean release(int id, int qty) {
+        Product p = items.get(id);
+        if (p == null) return false;
+        p.changeStock(Math.abs(qty));
+        stockChanged(p);
         return true;
     }
 
+    // Actualiza la copia local de un producto que administra otro nodo (ShardedInventory)
+    void mirrorStock(int id, int stock) {
+        Product p = items.get(id);
+        if (p == null || p.getStock() == stock) return;
+        p.setStock(stock);
+        stockChanged(p);
+    }
+
+    @Override
+    public void addStockListener(StockListener listener) {
+        stockListeners.add(listener);
+    }
+
+    private void stockChanged(Product p) {
+        for (StockListener l : stockListeners) l.stockChanged(p);
+    }
+
     // Getters
-    public Map<Integer, Product> getItems() {return items; }
-}
\ No newline at end of file
+    @Override
+    public NavigableMap<Integer, Product> getItems() { return Collections.unmodifiableNavigableMap(items); }
+
+    private static String typeKey(String type) {
+        return type == null ? "" : type.trim().toLowerCase(Locale.ROOT);
+    }
+}
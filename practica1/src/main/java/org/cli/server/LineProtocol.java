@@ -0,0 +1,49 @@
+package org.cli.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Delimitación de respuestas del protocolo de texto (servidor CLI y tienda).
+ * Cada respuesta puede tener varias líneas y termina con una línea que solo
+ * contiene "."; las líneas que empiezan con "." se escapan duplicando el punto
+ * (igual que SMTP). Así el cliente sabe dónde termina sin adivinar con ready().
+ */
+public final class LineProtocol {
+    public static final String END = ".";
+
+    private LineProtocol() {}
+
+    // Escribe una respuesta completa y su terminador
+    public static void writeResponse(PrintWriter out, String response) {
+        int start = 0;
+        int len = response.length();
+        while (start <= len) {
+            int nl = response.indexOf('\n', start);
+            int end = nl == -1 ? len : nl;
+            if (end > start && response.charAt(start) == '.') out.print('.');
+            out.print(response.substring(start, end));
+            out.print("\r\n");
+            if (nl == -1) break;
+            start = nl + 1;
+        }
+        out.print(END + "\r\n");
+        out.flush();
+    }
+
+    // Lee una respuesta completa (sin el terminador); null si se cerró la conexión
+    public static String readResponse(BufferedReader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        String line;
+        boolean first = true;
+        while ((line = in.readLine()) != null) {
+            if (line.equals(END)) return sb.toString();
+            if (line.startsWith(".")) line = line.substring(1);
+            if (!first) sb.append('\n');
+            sb.append(line);
+            first = false;
+        }
+        return first ? null : sb.toString();
+    }
+}
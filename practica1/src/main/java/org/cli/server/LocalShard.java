@@ -0,0 +1,229 @@
+package org.cli.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Partición que administra este nodo: existencias en Items y lo apartado por cada dueño.
+ *
+ * - Lo apartado por un dueño expira si no se usa en HOLD_TTL (un nodo coordinador que
+ *   se cae no deja existencias apartadas para siempre)
+ * - Cada checkout es una transacción (tx) del coordinador. Lo preparado (fase 1) queda
+ *   bloqueado: no se regresa, no expira y no se cancela solo, hasta que llegue COMMIT o
+ *   ABORT de esa tx. Si tarda más de PREPARE_TTL, ShardedInventory le pregunta al
+ *   coordinador qué decidió (inDoubt)
+ * - Un COMMIT repetido (se perdió la respuesta) responde true mientras se recuerde la tx
+ *   (HOLD_TTL); un COMMIT de una tx que no está preparada responde false
+ * - Cada RESERVE trae un número de petición que se recuerda REQUEST_TTL: repetirlo no
+ *   aparta dos veces, y CANCEL deshace exactamente lo que apartó (el coordinador lo envía
+ *   si no supo la respuesta), aunque el RESERVE llegue después del CANCEL
+ * - Todas las modificaciones de un dueño pasan por compute() del mapa: son atómicas
+ *   respecto al barrido de expirados
+ */
+final class LocalShard implements Shard {
+    static final long HOLD_TTL_NANOS = Long.getLong("shard.holdTtlSeconds", 1800) * 1_000_000_000L;
+    static final long PREPARE_TTL_NANOS = Long.getLong("shard.prepareTtlSeconds", 300) * 1_000_000_000L;
+    static final long REQUEST_TTL_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final Items items;
+    private final int self, shards;
+    private final Map<String, Holds> holds = new ConcurrentHashMap<>();
+    // tx confirmadas -> cuándo (para contestar un COMMIT repetido)
+    private final Map<String, Long> committed = new ConcurrentHashMap<>();
+    // Peticiones RESERVE recientes: lo que apartaron y las canceladas (se modifican dentro de compute del dueño)
+    private final Map<Request, Applied> applied = new ConcurrentHashMap<>();
+    private final Map<Request, Long> cancelled = new ConcurrentHashMap<>();
+
+    // Lo apartado por un dueño
+    private static final class Holds {
+        final Map<Integer, Integer> qty = new HashMap<>();
+        final Map<String, Prepared> prepared = new HashMap<>();    // tx -> lo que bloquea
+        long touched;
+
+        // Lo apartado de id que no está bloqueado por un prepare
+        int free(int id) {
+            int n = qty.getOrDefault(id, 0);
+            for (Prepared p : prepared.values()) n -= p.lines.getOrDefault(id, 0);
+            return n;
+        }
+    }
+
+    private record Prepared(Map<Integer, Integer> lines, long at) {}
+
+    private record Request(String owner, long id) {}
+
+    private record Applied(int id, int taken, int result, long at) {}
+
+    // Un prepare que lleva más de PREPARE_TTL sin decisión
+    record InDoubt(String owner, String tx) {}
+
+    LocalShard(Items items, int self, int shards) {
+        this.items = items;
+        this.self = self;
+        this.shards = shards;
+    }
+
+    @Override
+    public int reserve(String owner, long request, int id, int qty) {
+        return take(owner, request, id, qty, false);
+    }
+
+    @Override
+    public int reserveUpTo(String owner, long request, int id, int qty) {
+        return take(owner, request, id, qty, true);
+    }
+
+    private int take(String owner, long request, int id, int qty, boolean upTo) {
+        Request r = new Request(owner, request);
+        int[] result = new int[1];
+        holds.compute(owner, (k, h) -> {
+            Applied before = applied.get(r);
+            if (before != null) {       // RESERVE repetido
+                result[0] = before.result;
+                return h;
+            }
+            if (cancelled.containsKey(r)) {
+                result[0] = upTo ? 0 : Inventory.INSUFFICIENT_STOCK;
+                return h;
+            }
+            int taken;
+            if (upTo) {
+                taken = result[0] = items.reserveUpTo(id, qty);
+            } else {
+                result[0] = items.reserve(id, qty);
+                taken = result[0] == Inventory.RESERVED ? qty : 0;
+            }
+            if (taken <= 0) return h;
+            long now = System.nanoTime();
+            if (h == null) h = new Holds();
+            h.qty.merge(id, taken, Integer::sum);
+            h.touched = now;
+            applied.put(r, new Applied(id, taken, result[0], now));
+            return h;
+        });
+        return result[0];
+    }
+
+    @Override
+    public void cancel(String owner, long request) {
+        Request r = new Request(owner, request);
+        holds.compute(owner, (k, h) -> {
+            cancelled.put(r, System.nanoTime());
+            Applied a = applied.remove(r);
+            if (a == null || h == null) return h;
+            int held = h.qty.getOrDefault(a.id, 0);
+            int n = Math.min(a.taken, h.free(a.id));
+            if (n > 0) {
+                items.release(a.id, n);
+                if (held == n) h.qty.remove(a.id); else h.qty.put(a.id, held - n);
+            }
+            return h.qty.isEmpty() ? null : h;
+        });
+    }
+
+    // Solo se regresa lo que no está bloqueado por un prepare
+    @Override
+    public boolean release(String owner, int id, int qty) {
+        boolean[] released = new boolean[1];
+        holds.computeIfPresent(owner, (k, h) -> {
+            int held = h.qty.getOrDefault(id, 0);
+            int n = Math.min(Math.abs(qty), h.free(id));
+            if (n > 0) {
+                items.release(id, n);
+                if (held == n) h.qty.remove(id); else h.qty.put(id, held - n);
+                released[0] = true;
+            }
+            h.touched = System.nanoTime();
+            return h.qty.isEmpty() ? null : h;
+        });
+        return released[0];
+    }
+
+    @Override
+    public boolean prepare(String owner, String tx, Map<Integer, Integer> lines) {
+        boolean[] ok = new boolean[1];
+        holds.computeIfPresent(owner, (k, h) -> {
+            if (h.prepared.containsKey(tx)) {   // PREPARE repetido
+                ok[0] = true;
+                return h;
+            }
+            for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+                if (h.free(line.getKey()) < line.getValue()) return h;
+            }
+            h.prepared.put(tx, new Prepared(new HashMap<>(lines), System.nanoTime()));
+            ok[0] = true;
+            return h;
+        });
+        return ok[0];
+    }
+
+    // Lo bloqueado por tx queda vendido; false si tx no está preparada ni se confirmó antes
+    @Override
+    public boolean commit(String owner, String tx) {
+        boolean[] ok = new boolean[1];
+        holds.computeIfPresent(owner, (k, h) -> {
+            Prepared p = h.prepared.remove(tx);
+            if (p == null) return h;
+            for (Map.Entry<Integer, Integer> line : p.lines.entrySet()) {
+                int left = h.qty.getOrDefault(line.getKey(), 0) - line.getValue();
+                if (left > 0) h.qty.put(line.getKey(), left); else h.qty.remove(line.getKey());
+            }
+            committed.put(tx, System.nanoTime());
+            ok[0] = true;
+            h.touched = System.nanoTime();
+            return h.qty.isEmpty() ? null : h;
+        });
+        return ok[0] || committed.containsKey(tx);
+    }
+
+    @Override
+    public void abort(String owner, String tx) {
+        holds.computeIfPresent(owner, (k, h) -> {
+            if (h.prepared.remove(tx) != null) h.touched = System.nanoTime();
+            return h;
+        });
+    }
+
+    // Prepares que llevan más de PREPARE_TTL esperando la fase 2
+    List<InDoubt> inDoubt() {
+        long now = System.nanoTime();
+        List<InDoubt> out = new ArrayList<>();
+        for (String owner : holds.keySet()) {
+            holds.computeIfPresent(owner, (k, h) -> {
+                h.prepared.forEach((tx, p) -> {
+                    if (now - p.at > PREPARE_TTL_NANOS) out.add(new InDoubt(owner, tx));
+                });
+                return h;
+            });
+        }
+        return out;
+    }
+
+    // Regresa lo apartado que expiró (lo que tiene un prepare pendiente no expira)
+    void expire() {
+        long now = System.nanoTime();
+        for (String owner : holds.keySet()) {
+            holds.computeIfPresent(owner, (k, h) -> {
+                if (!h.prepared.isEmpty() || now - h.touched <= HOLD_TTL_NANOS) return h;
+                h.qty.forEach(items::release);
+                return null;
+            });
+        }
+        committed.values().removeIf(at -> now - at > HOLD_TTL_NANOS);
+        applied.values().removeIf(a -> now - a.at > REQUEST_TTL_NANOS);
+        cancelled.values().removeIf(at -> now - at > REQUEST_TTL_NANOS);
+    }
+
+    // Existencias actuales de los productos de esta partición (para las copias de los otros nodos)
+    Map<Integer, Integer> snapshot() {
+        Map<Integer, Integer> stock = new HashMap<>();
+        for (Product p : items.getItems().values()) {
+            if (ShardedInventory.shardOf(p.getId(), shards) == self) stock.put(p.getId(), p.getStock());
+        }
+        return stock;
+    }
+}
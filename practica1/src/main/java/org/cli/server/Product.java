@@ -8,7 +8,7 @@ public class Product {
     private String brand;
     private String info;
     private double price;
-    private int stock;
+    private volatile int stock;
 
     private String imageUrl;
 
@@ -26,9 +26,29 @@ public class Product {
     }
 
     // Funciones
-    public void changeStock(int qty) {
+    public synchronized void changeStock(int qty) {
         this.stock += qty;
     }
+
+    // Fija las existencias (copia de un producto cuyo dueño es otro nodo)
+    synchronized void setStock(int stock) {
+        this.stock = stock;
+    }
+
+    // Descuenta qty existencias solo si alcanzan
+    public synchronized boolean tryTake(int qty) {
+        if (stock - qty < 0) return false;
+        stock -= qty;
+        return true;
+    }
+
+    // Descuenta hasta qty existencias y devuelve cuántas se tomaron
+    public synchronized int takeUpTo(int qty) {
+        int taken = Math.max(0, Math.min(qty, stock));
+        stock -= taken;
+        return taken;
+    }
+
     @Override
     public String toString() {
         return String.format(
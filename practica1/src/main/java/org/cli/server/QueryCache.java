@@ -0,0 +1,61 @@
+package org.cli.server;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caché de resultados de búsqueda por consulta normalizada (LRU aproximado).
+ *
+ * Un acierto es una lectura del ConcurrentHashMap y una marca de tiempo, sin locks.
+ * Cada resultado guarda la versión del catálogo con la que se calculó: si el catálogo
+ * cambió, la entrada ya no sirve. Al pasar de la capacidad se descarta la cuarta parte
+ * menos usada recientemente (un solo thread a la vez).
+ */
+final class QueryCache {
+    private static final class Entry {
+        final long version;
+        final SearchResults result;
+        volatile long lastUsed = System.nanoTime();
+
+        Entry(long version, SearchResults result) {
+            this.version = version;
+            this.result = result;
+        }
+    }
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    QueryCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // Resultado guardado para esta versión del catálogo, o null
+    SearchResults get(String query, long version) {
+        Entry e = entries.get(query);
+        if (e == null || e.version != version) return null;
+        e.lastUsed = System.nanoTime();
+        return e.result;
+    }
+
+    void put(String query, long version, SearchResults result) {
+        entries.put(query, new Entry(version, result));
+        if (entries.size() > capacity) evict();
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) return;
+        try {
+            // Umbral: el último uso del 25% más viejo
+            long[] used = entries.values().stream().mapToLong(e -> e.lastUsed).toArray();
+            if (used.length <= capacity) return;
+            Arrays.sort(used);
+            long threshold = used[used.length / 4];
+            entries.values().removeIf(e -> e.lastUsed - threshold <= 0);
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.cli.server;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Réplica de solo lectura: sigue la bitácora de replicación del primario (ReplicationLog)
+ * y aplica los cambios de existencias a su propia copia de Items.
+ *
+ * - Se reconecta sola y continúa desde la última secuencia aplicada; el primario
+ *   decide si le alcanza con los registros en memoria o le envía una foto
+ * - Atraso acotado: si no llega nada del primario (registros o latidos) en
+ *   MAX_STALENESS_MS, fresh() es false y los servidores dejan de atender lecturas
+ *
+ * El catálogo (nombres, precios...) se carga del mismo JSON que el primario; solo se replican existencias.
+ */
+public final class ReplicaClient {
+    public static final long MAX_STALENESS_MS = Long.getLong("replica.maxStalenessMs", 2000);
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int READ_TIMEOUT_MS = 5 * ReplicationLog.HEARTBEAT_MS;
+    private static final int RECONNECT_MS = 1000;
+
+    private final Items items;
+    private final InetSocketAddress primary;
+    private long epoch;                 // solo los usa el thread de la réplica
+    private long applied;               // última secuencia aplicada
+    private volatile long lastHeard;    // nanoTime del último mensaje; 0 = aún sin foto
+
+    private ReplicaClient(Items items, InetSocketAddress primary) {
+        this.items = items;
+        this.primary = primary;
+    }
+
+    /**
+     * Empieza a seguir al primario en un thread de fondo
+     */
+    public static ReplicaClient start(Items items, InetSocketAddress primary) {
+        ReplicaClient replica = new ReplicaClient(items, primary);
+        Thread t = new Thread(replica::run, "replica");
+        t.setDaemon(true);
+        t.start();
+        return replica;
+    }
+
+    // Milisegundos desde el último mensaje del primario (Long.MAX_VALUE si nunca se sincronizó)
+    public long lagMillis() {
+        long heard = lastHeard;
+        return heard == 0 ? Long.MAX_VALUE : (System.nanoTime() - heard) / 1_000_000L;
+    }
+
+    // true si las existencias locales tienen a lo más MAX_STALENESS_MS de atraso
+    public boolean fresh() {
+        return lagMillis() <= MAX_STALENESS_MS;
+    }
+
+    private void run() {
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(primary, CONNECT_TIMEOUT_MS);
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+                follow(socket);
+            } catch (IOException e) {
+                // primario caído o sin latidos: se reintenta
+            }
+            try {
+                Thread.sleep(RECONNECT_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void follow(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeLong(epoch);
+        out.writeLong(applied);
+        out.flush();
+
+        while (true) {
+            int type = in.read();
+            if (type == -1) return;
+            switch (type) {
+                case ReplicationLog.SNAPSHOT -> {
+                    long snapshotEpoch = in.readLong();
+                    long seq = in.readLong();
+                    int n = in.readInt();
+                    for (int i = 0; i < n; i++) items.mirrorStock(in.readInt(), in.readInt());
+                    epoch = snapshotEpoch;
+                    applied = seq;
+                }
+                case ReplicationLog.RECORDS -> {
+                    long first = in.readLong();
+                    int n = in.readInt();
+                    if (first != applied + 1) throw new IOException("Secuencia fuera de orden: " + first);
+                    for (int i = 0; i < n; i++) items.mirrorStock(in.readInt(), in.readInt());
+                    applied = first + n - 1;
+                }
+                case ReplicationLog.HEARTBEAT -> in.readLong();
+                default -> throw new IOException("Mensaje desconocido: " + type);
+            }
+            if (epoch != 0) lastHeard = System.nanoTime();
+        }
+    }
+}
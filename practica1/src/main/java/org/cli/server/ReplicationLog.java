@@ -0,0 +1,179 @@
+package org.cli.server;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bitácora de replicación del primario: cada cambio de existencias recibe un número
+ * de secuencia y se envía en orden, por TCP, a las réplicas de solo lectura (ReplicaClient).
+ *
+ * - Un registro es (id, existencias actuales): aplicarlo dos veces da lo mismo
+ * - Se guardan los últimos CAPACITY registros en memoria; una réplica que se reconecta
+ *   continúa desde su última secuencia, y si ya no está en memoria (o se atrasó más
+ *   de CAPACITY registros) recibe una foto completa de existencias (SNAPSHOT)
+ * - Las secuencias valen dentro de una época (una ejecución del primario): una réplica
+ *   nueva, o que viene de un primario anterior, siempre empieza con una foto
+ * - Sin cambios, cada HEARTBEAT_MS se envía la secuencia actual: la réplica mide
+ *   así qué tan atrasada puede estar
+ * - Registrar un cambio no toma locks (el checkout del primario no espera a la réplica):
+ *   la secuencia se aparta con un AtomicLong y el registro se publica en su casilla del
+ *   anillo con escrituras volátiles (seqlock por casilla). Los threads que envían revisan
+ *   el anillo solos y duermen PARK_NANOS cuando no hay nada nuevo
+ *
+ * Al conectar la réplica envía su época y su última secuencia: epoch(long) seq(long) (0 0 = nada)
+ * Mensajes del primario (DataOutputStream):
+ * SNAPSHOT   epoch(long) seq(long) n(int) n x [id(int) stock(int)]
+ * RECORDS    firstSeq(long) n(int) n x [id(int) stock(int)]
+ * HEARTBEAT  seq(long)
+ */
+public final class ReplicationLog implements StockListener {
+    static final byte SNAPSHOT = 1;
+    static final byte RECORDS = 2;
+    static final byte HEARTBEAT = 3;
+    static final int HEARTBEAT_MS = 200;
+    private static final int CAPACITY = 1 << 16;   // potencia de 2
+    private static final int BATCH = 1024;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Items items;
+    private final long epoch = System.currentTimeMillis();
+    // Última secuencia apartada (0 = ninguna); un registro apartado puede no estar publicado todavía
+    private final AtomicLong claimed = new AtomicLong();
+    // Por casilla: la secuencia publicada (0 = se está escribiendo) y el registro id<<32 | existencias
+    private final AtomicLongArray seqs = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray records = new AtomicLongArray(CAPACITY);
+
+    private ReplicationLog(Items items) {
+        this.items = items;
+    }
+
+    /**
+     * Empieza a registrar los cambios de items y acepta réplicas en port
+     */
+    public static ReplicationLog start(Items items, int port) throws IOException {
+        ReplicationLog log = new ReplicationLog(items);
+        items.addStockListener(log);
+        ServerSocket serverSocket = new ServerSocket(port);
+        Thread acceptor = new Thread(() -> {
+            while (true) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread t = new Thread(() -> log.serve(socket), "replication-sender");
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException e) {
+                    if (serverSocket.isClosed()) return;
+                }
+            }
+        }, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return log;
+    }
+
+    // Las existencias se leen después de apartar la secuencia: el registro con la secuencia más
+    // alta de un producto tiene el valor posterior a su último cambio, aunque dos cambios avisen
+    // en otro orden (cada cambio ocurre antes de que su aviso aparte la suya)
+    @Override
+    public void stockChanged(Product product) {
+        long seq = claimed.incrementAndGet();
+        int slot = (int) (seq & (CAPACITY - 1));
+        long record = (long) product.getId() << 32 | (product.getStock() & 0xFFFFFFFFL);
+        seqs.set(slot, 0);
+        records.set(slot, record);
+        seqs.set(slot, seq);
+    }
+
+    /**
+     * Copia los registros publicados desde first (a lo más BATCH, sin huecos)
+     * @return cuántos se copiaron, o -1 si first ya se sobrescribió (la réplica necesita una foto)
+     */
+    private int read(long first, int[] batchIds, int[] batchStocks) {
+        int n = 0;
+        while (n < BATCH) {
+            long seq = first + n;
+            int slot = (int) (seq & (CAPACITY - 1));
+            long before = seqs.get(slot);
+            long record = records.get(slot);
+            if (before != seq || seqs.get(slot) != seq) {
+                // Todavía no se publica (se envía en la siguiente vuelta) o ya lo sobrescribió seq + CAPACITY
+                if (before > seq || claimed.get() - seq >= CAPACITY) return -1;
+                break;
+            }
+            batchIds[n] = (int) (record >>> 32);
+            batchStocks[n] = (int) record;
+            n++;
+        }
+        return n;
+    }
+
+    // Un thread por réplica: foto o registros pendientes, después registros nuevos conforme llegan
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setTcpNoDelay(true);
+            boolean sameEpoch = in.readLong() == epoch;
+            long next = in.readLong() + 1;      // siguiente secuencia que le falta a la réplica
+            if (!sameEpoch) next = -1;          // se fuerza la foto
+            int[] batchIds = new int[BATCH];
+            int[] batchStocks = new int[BATCH];
+
+            long lastSent = System.nanoTime();
+            while (true) {
+                long current = claimed.get();
+                // secuencia desconocida (otra época o más adelante) o ya sobrescrita
+                int n = next < 1 || next > current + 1 || current - next >= CAPACITY
+                        ? -1 : read(next, batchIds, batchStocks);
+
+                if (n < 0) {
+                    next = writeSnapshot(out) + 1;
+                } else if (n > 0) {
+                    out.writeByte(RECORDS);
+                    out.writeLong(next);
+                    out.writeInt(n);
+                    for (int i = 0; i < n; i++) {
+                        out.writeInt(batchIds[i]);
+                        out.writeInt(batchStocks[i]);
+                    }
+                    next += n;
+                } else if (System.nanoTime() - lastSent >= TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MS)) {
+                    out.writeByte(HEARTBEAT);
+                    out.writeLong(next - 1);
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                    continue;
+                }
+                out.flush();
+                lastSent = System.nanoTime();
+            }
+        } catch (IOException ignored) {
+            // la réplica se desconectó; al volver continúa desde su última secuencia
+        }
+    }
+
+    /**
+     * Foto de todas las existencias; devuelve la secuencia que representa.
+     * Se toma la secuencia ANTES de leer: todo cambio hasta ella ya ocurrió (se aparta después
+     * de cambiar), y uno que ocurra mientras se recorre vuelve a enviarse como registro
+     * (aplicarlo de nuevo no cambia nada)
+     */
+    private long writeSnapshot(DataOutputStream out) throws IOException {
+        long at = claimed.get();
+        Product[] products = items.getItems().values().toArray(new Product[0]);
+        out.writeByte(SNAPSHOT);
+        out.writeLong(epoch);
+        out.writeLong(at);
+        out.writeInt(products.length);
+        for (Product p : products) {
+            out.writeInt(p.getId());
+            out.writeInt(p.getStock());
+        }
+        return at;
+    }
+}
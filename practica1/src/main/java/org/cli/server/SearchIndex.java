@@ -0,0 +1,370 @@
+package org.cli.server;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Índice de búsqueda de texto completo sobre nombre, marca, tipo e info.
+ *
+ * - Índice invertido: término -> productos, con el peso BM25 ya calculado por producto
+ *   (cada campo pesa distinto: un término en el nombre vale más que en la descripción)
+ * - Prefijos: el vocabulario está ordenado, "orq" encuentra "orquidea" por búsqueda binaria
+ * - Subcadenas: si no hay exacta ni prefijo, los trigramas del vocabulario encuentran los
+ *   términos que contienen la palabra ("ctus" -> "cactus")
+ * - Errores de dedo: trigramas del vocabulario para elegir candidatos y distancia de
+ *   edición acotada para confirmarlos ("lavnda" -> "lavanda")
+ * - Mayúsculas y acentos no importan ("orquidea" encuentra "Orquídea")
+ *
+ * Es inmutable: Items construye uno nuevo cuando cambia el catálogo (version).
+ */
+final class SearchIndex {
+    // Campos indexados y su peso
+    private static final int FIELDS = 4;    // name, brand, type, info
+    private static final float[] FIELD_WEIGHT = {3.0f, 2.0f, 1.5f, 1.0f};
+    // Parámetros de BM25
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    // Coincidencias aproximadas valen menos que la exacta
+    private static final float PREFIX_FACTOR = 0.7f;
+    private static final float SUBSTRING_FACTOR = 0.6f;
+    private static final float FUZZY_FACTOR = 0.5f;
+    private static final int MIN_PREFIX = 2;            // "o" no expande a todo el vocabulario
+    private static final int MIN_SUBSTRING = 3;         // un trigrama completo
+    private static final int MIN_FUZZY = 4;             // palabras cortas: solo exacta o prefijo
+    private static final int MAX_EXPANSIONS = 64;       // términos por prefijo o por error de dedo
+    // Un ID exacto siempre queda primero
+    private static final float ID_BOOST = 1_000_000f;
+    private static final int MAX_WORDS = 32;
+
+    // Términos de un producto con su peso BM25 (sin idf)
+    private static final class Posting {
+        final int[] docs;
+        final float[] weights;
+
+        Posting(int[] docs, float[] weights) {
+            this.docs = docs;
+            this.weights = weights;
+        }
+    }
+
+    // Arreglos de trabajo por hilo (puntaje por producto), reutilizados entre consultas:
+    // una consulta sin caché no reserva memoria proporcional al catálogo
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    final long version;
+    private final Product[] docs;           // ordenados por ID
+    private final int[] ids;
+    private final Map<String, Posting> postings;
+    private final String[] terms;           // vocabulario ordenado
+    private final Map<String, int[]> trigrams;  // trigrama -> posiciones en terms
+
+    private SearchIndex(long version, Product[] docs, Map<String, Posting> postings,
+                        String[] terms, Map<String, int[]> trigrams) {
+        this.version = version;
+        this.docs = docs;
+        this.ids = new int[docs.length];
+        for (int i = 0; i < docs.length; i++) ids[i] = docs[i].getId();
+        this.postings = postings;
+        this.terms = terms;
+        this.trigrams = trigrams;
+    }
+
+    /* CONSTRUCCIÓN */
+    // products debe venir ordenado por ID (como el índice principal de Items)
+    static SearchIndex build(Collection<Product> products, long version) {
+        Product[] docs = products.toArray(new Product[0]);
+        int n = docs.length;
+
+        // 1a pasada: longitud promedio de cada campo (normalización de BM25)
+        double[] avg = new double[FIELDS];
+        for (Product p : docs) {
+            String[] fields = fields(p);
+            for (int f = 0; f < FIELDS; f++) avg[f] += tokens(fields[f]).size();
+        }
+        for (int f = 0; f < FIELDS; f++) avg[f] = n == 0 || avg[f] == 0 ? 1 : avg[f] / n;
+
+        // 2a pasada: frecuencia de cada término por campo -> peso del producto para ese término
+        Map<String, PostingBuilder> builders = new HashMap<>();
+        Map<String, int[]> tf = new HashMap<>();
+        int[] length = new int[FIELDS];
+        for (int d = 0; d < n; d++) {
+            tf.clear();
+            String[] fields = fields(docs[d]);
+            for (int f = 0; f < FIELDS; f++) {
+                List<String> words = tokens(fields[f]);
+                length[f] = words.size();
+                for (String w : words) tf.computeIfAbsent(w, k -> new int[FIELDS])[f]++;
+            }
+            for (Map.Entry<String, int[]> e : tf.entrySet()) {
+                float weight = 0;
+                for (int f = 0; f < FIELDS; f++) {
+                    int freq = e.getValue()[f];
+                    if (freq == 0) continue;
+                    float norm = K1 * (1 - B + B * (float) (length[f] / avg[f]));
+                    weight += FIELD_WEIGHT[f] * freq * (K1 + 1) / (freq + norm);
+                }
+                builders.computeIfAbsent(e.getKey(), k -> new PostingBuilder()).add(d, weight);
+            }
+        }
+
+        Map<String, Posting> postings = new HashMap<>(builders.size() * 2);
+        builders.forEach((term, b) -> postings.put(term, b.build()));
+
+        // Vocabulario ordenado y trigramas (los números no se corrigen por errores de dedo)
+        String[] terms = postings.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        Map<String, IntList> grams = new HashMap<>();
+        for (int t = 0; t < terms.length; t++) {
+            if (isNumber(terms[t])) continue;
+            for (String g : trigramsOf(terms[t])) grams.computeIfAbsent(g, k -> new IntList()).add(t);
+        }
+        Map<String, int[]> trigrams = new HashMap<>(grams.size() * 2);
+        grams.forEach((g, list) -> trigrams.put(g, list.toArray()));
+
+        return new SearchIndex(version, docs, postings, terms, trigrams);
+    }
+
+    private static String[] fields(Product p) {
+        return new String[]{p.getName(), p.getBrand(), p.getType(), p.getInfo()};
+    }
+
+    /* BÚSQUEDA */
+    /**
+     * Productos que coinciden con la consulta (ya normalizada), del más al menos relevante
+     * Cada palabra suma el puntaje de su mejor coincidencia (exacta, prefijo o con error);
+     * los productos que coinciden con más palabras de la consulta quedan antes
+     */
+    SearchResults search(String normalizedQuery) {
+        String[] words = normalizedQuery.split(" ");
+        if (words.length > MAX_WORDS) words = Arrays.copyOf(words, MAX_WORDS);
+        int n = docs.length;
+        Scratch scratch = SCRATCH.get().reserve(n);
+        float[] score = scratch.score;
+        byte[] matched = scratch.matched;
+        float[] wordScore = scratch.wordScore;
+        IntList candidates = scratch.candidates;
+        IntList touched = scratch.touched;
+
+        for (String word : words) {
+            touched.clear();
+            // Mejor coincidencia de esta palabra por producto
+            for (Expansion e : expand(word)) {
+                Posting p = postings.get(e.term);
+                float idf = idf(p.docs.length, n);
+                for (int i = 0; i < p.docs.length; i++) {
+                    int d = p.docs[i];
+                    float s = e.factor * idf * p.weights[i];
+                    if (wordScore[d] == 0) touched.add(d);
+                    if (s > wordScore[d]) wordScore[d] = s;
+                }
+            }
+            // ID exacto
+            if (isNumber(word) && word.length() <= 9) {
+                int d = Arrays.binarySearch(ids, Integer.parseInt(word));
+                if (d >= 0) {
+                    if (wordScore[d] == 0) touched.add(d);
+                    wordScore[d] += ID_BOOST;
+                }
+            }
+            for (int i = 0; i < touched.size; i++) {
+                int d = touched.data[i];
+                if (matched[d] == 0) candidates.add(d);
+                score[d] += wordScore[d];
+                matched[d]++;
+                wordScore[d] = 0;
+            }
+        }
+
+        // Orden: puntaje descendente, después ID ascendente (llave única de 64 bits)
+        // Solo se limpian las posiciones tocadas para dejar los arreglos listos para la siguiente
+        long[] keys = new long[candidates.size];
+        for (int i = 0; i < candidates.size; i++) {
+            int d = candidates.data[i];
+            float s = score[d] * matched[d] / words.length;
+            keys[i] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(s)) << 32) | d;
+            score[d] = 0;
+            matched[d] = 0;
+        }
+        Arrays.sort(keys);
+
+        Product[] ranked = new Product[keys.length];
+        for (int i = 0; i < keys.length; i++) ranked[i] = docs[(int) keys[i]];
+        return new SearchResults(ranked);
+    }
+
+    // Término del vocabulario que cuenta como coincidencia de una palabra de la consulta
+    private record Expansion(String term, float factor) {}
+
+    private List<Expansion> expand(String word) {
+        List<Expansion> out = new ArrayList<>();
+        if (postings.containsKey(word)) out.add(new Expansion(word, 1f));
+
+        // Prefijo: rango del vocabulario ordenado que empieza con la palabra
+        if (word.length() >= MIN_PREFIX) {
+            int i = Arrays.binarySearch(terms, word);
+            if (i < 0) i = -i - 1;
+            else i++;   // la exacta ya se agregó
+            for (int added = 0; i < terms.length && terms[i].startsWith(word) && added < MAX_EXPANSIONS; i++, added++)
+                out.add(new Expansion(terms[i], PREFIX_FACTOR));
+        }
+
+        // Subcadena: los términos que la contienen tienen todos sus trigramas; se recorre la
+        // lista del trigrama menos frecuente y se confirma con contains
+        if (out.isEmpty() && word.length() >= MIN_SUBSTRING && !isNumber(word)) {
+            int[] rarest = null;
+            for (int i = 0; i + 3 <= word.length(); i++) {
+                int[] list = trigrams.get(word.substring(i, i + 3));
+                if (list == null) { rarest = null; break; }
+                if (rarest == null || list.length < rarest.length) rarest = list;
+            }
+            if (rarest != null) {
+                for (int t : rarest) {
+                    if (out.size() >= MAX_EXPANSIONS) break;
+                    if (terms[t].contains(word)) out.add(new Expansion(terms[t], SUBSTRING_FACTOR));
+                }
+            }
+        }
+
+        // Errores de dedo: candidatos que comparten trigramas, confirmados con distancia de edición
+        if (out.isEmpty() && word.length() >= MIN_FUZZY && !isNumber(word)) {
+            int maxEdits = word.length() >= 8 ? 2 : 1;
+            List<String> grams = trigramsOf(word);
+            // Cada edición (o transposición) destruye como mucho 4 trigramas
+            int needed = Math.max(1, grams.size() - 4 * maxEdits);
+            Map<Integer, Integer> shared = new HashMap<>();
+            for (String g : grams) {
+                int[] list = trigrams.get(g);
+                if (list == null) continue;
+                for (int t : list) shared.merge(t, 1, Integer::sum);
+            }
+            for (Map.Entry<Integer, Integer> e : shared.entrySet()) {
+                if (out.size() >= MAX_EXPANSIONS) break;
+                String term = terms[e.getKey()];
+                if (e.getValue() >= needed && Math.abs(term.length() - word.length()) <= maxEdits
+                        && editDistance(word, term, maxEdits) <= maxEdits)
+                    out.add(new Expansion(term, FUZZY_FACTOR));
+            }
+        }
+        return out;
+    }
+
+    private static float idf(int docFreq, int n) {
+        return (float) Math.log(1 + (n - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    /* TEXTO */
+    /**
+     * Forma canónica de una consulta: minúsculas, sin acentos, solo letras y dígitos,
+     * palabras separadas por un espacio (también es la llave del caché)
+     */
+    static String normalize(String text) {
+        return String.join(" ", tokens(text));
+    }
+
+    static List<String> tokens(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;   // acento separado
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                out.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) out.add(word.toString());
+        return out;
+    }
+
+    private static boolean isNumber(String s) {
+        for (int i = 0; i < s.length(); i++)
+            if (!Character.isDigit(s.charAt(i))) return false;
+        return !s.isEmpty();
+    }
+
+    // Trigramas con bordes marcados: "rosa" -> "$ro", "ros", "osa", "sa$"
+    private static List<String> trigramsOf(String term) {
+        String padded = "$" + term + "$";
+        List<String> out = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) out.add(padded.substring(i, i + 3));
+        return out;
+    }
+
+    // Distancia de Damerau-Levenshtein (transposiciones adyacentes), cortando al pasar de max
+    static int editDistance(String a, String b, int max) {
+        int[] prev2 = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] cur = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1))
+                    v = Math.min(v, prev2[j - 2] + 1);
+                cur[j] = v;
+                rowMin = Math.min(rowMin, v);
+            }
+            if (rowMin > max) return max + 1;
+            int[] t = prev2; prev2 = prev; prev = cur; cur = t;
+        }
+        return prev[b.length()];
+    }
+
+    /* ESTRUCTURAS AUXILIARES */
+    // Lista de int que crece sin boxing
+    private static final class IntList {
+        int[] data = new int[8];
+        int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        void clear() { size = 0; }
+
+        int[] toArray() { return Arrays.copyOf(data, size); }
+    }
+
+    // Arreglos de trabajo de search(): en cero entre consultas, crecen con el catálogo
+    private static final class Scratch {
+        float[] score = new float[0];
+        byte[] matched = new byte[0];
+        float[] wordScore = new float[0];
+        final IntList candidates = new IntList();
+        final IntList touched = new IntList();
+
+        Scratch reserve(int n) {
+            if (score.length < n) {
+                score = new float[n];
+                matched = new byte[n];
+                wordScore = new float[n];
+            }
+            candidates.clear();
+            touched.clear();
+            return this;
+        }
+    }
+
+    private static final class PostingBuilder {
+        final IntList docs = new IntList();
+        float[] weights = new float[8];
+
+        void add(int doc, float weight) {
+            if (docs.size == weights.length) weights = Arrays.copyOf(weights, weights.length * 2);
+            weights[docs.size] = weight;
+            docs.add(doc);
+        }
+
+        Posting build() {
+            return new Posting(docs.toArray(), Arrays.copyOf(weights, docs.size));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.cli.server;
+
+import java.util.*;
+
+/**
+ * Resultado de una búsqueda: mapa de solo lectura ID -> producto que se recorre del
+ * más al menos relevante.
+ *
+ * Además del mapa guarda la posición (rank) de cada producto, para que la paginación
+ * siga desde un cursor sin volver a recorrer las páginas anteriores.
+ */
+public final class SearchResults extends AbstractMap<Integer, Product> {
+    static final SearchResults EMPTY = new SearchResults(new Product[0]);
+
+    private final Product[] ranked;                 // del más al menos relevante
+    private final Map<Integer, Integer> rankById;   // ID -> posición en ranked
+
+    SearchResults(Product[] ranked) {
+        this.ranked = ranked;
+        this.rankById = new HashMap<>(ranked.length * 2);
+        for (int i = 0; i < ranked.length; i++) rankById.put(ranked[i].getId(), i);
+    }
+
+    // Posición del producto en los resultados (-1 si no está)
+    public int rankOf(int id) {
+        Integer rank = rankById.get(id);
+        return rank == null ? -1 : rank;
+    }
+
+    // Producto en la posición rank
+    public Product at(int rank) {
+        return ranked[rank];
+    }
+
+    // Resultados desde la posición rank (vista de solo lectura, sin copiar)
+    public List<Product> from(int rank) {
+        return Collections.unmodifiableList(Arrays.asList(ranked).subList(Math.min(rank, ranked.length), ranked.length));
+    }
+
+    @Override
+    public int size() {
+        return ranked.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return rankById.containsKey(key);
+    }
+
+    @Override
+    public Product get(Object key) {
+        Integer rank = rankById.get(key);
+        return rank == null ? null : ranked[rank];
+    }
+
+    @Override
+    public Collection<Product> values() {
+        return from(0);
+    }
+
+    @Override
+    public Set<Entry<Integer, Product>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, Product>> iterator() {
+                return new Iterator<>() {
+                    int next;
+
+                    @Override
+                    public boolean hasNext() { return next < ranked.length; }
+
+                    @Override
+                    public Entry<Integer, Product> next() {
+                        if (next >= ranked.length) throw new NoSuchElementException();
+                        Product p = ranked[next++];
+                        return new SimpleImmutableEntry<>(p.getId(), p);
+                    }
+                };
+            }
+
+            @Override
+            public int size() { return ranked.length; }
+        };
+    }
+}
@@ -1,27 +1,55 @@
 package org.cli.server;
 
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.ServerSocket;
-import java.io.InputStream;
 
+/**
+ * java org.cli.server.Server [--port 5006] [--replication-port PUERTO] [--replica-of HOST:PUERTO]
+ *
+ * Con --replication-port este servidor es primario y envía sus cambios de existencias a las
+ * réplicas; con --replica-of es una réplica que solo atiende SEARCH y LIST
+ * (con ambas, una réplica reenvía los cambios a otras réplicas)
+ */
 public class Server {
     public static void main(String [] args) throws Exception{
-        final int PORT = 5006;
+        int port = 5006;
+        int replicationPort = 0;
+        InetSocketAddress primary = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--replication-port" -> replicationPort = Integer.parseInt(args[++i]);
+                case "--replica-of" -> {
+                    String hostPort = args[++i];
+                    int colon = hostPort.lastIndexOf(':');
+                    primary = new InetSocketAddress(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1)));
+                }
+                default -> throw new IllegalArgumentException("Opción desconocida: " + args[i]);
+            }
+        }
+
         Items items = new Items("/plants.json");     // Ruta del inventarion.json
+        System.out.println("Inventario cargado desde: " + items.source());
+        AccessLog accessLog = AccessLog.open("cli");  // logs/cli-access.log, escrito en segundo plano
+        if (replicationPort != 0) {
+            ReplicationLog.start(items, replicationPort);
+            System.out.println("Primario: réplicas en el puerto " + replicationPort);
+        }
+        ReplicaClient replica = primary == null ? null : ReplicaClient.start(items, primary);
+        if (replica != null) System.out.println("Réplica de solo lectura de " + primary);
 
         // Crea un servidor socket y espera conexiones entrantes
-        try(ServerSocket server = new ServerSocket(PORT)) {
-            System.out.println("Listening on port " + PORT + "...");
+        try(ServerSocket server = new ServerSocket(port)) {
+            System.out.println("Listening on port " + port + "...");
 
-            // Bucle infinito para atender clientes uno por uno
+            // Bucle infinito: cada cliente se atiende en su propio hilo,
+            // el inventario es concurrente y protege las existencias
             while(true) {
-                try(Socket socket = server.accept()) {
-                    System.out.println("Client connected: " + socket.getInetAddress());
-                    new ClientHandler(socket, items).handle();   // Interacción con el cliente
-                }
+                Socket socket = server.accept();
+                accessLog.log("CONNECT", socket.getInetAddress().getHostAddress(), 200, 0, 0);
+                new Thread(() -> new ClientHandler(socket, items, accessLog, replica).handle()).start();   // Interacción con el cliente
             }
         }
     }
 }
-
-
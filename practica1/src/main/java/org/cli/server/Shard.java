@@ -0,0 +1,34 @@
+package org.cli.server;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Una partición del inventario (los productos cuyo ID le corresponde a un nodo).
+ * La implementa el nodo dueño (LocalShard) y el cliente del protocolo entre nodos (ShardClient).
+ * Las operaciones llevan el dueño del carrito: cada partición sabe cuánto apartó cada carrito.
+ */
+interface Shard {
+    // RESERVED, NOT_FOUND o INSUFFICIENT_STOCK (como Inventory.reserve)
+    // request identifica la petición (del dueño): repetirla devuelve el mismo resultado sin apartar otra vez
+    int reserve(String owner, long request, int id, int qty) throws IOException;
+
+    // Cuántas se apartaron (-1 si no existe)
+    int reserveUpTo(String owner, long request, int id, int qty) throws IOException;
+
+    // Deshace lo que apartó request (si llegó); un request cancelado ya no aparta aunque llegue después
+    void cancel(String owner, long request) throws IOException;
+
+    // Regresa a lo más lo que el dueño tiene apartado de ese producto (sin tocar lo preparado)
+    boolean release(String owner, int id, int qty) throws IOException;
+
+    // Fase 1 del checkout (transacción tx): true si el dueño tiene apartado todo lo de lines
+    // (queda bloqueado hasta COMMIT o ABORT de tx)
+    boolean prepare(String owner, String tx, Map<Integer, Integer> lines) throws IOException;
+
+    // Fase 2: lo preparado por tx queda vendido; false si tx no está preparada (error del protocolo)
+    boolean commit(String owner, String tx) throws IOException;
+
+    // Cancela el prepare de tx: lo apartado vuelve a estar a nombre del dueño
+    void abort(String owner, String tx) throws IOException;
+}
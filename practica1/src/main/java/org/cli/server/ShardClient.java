@@ -0,0 +1,173 @@
+package org.cli.server;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Partición de otro nodo, vista a través del protocolo de ShardServer.
+ *
+ * - Conexiones persistentes reutilizadas (a lo más POOL_SIZE ociosas)
+ * - Solo se reintentan con una conexión nueva las operaciones idempotentes: todas menos
+ *   RELEASE (RESERVE lleva número de petición y el nodo dueño no aparta dos veces)
+ * - Cada respuesta trae las existencias actuales y se copian al catálogo local
+ */
+final class ShardClient implements Shard {
+    private static final int POOL_SIZE = 16;
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int READ_TIMEOUT_MS = 2000;
+
+    private final InetSocketAddress address;
+    private final Items catalog;
+    private final BlockingQueue<Connection> idle = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private static final class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(address, CONNECT_TIMEOUT_MS);
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        void close() {
+            try { socket.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    // Una petición y su respuesta sobre una conexión
+    private interface Call<T> {
+        T run(DataInputStream in, DataOutputStream out) throws IOException;
+    }
+
+    ShardClient(InetSocketAddress address, Items catalog) {
+        this.address = address;
+        this.catalog = catalog;
+    }
+
+    @Override
+    public int reserve(String owner, long request, int id, int qty) throws IOException {
+        return stockCall(ShardServer.RESERVE, owner, request, id, qty);
+    }
+
+    @Override
+    public int reserveUpTo(String owner, long request, int id, int qty) throws IOException {
+        return stockCall(ShardServer.RESERVE_UP_TO, owner, request, id, qty);
+    }
+
+    @Override
+    public boolean release(String owner, int id, int qty) throws IOException {
+        return stockCall(ShardServer.RELEASE, owner, 0, id, qty) == 1;
+    }
+
+    @Override
+    public void cancel(String owner, long request) throws IOException {
+        call(true, (in, out) -> {
+            out.writeByte(ShardServer.CANCEL);
+            out.writeUTF(owner);
+            out.writeLong(request);
+            out.flush();
+            return in.readByte();
+        });
+    }
+
+    private int stockCall(byte op, String owner, long request, int id, int qty) throws IOException {
+        return call(op != ShardServer.RELEASE, (in, out) -> {
+            out.writeByte(op);
+            out.writeUTF(owner);
+            if (op != ShardServer.RELEASE) out.writeLong(request);
+            out.writeInt(id);
+            out.writeInt(qty);
+            out.flush();
+            int result = in.readInt();
+            int stock = in.readInt();
+            if (stock >= 0) catalog.mirrorStock(id, stock);
+            return result;
+        });
+    }
+
+    @Override
+    public boolean prepare(String owner, String tx, Map<Integer, Integer> lines) throws IOException {
+        return call(true, (in, out) -> {
+            out.writeByte(ShardServer.PREPARE);
+            out.writeUTF(owner);
+            out.writeUTF(tx);
+            ShardServer.writeLines(out, lines);
+            out.flush();
+            return in.readByte() == 1;
+        });
+    }
+
+    @Override
+    public boolean commit(String owner, String tx) throws IOException {
+        return txCall(ShardServer.COMMIT, owner, tx);
+    }
+
+    @Override
+    public void abort(String owner, String tx) throws IOException {
+        txCall(ShardServer.ABORT, owner, tx);
+    }
+
+    private boolean txCall(byte op, String owner, String tx) throws IOException {
+        return call(true, (in, out) -> {
+            out.writeByte(op);
+            out.writeUTF(owner);
+            out.writeUTF(tx);
+            out.flush();
+            return in.readByte() == 1;
+        });
+    }
+
+    // Qué decidió este nodo sobre tx, como coordinador (ShardServer.ABORTED, COMMITTED o UNDECIDED)
+    int decision(String tx) throws IOException {
+        return call(true, (in, out) -> {
+            out.writeByte(ShardServer.DECISION);
+            out.writeUTF(tx);
+            out.flush();
+            return (int) in.readByte();
+        });
+    }
+
+    // Copia al catálogo local las existencias de todos los productos de esta partición
+    void refresh() throws IOException {
+        Map<Integer, Integer> stock = call(true, (in, out) -> {
+            out.writeByte(ShardServer.SNAPSHOT);
+            out.flush();
+            return ShardServer.readLines(in);
+        });
+        stock.forEach(catalog::mirrorStock);
+    }
+
+    private <T> T call(boolean idempotent, Call<T> call) throws IOException {
+        Connection c = idle.poll();
+        boolean pooled = c != null;
+        if (c == null) c = new Connection(address);
+        try {
+            T result = call.run(c.in, c.out);
+            if (!idle.offer(c)) c.close();
+            return result;
+        } catch (IOException e) {
+            c.close();
+            if (!pooled) throw e;
+            // Una conexión ociosa pudo cerrarse del otro lado (nodo reiniciado): se descartan
+            // las demás y, si es seguro repetir, se intenta una sola vez más con una nueva
+            Connection stale;
+            while ((stale = idle.poll()) != null) stale.close();
+            if (!idempotent) throw e;
+            return call(false, call);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.cli.server;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Protocolo binario entre nodos del inventario repartido (TCP, conexiones persistentes).
+ * Cada petición es un byte de operación seguido de sus campos (DataOutputStream):
+ *
+ * RESERVE / RESERVE_UP_TO             owner(UTF) request(long) id(int) qty(int)  -> result(int) stock(int)
+ * RELEASE                             owner(UTF) id(int) qty(int)  -> result(int) stock(int)
+ * CANCEL                              owner(UTF) request(long)  -> ok(byte)
+ * PREPARE                             owner(UTF) tx(UTF) n(int) n x [id(int) qty(int)]  -> ok(byte)
+ * COMMIT / ABORT                      owner(UTF) tx(UTF)  -> ok(byte)
+ * DECISION                            tx(UTF)  -> ABORTED / COMMITTED / UNDECIDED (byte)
+ * SNAPSHOT                            -> n(int) n x [id(int) stock(int)]
+ *
+ * stock son las existencias del producto después de la operación (-1 si no existe),
+ * para que el nodo que pidió actualice su copia.
+ * DECISION se le pregunta al nodo que coordinó tx (un prepare que lleva mucho sin fase 2).
+ */
+final class ShardServer {
+    static final byte RESERVE = 1;
+    static final byte RESERVE_UP_TO = 2;
+    static final byte RELEASE = 3;
+    static final byte PREPARE = 4;
+    static final byte COMMIT = 5;
+    static final byte ABORT = 6;
+    static final byte SNAPSHOT = 7;
+    static final byte DECISION = 8;
+    static final byte CANCEL = 9;
+    // Respuestas de DECISION
+    static final byte ABORTED = 0;
+    static final byte COMMITTED = 1;
+    static final byte UNDECIDED = 2;
+
+    private final LocalShard shard;
+    private final Items items;
+    private final ToIntFunction<String> decisions;     // tx -> decisión de este nodo como coordinador
+    private final ServerSocket serverSocket;
+
+    ShardServer(int port, LocalShard shard, Items items, ToIntFunction<String> decisions) throws IOException {
+        this.shard = shard;
+        this.items = items;
+        this.decisions = decisions;
+        this.serverSocket = new ServerSocket(port);
+    }
+
+    // Acepta conexiones de los otros nodos en un thread de fondo (un thread por conexión)
+    void start() {
+        Thread acceptor = new Thread(() -> {
+            while (true) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    Thread t = new Thread(() -> serve(socket), "shard-peer");
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException e) {
+                    if (serverSocket.isClosed()) return;
+                }
+            }
+        }, "shard-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            int op;
+            while ((op = in.read()) != -1) {
+                handle((byte) op, in, out);
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // el otro nodo cerró la conexión
+        }
+    }
+
+    private void handle(byte op, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case RESERVE, RESERVE_UP_TO, RELEASE -> {
+                String owner = in.readUTF();
+                long request = op == RELEASE ? 0 : in.readLong();
+                int id = in.readInt();
+                int qty = in.readInt();
+                int result = switch (op) {
+                    case RESERVE -> shard.reserve(owner, request, id, qty);
+                    case RESERVE_UP_TO -> shard.reserveUpTo(owner, request, id, qty);
+                    default -> shard.release(owner, id, qty) ? 1 : 0;
+                };
+                Product p = items.findById(id);
+                out.writeInt(result);
+                out.writeInt(p == null ? -1 : p.getStock());
+            }
+            case PREPARE -> {
+                String owner = in.readUTF();
+                String tx = in.readUTF();
+                out.writeByte(shard.prepare(owner, tx, readLines(in)) ? 1 : 0);
+            }
+            case COMMIT -> {
+                String owner = in.readUTF();
+                out.writeByte(shard.commit(owner, in.readUTF()) ? 1 : 0);
+            }
+            case ABORT -> {
+                String owner = in.readUTF();
+                shard.abort(owner, in.readUTF());
+                out.writeByte(1);
+            }
+            case CANCEL -> {
+                String owner = in.readUTF();
+                shard.cancel(owner, in.readLong());
+                out.writeByte(1);
+            }
+            case DECISION -> out.writeByte(decisions.applyAsInt(in.readUTF()));
+            case SNAPSHOT -> writeLines(out, shard.snapshot());
+            default -> throw new IOException("Operación desconocida: " + op);
+        }
+    }
+
+    static void writeLines(DataOutputStream out, Map<Integer, Integer> lines) throws IOException {
+        out.writeInt(lines.size());
+        for (Map.Entry<Integer, Integer> line : lines.entrySet()) {
+            out.writeInt(line.getKey());
+            out.writeInt(line.getValue());
+        }
+    }
+
+    static Map<Integer, Integer> readLines(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) throw new IOException("Longitud inválida: " + n);
+        Map<Integer, Integer> lines = new HashMap<>();
+        for (int i = 0; i < n; i++) lines.put(in.readInt(), in.readInt());
+        return lines;
+    }
+}
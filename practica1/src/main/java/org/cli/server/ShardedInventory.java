@@ -0,0 +1,291 @@
+package org.cli.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inventario repartido entre varios procesos (nodos).
+ *
+ * - Cada producto tiene un nodo dueño: shardOf(id) reparte los IDs por hash
+ * - Todos los nodos cargan el catálogo completo (nombres, precios, búsqueda); las
+ *   existencias de los productos ajenos son una copia que se actualiza con cada
+ *   respuesta y cada REFRESH_MS (las lecturas pueden mostrar existencias un poco atrasadas)
+ * - Apartar y regresar existencias siempre lo decide el nodo dueño
+ * - El checkout es una compra en dos fases (una tx por checkout): PREPARE en cada nodo
+ *   involucrado y, si todos aceptan, COMMIT; si alguno rechaza o no responde, ABORT
+ * - El COMMIT se escribe en la bitácora de decisiones (DecisionLog) antes de enviarlo y se
+ *   reintenta hasta que cada nodo lo confirma, también después de reiniciar este nodo. Si no
+ *   se puede escribir, la decisión es ABORT: el checkout falla y no se envía ningún COMMIT
+ * - Un participante no cancela solo un prepare: si la fase 2 no llega en PREPARE_TTL le
+ *   pregunta al coordinador (DECISION); sin COMMIT registrado la respuesta es abort
+ *
+ * Los dueños de carrito se prefijan con el número de nodo: dos nodos pueden usar el mismo Session-Id.
+ */
+public final class ShardedInventory implements Inventory {
+    private static final int REFRESH_MS = 1000;
+    private static final int COMMIT_RETRY_MS = 1000;
+    private static final int MAX_COMMIT_RETRY_MS = 30_000;
+    // Un CANCEL se reintenta mientras el nodo dueño recuerde la petición (LocalShard.REQUEST_TTL)
+    private static final long CANCEL_WINDOW_NANOS = LocalShard.REQUEST_TTL_NANOS / 2;
+
+    private final Items catalog;
+    private final Shard[] shards;
+    private final LocalShard local;
+    private final int self;
+    private final String node;
+    private final DecisionLog decisions;
+    // tx en fase 1 (su decisión todavía no se toma) y tx preparada de cada dueño, hasta el commit
+    private final Set<String> preparing = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> preparedTx = new ConcurrentHashMap<>();
+    // Números de petición de RESERVE (distintos entre reinicios de este nodo)
+    private final AtomicLong requests = new AtomicLong(System.currentTimeMillis() << 20);
+    private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "shard-background");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ShardedInventory(Items catalog, int self, List<InetSocketAddress> nodes, DecisionLog decisions) {
+        this.catalog = catalog;
+        this.self = self;
+        this.node = "n" + self + "/";
+        this.decisions = decisions;
+        this.local = new LocalShard(catalog, self, nodes.size());
+        this.shards = new Shard[nodes.size()];
+        for (int i = 0; i < shards.length; i++)
+            shards[i] = i == self ? local : new ShardClient(nodes.get(i), catalog);
+    }
+
+    /**
+     * Arranca este nodo: escucha a los otros nodos en el puerto de nodes[self], empieza a
+     * copiar las existencias de sus particiones y reanuda los COMMIT que quedaron pendientes
+     * (bitácora en shard.logDir, por omisión logs/shard-n<self>-decisions.log)
+     */
+    public static ShardedInventory start(Items catalog, int self, List<InetSocketAddress> nodes) throws IOException {
+        if (self < 0 || self >= nodes.size())
+            throw new IllegalArgumentException("Nodo " + self + " fuera de rango (0.." + (nodes.size() - 1) + ")");
+        DecisionLog decisions = DecisionLog.open(
+                Paths.get(System.getProperty("shard.logDir", "logs"), "shard-n" + self + "-decisions.log"));
+        ShardedInventory inventory = new ShardedInventory(catalog, self, nodes, decisions);
+        new ShardServer(nodes.get(self).getPort(), inventory.local, catalog, inventory::decision).start();
+        for (DecisionLog.Pending p : decisions.pending())
+            for (int shard : p.shards()) inventory.commit(shard, p.owner(), p.tx(), 0);
+        inventory.background.scheduleWithFixedDelay(inventory::refresh, 0, REFRESH_MS, TimeUnit.MILLISECONDS);
+        inventory.background.scheduleWithFixedDelay(() -> {
+            inventory.local.expire();
+            inventory.resolveInDoubt();
+        }, 30, 30, TimeUnit.SECONDS);
+        return inventory;
+    }
+
+    // Nodo dueño de un ID: se mezclan los bits para que IDs consecutivos no caigan en el mismo nodo
+    static int shardOf(int id, int shards) {
+        int h = id;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, shards);
+    }
+
+    private Shard shard(int id) {
+        return shards[shardOf(id, shards.length)];
+    }
+
+    private void refresh() {
+        for (Shard s : shards) {
+            if (s instanceof ShardClient client) {
+                try {
+                    client.refresh();
+                } catch (IOException ignored) {
+                    // nodo caído: su copia se queda como está hasta que vuelva
+                }
+            }
+        }
+    }
+
+    /* LECTURAS: catálogo local */
+    @Override
+    public Product findById(int id) { return catalog.findById(id); }
+
+    @Override
+    public NavigableMap<Integer, Product> getItems() { return catalog.getItems(); }
+
+    @Override
+    public SearchResults find(String query) { return catalog.find(query); }
+
+    @Override
+    public NavigableMap<Integer, Product> findByType(String type) { return catalog.findByType(type); }
+
+    @Override
+    public void addStockListener(StockListener listener) { catalog.addStockListener(listener); }
+
+    /* EXISTENCIAS: las decide el nodo dueño */
+    @Override
+    public int reserve(int id, int qty) { return reserve("-", id, qty); }
+
+    @Override
+    public int reserveUpTo(int id, int qty) { return reserveUpTo("-", id, qty); }
+
+    @Override
+    public boolean release(int id, int qty) { return release("-", id, qty); }
+
+    // Si el nodo dueño no responde: UNAVAILABLE, y se le envía CANCEL por si sí alcanzó a apartar
+    @Override
+    public int reserve(String owner, int id, int qty) {
+        if (catalog.findById(id) == null) return NOT_FOUND;
+        long request = requests.incrementAndGet();
+        try {
+            return shard(id).reserve(node + owner, request, id, qty);
+        } catch (IOException e) {
+            compensate(shardOf(id, shards.length), node + owner, request);
+            return UNAVAILABLE;
+        }
+    }
+
+    @Override
+    public int reserveUpTo(String owner, int id, int qty) {
+        if (catalog.findById(id) == null) return -1;
+        long request = requests.incrementAndGet();
+        try {
+            return shard(id).reserveUpTo(node + owner, request, id, qty);
+        } catch (IOException e) {
+            compensate(shardOf(id, shards.length), node + owner, request);
+            return UNAVAILABLE;
+        }
+    }
+
+    // CANCEL en segundo plano; pasado CANCEL_WINDOW lo apartado regresa al expirar allá (HOLD_TTL)
+    private void compensate(int shard, String owner, long request) {
+        long since = System.nanoTime();
+        background.execute(() -> cancel(shard, owner, request, since));
+    }
+
+    private void cancel(int shard, String owner, long request, long since) {
+        try {
+            shards[shard].cancel(owner, request);
+        } catch (IOException e) {
+            if (System.nanoTime() - since > CANCEL_WINDOW_NANOS) return;
+            background.schedule(() -> cancel(shard, owner, request, since), COMMIT_RETRY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Si el nodo dueño no responde, lo apartado regresa solo cuando expire allá
+    @Override
+    public boolean release(String owner, int id, int qty) {
+        try {
+            return shard(id).release(node + owner, id, qty);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /* COMPRA EN DOS FASES (este nodo coordina) */
+    @Override
+    public boolean prepare(String owner, Map<Integer, Integer> cart) {
+        String key = node + owner;
+        String tx = node + UUID.randomUUID();
+        preparing.add(tx);
+        List<Integer> asked = new ArrayList<>();
+        boolean ok = true;
+        for (Map.Entry<Integer, Map<Integer, Integer>> part : split(cart).entrySet()) {
+            asked.add(part.getKey());
+            try {
+                ok = shards[part.getKey()].prepare(key, tx, part.getValue());
+            } catch (IOException e) {
+                ok = false;
+            }
+            if (!ok) break;
+        }
+        if (ok) {
+            preparedTx.put(key, tx);
+            return true;    // sigue en preparing hasta que commit() registre la decisión
+        }
+        // También al que no respondió: pudo haber preparado antes de perderse la respuesta
+        for (int s : asked) {
+            try {
+                shards[s].abort(key, tx);
+            } catch (IOException ignored) {
+                // el nodo preguntará por la tx al pasar PREPARE_TTL (sin COMMIT registrado: abort)
+            }
+        }
+        preparing.remove(tx);
+        return false;
+    }
+
+    // Todos aceptaron: la decisión se escribe en disco antes de avisar y cada nodo se reintenta hasta que confirme
+    @Override
+    public boolean commit(String owner, Map<Integer, Integer> cart) {
+        String key = node + owner;
+        String tx = preparedTx.remove(key);
+        if (tx == null) return false;
+        Set<Integer> parts = split(cart).keySet();
+        try {
+            decisions.commit(tx, key, parts);
+        } catch (IOException e) {
+            // Una decisión que no está en disco no se puede mantener después de un reinicio: se aborta
+            System.err.println("No se pudo registrar el COMMIT de " + tx + ", se aborta: " + e.getMessage());
+            preparing.remove(tx);
+            for (int s : parts) {
+                try {
+                    shards[s].abort(key, tx);
+                } catch (IOException ignored) {
+                    // el nodo preguntará por la tx al pasar PREPARE_TTL (sin COMMIT registrado: abort)
+                }
+            }
+            return false;
+        }
+        preparing.remove(tx);
+        for (int shard : parts) commit(shard, key, tx, 0);
+        return true;
+    }
+
+    private void commit(int shard, String owner, String tx, int attempt) {
+        try {
+            if (!shards[shard].commit(owner, tx))
+                System.err.println("COMMIT rechazado por el nodo " + shard + ": " + tx + " no estaba preparada");
+            decisions.done(tx, shard);
+        } catch (IOException e) {
+            long delay = Math.min((long) COMMIT_RETRY_MS << Math.min(attempt, 5), MAX_COMMIT_RETRY_MS);
+            background.schedule(() -> commit(shard, owner, tx, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Respuesta a DECISION: lo que este nodo decidió sobre tx como coordinador
+    private int decision(String tx) {
+        if (decisions.isCommitted(tx)) return ShardServer.COMMITTED;
+        if (preparing.contains(tx)) return ShardServer.UNDECIDED;
+        return ShardServer.ABORTED;
+    }
+
+    // Prepares locales que llevan más de PREPARE_TTL: se le pregunta al coordinador (el nodo en el prefijo de tx)
+    private void resolveInDoubt() {
+        for (LocalShard.InDoubt d : local.inDoubt()) {
+            try {
+                int coordinator = Integer.parseInt(d.tx().substring(1, d.tx().indexOf('/')));
+                int state = coordinator == self ? decision(d.tx()) : ((ShardClient) shards[coordinator]).decision(d.tx());
+                if (state == ShardServer.COMMITTED) local.commit(d.owner(), d.tx());
+                else if (state == ShardServer.ABORTED) local.abort(d.owner(), d.tx());
+            } catch (IOException | RuntimeException e) {
+                // coordinador caído (o tx ajena al protocolo): el prepare sigue bloqueado
+            }
+        }
+    }
+
+    // Líneas del carrito agrupadas por número de nodo dueño (copias: el carrito se limpia después del checkout)
+    private Map<Integer, Map<Integer, Integer>> split(Map<Integer, Integer> cart) {
+        Map<Integer, Map<Integer, Integer>> parts = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Integer> line : cart.entrySet()) {
+            parts.computeIfAbsent(shardOf(line.getKey(), shards.length), s -> new HashMap<>()).put(line.getKey(), line.getValue());
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,10 @@
+package org.cli.server;
+
+/**
+ * Aviso de cambio de existencias de un producto.
+ * Se llama en el thread que hizo el cambio: debe ser rápido (p. ej. solo anotar el producto).
+ */
+@FunctionalInterface
+public interface StockListener {
+    void stockChanged(Product product);
+}
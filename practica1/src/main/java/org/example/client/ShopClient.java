@@ -1,7 +1,6 @@
 package org.example.client;
 
-import java.io.*;
-import java.net.Socket;
+import org.cli.client.ShopConnection;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -12,13 +11,11 @@ public class ShopClient {
         String host = "127.0.0.1"; // direccion del servidor
         int port = 5001;           // puerto del servidor
 
-        // abre socket y streams (auto-flush en PrintWriter)
-        try (Socket s = new Socket(host, port);
-             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()));
-             PrintWriter out = new PrintWriter(new OutputStreamWriter(s.getOutputStream()), true);
+        // abre la conexion (socket y streams) y lee el saludo inicial
+        try (ShopConnection conn = new ShopConnection(host, port);
              Scanner sc = new Scanner(System.in)) {
 
-            System.out.println(in.readLine()); // lee saludo inicial del servidor
+            System.out.println(conn.getGreeting()); // saludo inicial del servidor
 
             boolean running = true; // bandera de sesion
             while (running) {
@@ -27,16 +24,12 @@ public class ShopClient {
                 String cmd = sc.nextLine().trim(); // lee comando del usuario
                 if (cmd.isEmpty()) continue; // ignora vacios
 
-                out.println(cmd);            // envía comando al servidor
-                String first = in.readLine();// primera linea de respuesta
-                if (first == null) break;    // servidor cerro la conexion
+                String full = conn.send(cmd); // envía comando y lee la respuesta completa
+                if (full == null) break;      // servidor cerro la conexion
 
-                // bloque especial para ticket: junta resto de lineas y guarda archivo
-                if (first.startsWith("OK TICKET")) {
-                    StringBuilder rest = new StringBuilder();
-                    String line;
-                    while (in.ready() && (line = in.readLine()) != null) rest.append(line).append('\n');
-                    String full = first + "\n" + rest.toString().trim();
+                // bloque especial para ticket: guarda archivo
+                // (sin distinguir mayusculas: ShopServer responde "Ok TICKET", antes nunca se guardaba)
+                if (full.regionMatches(true, 0, "OK TICKET", 0, 9)) {
                     System.out.println(full); // imprime ticket completo en consola
 
                     // nombre de archivo con timestamp y escritura a disco
@@ -46,13 +39,10 @@ public class ShopClient {
                     System.out.println("[CLIENTE] Ticket guardado: " + fname);
                 } else {
                     // respuesta normal de una o varias lineas
-                    StringBuilder block = new StringBuilder(first);
-                    String line;
-                    while (in.ready() && (line = in.readLine()) != null) block.append('\n').append(line);
-                    System.out.println(block);
+                    System.out.println(full);
 
                     // fin de sesion cuando el servidor responde BYE
-                    if ("BYE".equals(first))
+                    if ("BYE".equals(full))
                         running = false;
                 }
             }
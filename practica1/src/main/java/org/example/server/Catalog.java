@@ -2,18 +2,18 @@ package org.example.server;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cli.server.Inventory;
+import org.cli.server.Items;
 import java.io.InputStream;
 import java.util.*;
 
+// carga products.json en el motor de inventario compartido (org.cli.server.Items)
 public class Catalog {
-    // almacena productos en memoria e indexa por id
-    private final Map<Integer, Product> productsById = new HashMap<>();
-
-    // crea un catalogo a partir de un JSON (lista de productos)
-    public static Catalog fromJson(InputStream in) throws Exception {
+    // crea un inventario a partir de un JSON (lista de productos)
+    public static Inventory fromJson(InputStream in) throws Exception {
         ObjectMapper mapper = new ObjectMapper(); // parser JSON
         List<Product> items = mapper.readValue(in, new TypeReference<List<Product>>() {}); // lee lista
-        Catalog c = new Catalog(); // nuevo catalogo vacio
+        Items c = new Items(); // nuevo inventario vacio
         for (Product p : items) {
             if (p == null) continue; // ignora entradas nulas
             // valida campos requeridos minimos
@@ -21,61 +21,22 @@ public class Catalog {
                 throw new IllegalArgumentException("Producto inválido en JSON (faltan campos requeridos)");
             p.type = p.type.toUpperCase(Locale.ROOT); // normaliza tipo a mayusculas
             // detecta ids duplicados
-            if (c.productsById.putIfAbsent(p.id, p) != null)
+            if (c.findById(p.id) != null)
                 throw new IllegalArgumentException("ID de producto duplicado en JSON: " + p.id);
+            c.add(p.id, p.toEngine());
         }
-        return c; // devuelve el catalogo cargado
+        return c; // devuelve el inventario cargado
     }
 
     // catalogo de ejemplo cuando no hay JSON
-    public static Catalog sample() {
-        Catalog c = new Catalog();
-        c.add(new Product(101, "Auriculares", "Sony", "ELECTRONICA", 899.0, 8));
-        c.add(new Product(201, "Playera", "Adidas", "ROPA", 399.0, 20));
-        c.add(new Product(301, "Sartén 28cm", "T-fal", "HOGAR", 559.0, 12));
-        c.add(new Product(401, "Café 500g", "Gourmet", "ALIMENTOS", 169.0, 30));
+    public static Inventory sample() {
+        Items c = new Items();
+        for (Product p : List.of(
+                new Product(101, "Auriculares", "Sony", "ELECTRONICA", 899.0, 8),
+                new Product(201, "Playera", "Adidas", "ROPA", 399.0, 20),
+                new Product(301, "Sartén 28cm", "T-fal", "HOGAR", 559.0, 12),
+                new Product(401, "Café 500g", "Gourmet", "ALIMENTOS", 169.0, 30)))
+            c.add(p.id, p.toEngine());
         return c;
     }
-
-    // agrega o reemplaza un producto por id
-    public void add(Product p){ productsById.put(p.id, p); }
-
-    // obtiene un producto por id, o null si no existe
-    public Product get(int id){ return productsById.get(id); }
-
-    // busca por nombre o marca (case-insensitive) y ordena por id
-    public List<Product> search(String term){
-        String t = term.toLowerCase(Locale.ROOT); // normaliza termino
-        List<Product> out = new ArrayList<>();
-        for (Product p : productsById.values())
-            if (p.name.toLowerCase().contains(t) || p.brand.toLowerCase().contains(t))
-                out.add(p);
-        out.sort(Comparator.comparingInt(pp -> pp.id)); // orden estable por id
-        return out;
-    }
-
-    // lista productos por tipo (case-insensitive) y ordena por id
-    public List<Product> listByType(String type){
-        String wanted = type.toUpperCase(Locale.ROOT); // normaliza tipo
-        List<Product> out = new ArrayList<>();
-        for (Product p : productsById.values())
-            if (p.type.equals(wanted))
-                out.add(p);
-        out.sort(Comparator.comparingInt(pp -> pp.id));
-        return out;
-    }
-
-    // intenta comprar: valida stock y descuenta si todo es valido
-    public boolean tryPurchase(Map<Integer,Integer> req){
-        // primera pasada: validar disponibilidad
-        for (var e : req.entrySet()) {
-            Product p = productsById.get(e.getKey());
-            int qty = e.getValue();
-            if (p == null || qty <= 0 || p.stock < qty) return false; // falla si no alcanza
-        }
-        // segunda pasada: descontar existencias
-        for (var e : req.entrySet())
-            productsById.get(e.getKey()).stock -= e.getValue();
-        return true; // exito
-    }
 }
@@ -1,38 +1,49 @@
 package org.example.server;
 
+import org.cli.server.AccessLog;
+import org.cli.server.BusinessLogic;
+import org.cli.server.Inventory;
+import org.cli.server.LineProtocol;
 import java.io.*;
 import java.net.Socket;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 public class ClientHandler {
     // maneja una sesion de un cliente
     private final Socket socket;         // socket del cliente
-    private final Catalog catalog;       // referencia al catalogo
-    private final Map<Integer,Integer> cart = new LinkedHashMap<>(); // carrito id -> cantidad
+    private final BusinessLogic logic;   // carrito id -> cantidad sobre el inventario compartido
+    private final AccessLog accessLog;   // registro de cada comando (sin bloquear)
 
-    public ClientHandler(Socket socket, Catalog catalog){
-        this.socket = socket; this.catalog = catalog;
+    public ClientHandler(Socket socket, Inventory catalog, AccessLog accessLog){
+        this.socket = socket;
+        this.logic = new BusinessLogic(catalog, new LinkedHashMap<>());
+        this.accessLog = accessLog;
     }
 
     public void handle() {
         // crea streams de entrada/salida y auto flush
         try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true)) {
+             AccessLog.CountingOutputStream sent = new AccessLog.CountingOutputStream(socket.getOutputStream());
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(sent), true)) {
 
-            out.println("Hola :) Escribe HELP para ver los comandos");
+            LineProtocol.writeResponse(out, "Hola :) Escribe HELP para ver los comandos");
             String line;
             // bucle principal: leer comando, procesar y responder
             while ((line = in.readLine()) != null) {
-                String resp = handleCommand(line.trim());
-                out.println(resp);
+                long start = System.nanoTime();
+                String command = line.trim();
+                String resp = handleCommand(command);
+                long sentBefore = sent.count();
+                LineProtocol.writeResponse(out, resp); // respuesta + terminador "."
+                accessLog.logCommand(command, resp.startsWith("ERROR") ? 400 : 200,
+                        sent.count() - sentBefore, System.nanoTime() - start);
                 if ("BYE".equals(resp))
                     break; // termina sesion si servidor responde BYE
             }
         }
         catch (IOException ignored) {
         } finally {
+            logic.releaseCart(); // regresa lo apartado si el cliente se fue sin comprar
             try { socket.close(); } catch (IOException ignored) {} // libera el socket
         }
     }
@@ -63,24 +74,24 @@ public class ClientHandler {
                 if (tok.length < 2)
                     return "ERROR Uso: SEARCH <termino>";
                 String term = cmdline.substring(cmdline.indexOf(' ') + 1);
-                var results = catalog.search(term);
+                var results = logic.searchProducts(term);
                 if (results.isEmpty())
                     return "Ok 0 resultados";
                 StringBuilder sb = new StringBuilder("Ok resultados:\n");
-                for (var p : results)
-                    sb.append(p.line()).append('\n'); // imprime una linea por producto
+                for (var p : results.values())
+                    sb.append(Product.line(p)).append('\n'); // imprime una linea por producto
                 return sb.toString().trim();
 
             case "LIST":
                 // lista productos por tipo
                 if (tok.length != 2)
                     return "ERROR Uso: LIST <tipo>";
-                var list = catalog.listByType(tok[1]);
+                var list = logic.listProductsByType(tok[1]);
                 if (list.isEmpty())
                     return "ERROR Tipo desconocido o sin productos";
                 StringBuilder sb2 = new StringBuilder("Ok Lista:\n");
-                for (var p : list)
-                    sb2.append(p.line()).append('\n');
+                for (var p : list.values())
+                    sb2.append(Product.line(p)).append('\n');
                 return sb2.toString().trim();
 
             case "ADD":
@@ -90,15 +101,15 @@ public class ClientHandler {
                 try {
                     int id = Integer.parseInt(tok[1]);   // parsea id
                     int qty = Integer.parseInt(tok[2]);  // parsea cantidad
-                    var p = catalog.get(id);             // obtiene producto
+                    var p = logic.getProductById(id);    // obtiene producto
                     if (p == null)
                         return "ERROR Producto no existe";
                     if (qty <= 0)
                         return "ERROR La cantidad debe ser > 0";
-                    if (p.stock < qty)
-                        return "ERROR Stock insuficiente (disp: " + p.stock + ")";
-                    cart.merge(id, qty, Integer::sum);   // suma si ya estaba en carrito
-                    return "Ok Agregado: " + p.name + " x" + qty;
+                    // aparta existencias; suma si ya estaba en carrito
+                    if (!logic.addToCart(id, qty).success)
+                        return "ERROR Stock insuficiente (disp: " + p.getStock() + ")";
+                    return "Ok Agregado: " + p.getName() + " x" + qty;
                 } catch (NumberFormatException e) {
                     return "ERROR id/cant invalidos";    // valida numeros
                 }
@@ -110,19 +121,12 @@ public class ClientHandler {
                 try {
                     int id = Integer.parseInt(tok[1]);
                     int qty = Integer.parseInt(tok[2]);
-                    if (!cart.containsKey(id))
+                    if (!logic.getCart().containsKey(id))
                         return "ERROR Ese producto no esta en el carrito";
-                    var p = catalog.get(id);
-                    if (p == null)
-                        return "ERROR Producto no existe";
-                    if (qty <= 0) {
-                        cart.remove(id);                 // elimina item
-                        return "Ok Eliminado del carrito";
-                    }
-                    if (p.stock < qty)
-                        return "ERROR Stock insuficiente (disp: " + p.stock + ")";
-                    cart.put(id, qty);                   // setea nueva cantidad
-                    return "Ok Cantidad actualizada";
+                    var res = logic.updateCart(id, qty); // qty <= 0 elimina el item
+                    if (res.success)
+                        return qty <= 0 ? "Ok Eliminado del carrito" : "Ok Cantidad actualizada";
+                    return "ERROR Stock insuficiente, cantidad ajustada a " + logic.getCart().get(id);
                 } catch (NumberFormatException e){
                     return "ERROR id/cant invalidos";
                 }
@@ -133,7 +137,7 @@ public class ClientHandler {
                     return "ERROR Uso: REMOVE <id>";
                 try {
                     int id = Integer.parseInt(tok[1]);
-                    if (cart.remove(id) != null)
+                    if (logic.removeFromCart(id))
                         return "Ok Eliminado";
                     return "ERROR No esta en el carrito";
                 } catch (NumberFormatException e){
@@ -142,21 +146,17 @@ public class ClientHandler {
 
             case "CART":
                 // muestra contenido del carrito y total
+                var cart = logic.getCart();
                 if (cart.isEmpty())
                     return "Ok Carrito vacío";
-                return renderCart();
+                return renderCart(cart);
 
             case "CHECKOUT":
-                // intenta comprar: valida stock, descuenta y genera ticket
-                if (cart.isEmpty())
+                // confirma la compra: las existencias ya estaban apartadas
+                var result = logic.checkout();
+                if (!result.success)
                     return "ERROR Carrito vacio";
-                var req = new LinkedHashMap<>(cart); // copia inmutable de la peticion
-                boolean ok = catalog.tryPurchase(req);
-                if (!ok)
-                    return "ERROR La compra no pudo completarse (el stock cambio)";
-                String ticket = buildTicket(req);
-                cart.clear(); // limpia carrito tras comprar
-                return "Ok TICKET\n" + ticket;
+                return "Ok TICKET\n" + buildTicket(result);
 
             case "QUIT":
                 // termina sesion
@@ -167,33 +167,26 @@ public class ClientHandler {
         }
     }
 
-    private String renderCart(){
+    private String renderCart(Map<Integer,Integer> cart){
         // construye vista de carrito y suma total
         StringBuilder sb = new StringBuilder("Ok Carrito:\n");
         double total = 0.0;
         for (var e : cart.entrySet()) {
-            var p = catalog.get(e.getKey());
+            var p = logic.getProductById(e.getKey());
             int qty = e.getValue();
-            double sub = p.price * qty;  // subtotal por producto
+            double sub = p.getPrice() * qty;  // subtotal por producto
             total += sub;
-            sb.append(String.format("#%d %-16s x%-3d  $%.2f\n", p.id, p.name, qty, sub));
+            sb.append(String.format("#%d %-16s x%-3d  $%.2f\n", p.getId(), p.getName(), qty, sub));
         }
         sb.append(String.format("TOTAL: $%.2f", total));
         return sb.toString();
     }
 
-    private String buildTicket(Map<Integer,Integer> req){
+    private String buildTicket(BusinessLogic.CheckoutResult res){
         // arma un ticket simple con fecha y total
-        double total = 0.0;
         StringBuilder items = new StringBuilder();
-        for (var e : req.entrySet()){
-            var p = catalog.get(e.getKey());
-            int qty = e.getValue();
-            double sub = p.price * qty;
-            total += sub;
-            items.append(String.format("#%d %-16s x%-3d  $%.2f\n", p.id, p.name, qty, sub));
-        }
-        String ts = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")); // timestamp
-        return "==== TICKET ====\n" + ts + "\n" + items + String.format("TOTAL: $%.2f\n", total) + "============";
+        for (var item : res.items)
+            items.append(String.format("#%d %-16s x%-3d  $%.2f\n", item.id, item.name, item.quantity, item.subtotal));
+        return "==== TICKET ====\n" + res.datetime + "\n" + items + String.format("TOTAL: $%.2f\n", res.total) + "============";
     }
 }
@@ -1,5 +1,6 @@
 package org.example.server;
 
+// formato de products.json; en memoria se guarda como org.cli.server.Product
 public class Product {
     public int id;
     public String name;
@@ -18,8 +19,13 @@ public class Product {
         this.stock = stock;
     }
 
-    public String line() { // formato en linea del producto
+    // convierte al producto del motor de inventario (sin descripcion ni imagen)
+    public org.cli.server.Product toEngine() {
+        return new org.cli.server.Product(id, name, type, brand, "", price, stock, null);
+    }
+
+    public static String line(org.cli.server.Product p) { // formato en linea del producto
         return String.format("#%d | %-16s | %-10s | %-12s | $%.2f | stock:%d",
-                id, name, brand, type, price, stock);
+                p.getId(), p.getName(), p.getBrand(), p.getType(), p.getPrice(), p.getStock());
     }
 }
@@ -1,5 +1,7 @@
 package org.example.server;
 
+import org.cli.server.AccessLog;
+import org.cli.server.Inventory;
 import java.io.InputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -7,18 +9,19 @@ import java.net.Socket;
 public class ShopServer {
     public static void main(String[] args) throws Exception {
         int port = 5001; // puerto fijo
-        Catalog catalog = loadCatalog(); // carga los productos
+        Inventory catalog = loadCatalog(); // carga los productos en el motor compartido
+        AccessLog accessLog = AccessLog.open("shop"); // bitacora asincrona en logs/shop-access.log
 
         try (ServerSocket server = new ServerSocket(port)) {
             System.out.println("Escuchando en el puerto " + port);
             while (true) {
                 Socket socket = server.accept();    // bloquea hasta que llegue un cliente
-                new ClientHandler(socket, catalog).handle();
+                new Thread(() -> new ClientHandler(socket, catalog, accessLog).handle()).start(); // un hilo por cliente
             }
         }
     }
 
-    private static Catalog loadCatalog() {
+    private static Inventory loadCatalog() {
         try (InputStream in = ShopServer.class.getResourceAsStream("/products.json")) {
             if (in != null) {
                 System.out.println("Productos cargado desde resources:/products.json");
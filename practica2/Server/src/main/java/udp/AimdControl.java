@@ -0,0 +1,50 @@
+package udp;
+
+/**
+ * AIMD (TCP Reno): arranque lento hasta ssthresh y después +1 paquete por RTT;
+ * ante una pérdida la ventana se reduce a la mitad, ante un timeout vuelve a 1.
+ */
+public class AimdControl implements CongestionControl {
+    private final int maxWindow;
+    private double cwnd = INITIAL_WINDOW;
+    private double ssthresh;
+
+    public AimdControl(int maxWindow) {
+        this.maxWindow = Math.max(1, maxWindow);
+        this.ssthresh = this.maxWindow;
+    }
+
+    @Override
+    public int window() {
+        return (int) Math.max(1, Math.min(maxWindow, cwnd));
+    }
+
+    @Override
+    public boolean inSlowStart() {
+        return cwnd < ssthresh;
+    }
+
+    @Override
+    public void onAck(int acked, long srttNanos) {
+        if (inSlowStart()) cwnd += acked;
+        else cwnd += (double) acked / cwnd;
+        cwnd = Math.min(cwnd, maxWindow);
+    }
+
+    @Override
+    public void onLoss() {
+        ssthresh = Math.max(cwnd / 2, 2);
+        cwnd = ssthresh;
+    }
+
+    @Override
+    public void onTimeout() {
+        ssthresh = Math.max(cwnd / 2, 2);
+        cwnd = 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("aimd cwnd=%.1f ssthresh=%.1f", cwnd, ssthresh);
+    }
+}
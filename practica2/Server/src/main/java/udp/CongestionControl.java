@@ -0,0 +1,56 @@
+package udp;
+
+/**
+ * Control de congestión del Sender: decide cuántos paquetes pueden ir en vuelo (cwnd)
+ * a partir de lo que dicen los ACK.
+ *
+ * - Arranque lento: la ventana crece un paquete por cada paquete confirmado (se duplica cada RTT)
+ * - Pérdida detectada por ACKs (SACK o ACKs duplicados): la red sigue entregando, se reduce la ventana
+ * - Timeout: no llega nada, se vuelve a empezar desde un paquete
+ *
+ * La ventana nunca pasa de maxWindow (el buffer del receptor o --window).
+ * Implementaciones: "aimd" (Reno), "cubic" y "fixed" (la ventana fija de antes).
+ */
+public interface CongestionControl {
+    int INITIAL_WINDOW = 4;     // paquetes
+
+    // Paquetes que pueden ir en vuelo (al menos 1)
+    int window();
+
+    boolean inSlowStart();
+
+    // acked paquetes confirmados por primera vez; srttNanos = 0 si aún no hay muestras
+    void onAck(int acked, long srttNanos);
+
+    // Pérdida detectada por ACKs: se llama una vez por ventana de datos
+    void onLoss();
+
+    // Venció el RTO
+    void onTimeout();
+
+    static CongestionControl create(String name, int maxWindow) {
+        return switch (name) {
+            case "aimd", "reno" -> new AimdControl(maxWindow);
+            case "cubic" -> new CubicControl(maxWindow);
+            case "fixed" -> new FixedWindow(maxWindow);
+            default -> throw new IllegalArgumentException(
+                    "Control de congestión desconocido: " + name + " (aimd, cubic, fixed)");
+        };
+    }
+
+    // Sin control de congestión: siempre maxWindow en vuelo
+    final class FixedWindow implements CongestionControl {
+        private final int window;
+
+        FixedWindow(int window) { this.window = Math.max(1, window); }
+
+        @Override public int window() { return window; }
+        @Override public boolean inSlowStart() { return false; }
+        @Override public void onAck(int acked, long srttNanos) {}
+        @Override public void onLoss() {}
+        @Override public void onTimeout() {}
+
+        @Override
+        public String toString() { return "fixed cwnd=" + window; }
+    }
+}
@@ -0,0 +1,94 @@
+package udp;
+
+/**
+ * CUBIC (RFC 9438): después de una pérdida la ventana sigue una cúbica en el tiempo,
+ *
+ *   W(t) = C (t - K)^3 + Wmax,   K = cbrt(Wmax (1 - BETA) / C)
+ *
+ * que sube rápido hacia la ventana donde hubo pérdida (Wmax), se aplana cerca de ella
+ * y vuelve a acelerar si ya no hay pérdidas. El crecimiento depende del tiempo y no del
+ * RTT, así que en enlaces rápidos llega mucho antes que AIMD a llenar el enlace.
+ * Nunca crece más lento que AIMD (región "amigable con Reno", West).
+ */
+public class CubicControl implements CongestionControl {
+    private static final double C = 0.4;
+    private static final double BETA = 0.7;
+    private static final double ALPHA = 3 * (1 - BETA) / (1 + BETA);   // crecimiento de West por RTT
+
+    private final int maxWindow;
+    private double cwnd = INITIAL_WINDOW;
+    private double ssthresh;
+    private double wMax;            // ventana en la última pérdida
+    private double k;               // segundos hasta volver a wMax
+    private double wEst;            // ventana que tendría AIMD
+    private long epochStart;        // nanoTime del inicio de la época actual; 0 = sin época
+
+    public CubicControl(int maxWindow) {
+        this.maxWindow = Math.max(1, maxWindow);
+        this.ssthresh = this.maxWindow;
+    }
+
+    @Override
+    public int window() {
+        return (int) Math.max(1, Math.min(maxWindow, cwnd));
+    }
+
+    @Override
+    public boolean inSlowStart() {
+        return cwnd < ssthresh;
+    }
+
+    @Override
+    public void onAck(int acked, long srttNanos) {
+        if (inSlowStart()) {
+            cwnd = Math.min(cwnd + acked, maxWindow);
+            return;
+        }
+        long now = System.nanoTime();
+        if (epochStart == 0) {
+            epochStart = now;
+            if (cwnd < wMax) {
+                k = Math.cbrt((wMax - cwnd) / C);
+            } else {
+                k = 0;
+                wMax = cwnd;
+            }
+            wEst = cwnd;
+        }
+
+        // Objetivo: dónde estará la cúbica dentro de un RTT (acotado a 1.5 x cwnd)
+        double t = (now - epochStart) / 1e9 + srttNanos / 1e9;
+        double target = wMax + C * Math.pow(t - k, 3);
+        target = Math.max(cwnd, Math.min(target, 1.5 * cwnd));
+
+        wEst += ALPHA * acked / cwnd;
+        if (wEst > target) cwnd = wEst;
+        else cwnd += (target - cwnd) / cwnd * acked;
+        cwnd = Math.min(cwnd, maxWindow);
+    }
+
+    @Override
+    public void onLoss() {
+        reduce();
+        cwnd = ssthresh;
+    }
+
+    @Override
+    public void onTimeout() {
+        reduce();
+        cwnd = 1;
+    }
+
+    // Convergencia rápida: si la pérdida llegó antes de recuperar wMax, otro flujo está
+    // ocupando el enlace y se le deja un poco más de lugar
+    private void reduce() {
+        wMax = cwnd < wMax ? cwnd * (1 + BETA) / 2 : cwnd;
+        ssthresh = Math.max(cwnd * BETA, 2);
+        epochStart = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cubic cwnd=%.1f ssthresh=%.1f wmax=%.1f", cwnd, ssthresh, wMax);
+    }
+}
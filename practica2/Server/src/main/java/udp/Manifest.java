@@ -0,0 +1,234 @@
+package udp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Manifiesto de un archivo para sincronizar solo lo que cambió (como rsync):
+ * tamaño, SHA-256 del archivo completo y, por cada bloque de blockSize bytes,
+ * una suma débil "rodante" y una fuerte.
+ *
+ * - El sender manda el manifiesto de la versión nueva; el receptor recorre su versión
+ *   anterior byte a byte con la suma rodante (actualizarla al avanzar un byte cuesta O(1))
+ *   y, cuando coincide y la suma fuerte lo confirma, copia ese bloque a su lugar en el .part;
+ *   así también se aprovechan bloques que se movieron (algo insertado o borrado antes)
+ * - blockSize es múltiplo del mtu: un bloque copiado son paquetes completos que el sender ya no envía
+ * - Debe caber en un datagrama: el bloque crece para no pasar de MAX_BLOCKS
+ *
+ * Formato: "MANIFEST size=S mtu=M sha256=HEX block=B sums=débil:fuerte,..." (hex)
+ */
+final class Manifest {
+    private static final int MIN_BLOCK_PACKETS = 16;
+    private static final int MAX_BLOCKS = 2000;         // 26 caracteres por bloque: ~52 KB
+
+    final long size;
+    final int mtu;
+    final String sha256;
+    final int blockSize;
+    final int[] weak;           // de los bloques completos (el último, si es más corto, no se compara)
+    final long[] strong;
+
+    private Manifest(long size, int mtu, String sha256, int blockSize, int[] weak, long[] strong) {
+        this.size = size;
+        this.mtu = mtu;
+        this.sha256 = sha256;
+        this.blockSize = blockSize;
+        this.weak = weak;
+        this.strong = strong;
+    }
+
+    /**
+     * Calcula el manifiesto de un archivo que se va a enviar en paquetes de mtu bytes
+     */
+    static Manifest of(Path path, int mtu) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = file.size();
+            long packets = (size + mtu - 1) / mtu;
+            int blockPackets = (int) Math.max(MIN_BLOCK_PACKETS, (packets + MAX_BLOCKS - 1) / MAX_BLOCKS);
+            int blockSize = blockPackets * mtu;
+            int blocks = (int) (size / blockSize);
+
+            MessageDigest whole = digest();
+            MessageDigest block = digest();
+            int[] weak = new int[blocks];
+            long[] strong = new long[blocks];
+            ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+            for (int b = 0; b <= blocks; b++) {
+                buffer.clear();
+                while (buffer.hasRemaining() && file.read(buffer) > 0) { }
+                buffer.flip();
+                if (b < blocks) {
+                    weak[b] = weakSum(buffer.array(), 0, blockSize);
+                    block.update(buffer.array(), 0, blockSize);
+                    strong[b] = strongSum(block.digest());
+                }
+                whole.update(buffer);
+            }
+            return new Manifest(size, mtu, HexFormat.of().formatHex(whole.digest()), blockSize, weak, strong);
+        }
+    }
+
+    // SHA-256 de un archivo completo (hex)
+    static String sha256(Path path) throws IOException {
+        MessageDigest digest = digest();
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            while (file.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // true si el archivo tiene exactamente este contenido (primero el tamaño, que es gratis)
+    boolean matches(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (file.size() != size) return false;
+        }
+        return sha256(path).equals(sha256);
+    }
+
+    String encode() {
+        StringBuilder sb = new StringBuilder("MANIFEST size=").append(size)
+                .append(" mtu=").append(mtu)
+                .append(" sha256=").append(sha256)
+                .append(" block=").append(blockSize)
+                .append(" sums=");
+        for (int b = 0; b < weak.length; b++) {
+            if (b > 0) sb.append(',');
+            sb.append(String.format("%08x:%016x", weak[b], strong[b]));
+        }
+        return sb.toString();
+    }
+
+    static Manifest parse(String msg) {
+        Map<String, String> fields = Sender.parseHandshake(msg);
+        String sums = fields.getOrDefault("sums", "");
+        String[] parts = sums.isEmpty() ? new String[0] : sums.split(",");
+        int[] weak = new int[parts.length];
+        long[] strong = new long[parts.length];
+        for (int b = 0; b < parts.length; b++) {
+            weak[b] = Integer.parseUnsignedInt(parts[b].substring(0, 8), 16);
+            strong[b] = Long.parseUnsignedLong(parts[b].substring(9), 16);
+        }
+        return new Manifest(Long.parseLong(fields.get("size")), Integer.parseInt(fields.get("mtu")),
+                fields.get("sha256"), Integer.parseInt(fields.get("block")), weak, strong);
+    }
+
+    /**
+     * Busca los bloques de este manifiesto en cualquier posición de old y copia cada uno
+     * que encuentre a su lugar en part (marcando sus paquetes como recibidos)
+     * @return cuántos bloques se copiaron
+     */
+    int copyMatches(Path old, PartialFile part) throws IOException {
+        Map<Integer, List<Integer>> byWeak = new HashMap<>();
+        for (int b = 0; b < weak.length; b++) byWeak.computeIfAbsent(weak[b], k -> new ArrayList<>()).add(b);
+        boolean[] found = new boolean[weak.length];
+        int copied = 0;
+
+        try (FileChannel file = FileChannel.open(old, StandardOpenOption.READ)) {
+            long oldSize = file.size();
+            if (oldSize < blockSize || oldSize > Integer.MAX_VALUE || weak.length == 0) return 0;
+            MappedByteBuffer data = file.map(FileChannel.MapMode.READ_ONLY, 0, oldSize);
+            byte[] window = new byte[blockSize];
+            MessageDigest digest = digest();
+
+            int pos = 0;
+            int sum = weakSum(data, pos, blockSize);
+            while (true) {
+                List<Integer> candidates = byWeak.get(sum);
+                boolean matched = false;
+                if (candidates != null) {
+                    data.get(pos, window);
+                    long s = strongSum(digest.digest(window));
+                    for (int b : candidates) {
+                        if (found[b] || strong[b] != s) continue;
+                        copyBlock(b, window, part);
+                        found[b] = true;
+                        matched = true;
+                        copied++;
+                    }
+                }
+                if (matched) {
+                    // Como rsync: después de un bloque igual se sigue al final de ese bloque
+                    pos += blockSize;
+                    if (pos + blockSize > oldSize) break;
+                    sum = weakSum(data, pos, blockSize);
+                } else {
+                    if (pos + blockSize >= oldSize) break;
+                    sum = roll(sum, data.get(pos), data.get(pos + blockSize), blockSize);
+                    pos++;
+                }
+            }
+        }
+        return copied;
+    }
+
+    private void copyBlock(int b, byte[] block, PartialFile part) throws IOException {
+        int packetsPerBlock = blockSize / mtu;
+        int lastSeq = (int) ((size + mtu - 1) / mtu) - 1;
+        ByteBuffer view = ByteBuffer.wrap(block);
+        for (int k = 0; k < packetsPerBlock; k++) {
+            int seq = b * packetsPerBlock + k;
+            if (part.has(seq)) continue;
+            view.clear();
+            view.position(k * mtu).limit((k + 1) * mtu);
+            part.write(seq, seq == lastSeq, view);
+        }
+    }
+
+    /*
+     * Suma débil de rsync: a = suma de los bytes, b = suma de las sumas parciales (ambas mod 2^16)
+     * Al avanzar un byte: a' = a - sale + entra, b' = b - L * sale + a'
+     */
+    private static int weakSum(byte[] data, int from, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            a += data[from + i] & 0xff;
+            b += (length - i) * (data[from + i] & 0xff);
+        }
+        return (a & 0xffff) | (b << 16);
+    }
+
+    private static int weakSum(ByteBuffer data, int from, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int x = data.get(from + i) & 0xff;
+            a += x;
+            b += (length - i) * x;
+        }
+        return (a & 0xffff) | (b << 16);
+    }
+
+    private static int roll(int sum, byte out, byte in, int length) {
+        int a = sum & 0xffff;
+        int b = sum >>> 16;
+        a = (a - (out & 0xff) + (in & 0xff)) & 0xffff;
+        b = (b - length * (out & 0xff) + a) & 0xffff;
+        return a | (b << 16);
+    }
+
+    // Los primeros 8 bytes del SHA-256 del bloque
+    private static long strongSum(byte[] digest) {
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);     // SHA-256 siempre está disponible
+        }
+    }
+}
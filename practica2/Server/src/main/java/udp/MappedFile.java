@@ -0,0 +1,164 @@
+package udp;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Archivo a enviar, mapeado en memoria y visto como paquetes de mtu bytes.
+ *
+ * - Nada del archivo pasa por el heap: cada datagrama se arma con una escritura
+ *   "gather" de la cabecera y una vista de la región mapeada
+ * - La cabecera, las vistas y el arreglo del gather se crean una vez: enviar o
+ *   retransmitir un paquete no reserva memoria
+ * - Un MappedByteBuffer llega a 2 GB, así que el archivo se mapea en regiones de
+ *   REGION bytes (múltiplo de mtu: ningún paquete queda partido entre dos)
+ * - Por un canal sin conectar (SendServer, un canal para muchos receptores) no hay gather:
+ *   el paquete se copia a un buffer directo reutilizable y se manda a su destino
+ *
+ * - Cada paquete lleva un CRC32C de la cabecera y los datos (el receptor descarta los que
+ *   llegan dañados, como si se hubieran perdido)
+ * - Paridad (FEC): el XOR de un bloque de paquetes; con él el receptor reconstruye un paquete
+ *   perdido del bloque sin esperar un RTT por la retransmisión
+ *
+ * Formato del paquete: stream(int) seq(int) flags(byte) crc32c(int) datos
+ * Paridad: flags con PARITY, seq = primer paquete del bloque,
+ *          datos = cuántos paquetes cubre(int) largo del último(int) XOR de sus datos (mtu bytes)
+ */
+final class MappedFile {
+    static final int HEADER = 13;
+    static final int CHECKED = 9;                   // bytes de la cabecera antes del CRC
+    static final byte LAST = 1;                     // último paquete (en la paridad: el bloque lo incluye)
+    static final byte PARITY = 2;
+    static final int PARITY_INFO = 8;
+    static final int MAX_MTU = 65507 - HEADER - PARITY_INFO;  // el paquete de paridad cabe en un datagrama UDP
+    private static final long REGION = 1L << 30;    // 1 GB
+
+    private final long size;
+    private final int mtu;
+    private final int packets;
+    private final int packetsPerRegion;
+    private final ByteBuffer[] regions;             // vista reutilizable de cada región
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER);
+    private final ByteBuffer[] datagram = new ByteBuffer[2];
+    private ByteBuffer copy;                        // solo para canales sin conectar
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer parity;                      // paquete de paridad (se reutiliza)
+    private ByteBuffer parityData;                  // vista de sus datos
+
+    MappedFile(Path path, int mtu) throws IOException {
+        this.mtu = mtu;
+        this.packetsPerRegion = (int) (REGION / mtu);
+        long regionBytes = (long) packetsPerRegion * mtu;
+        // El mapeo sigue valiendo después de cerrar el canal
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.size = file.size();
+            long count = (size + mtu - 1) / mtu;
+            if (count > Integer.MAX_VALUE)
+                throw new IOException("Archivo demasiado grande para seq de 32 bits con mtu " + mtu);
+            this.packets = (int) count;
+            this.regions = new ByteBuffer[(int) ((size + regionBytes - 1) / regionBytes)];
+            for (int r = 0; r < regions.length; r++) {
+                long start = r * regionBytes;
+                regions[r] = file.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionBytes, size - start));
+            }
+        }
+        datagram[0] = header;
+    }
+
+    int packets() {
+        return packets;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Envía el paquete seq del stream por un canal conectado al receptor
+     */
+    void send(DatagramChannel channel, int stream, int seq) throws IOException {
+        ByteBuffer region = packet(seq);
+        writeHeader(header, stream, seq, flags(seq), region);
+        header.flip();
+        datagram[1] = region;
+        channel.write(datagram);
+    }
+
+    /**
+     * Envía el paquete seq del stream a target por un canal sin conectar
+     * @return false si el buffer del socket estaba lleno (canal no bloqueante): es como si se perdiera
+     */
+    boolean send(DatagramChannel channel, int stream, int seq, SocketAddress target) throws IOException {
+        ByteBuffer region = packet(seq);
+        if (copy == null) copy = ByteBuffer.allocateDirect(HEADER + mtu);
+        writeHeader(copy, stream, seq, flags(seq), region);
+        copy.put(region);
+        copy.flip();
+        return channel.send(copy, target) > 0;
+    }
+
+    /**
+     * Envía la paridad del bloque [first, first + count): XOR de los datos de sus paquetes
+     * (el último, si es más corto, se completa con ceros). target null: canal conectado
+     */
+    void sendParity(DatagramChannel channel, int stream, int first, int count, SocketAddress target) throws IOException {
+        if (parity == null) {
+            parity = ByteBuffer.allocateDirect(HEADER + PARITY_INFO + mtu);
+            parityData = parity.slice(HEADER, PARITY_INFO + mtu);
+        }
+        int base = HEADER + PARITY_INFO;
+        for (int i = base; i < parity.capacity(); i++) parity.put(i, (byte) 0);
+        int lastLength = 0;
+        for (int s = first; s < first + count; s++) {
+            ByteBuffer region = packet(s);
+            int offset = region.position();
+            int length = region.remaining();
+            int j = 0;
+            for (; j + 8 <= length; j += 8) parity.putLong(base + j, parity.getLong(base + j) ^ region.getLong(offset + j));
+            for (; j < length; j++) parity.put(base + j, (byte) (parity.get(base + j) ^ region.get(offset + j)));
+            lastLength = length;
+        }
+        parity.putInt(HEADER, count);
+        parity.putInt(HEADER + 4, lastLength);
+
+        byte flags = (byte) (PARITY | (first + count == packets ? LAST : 0));
+        parityData.clear();
+        writeHeader(parity, stream, first, flags, parityData);
+        parity.position(0);
+        if (target == null) channel.write(parity);
+        else channel.send(parity, target);
+    }
+
+    private byte flags(int seq) {
+        return seq == packets - 1 ? LAST : 0;
+    }
+
+    // Vista de la región con los datos del paquete seq
+    private ByteBuffer packet(int seq) {
+        ByteBuffer region = regions[seq / packetsPerRegion];
+        int offset = (seq % packetsPerRegion) * mtu;
+        region.clear();
+        region.position(offset).limit(Math.min(offset + mtu, region.capacity()));
+        return region;
+    }
+
+    // Cabecera con el CRC32C de sus primeros CHECKED bytes y de data; deja la posición en HEADER
+    private void writeHeader(ByteBuffer buffer, int stream, int seq, byte flags, ByteBuffer data) {
+        buffer.clear();
+        buffer.putInt(stream).putInt(seq).put(flags);
+        buffer.flip();
+        crc.reset();
+        crc.update(buffer);
+        int position = data.position();
+        crc.update(data);
+        data.position(position);
+        buffer.limit(buffer.capacity());
+        buffer.putInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,90 @@
+package udp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Paridad (FEC) del lado que recibe: la paridad de un bloque es el XOR de sus paquetes, así que
+ * si al bloque le falta exactamente uno, ese paquete es el XOR de la paridad con los demás
+ * (que ya están en el .part). Se reconstruye y se escribe como si hubiera llegado, sin esperar
+ * la retransmisión. La paridad se guarda hasta que el bloque se completa de una forma u otra.
+ */
+final class ParityRepair {
+    private final int k;
+    private final Map<Integer, Block> pending = new HashMap<>();    // primer seq del bloque -> su paridad
+    private ByteBuffer other;                                       // un paquete leído del .part
+    private int repaired;
+
+    private static final class Block {
+        final byte[] data;          // cuántos(int) largo del último(int) XOR
+        final boolean includesLast;
+
+        Block(byte[] data, boolean includesLast) {
+            this.data = data;
+            this.includesLast = includesLast;
+        }
+    }
+
+    /**
+     * k: paquetes por bloque (0 = sin paridad)
+     */
+    ParityRepair(int k) {
+        this.k = k;
+    }
+
+    /**
+     * Llegó la paridad del bloque que empieza en first
+     */
+    void onParity(int first, boolean includesLast, ByteBuffer data, PartialFile file) throws IOException {
+        if (pending.containsKey(first) || data.remaining() <= MappedFile.PARITY_INFO) return;
+        byte[] copy = new byte[data.remaining()];
+        data.get(copy);
+        pending.put(first, new Block(copy, includesLast));
+        repair(first, file);
+    }
+
+    /**
+     * Se escribió el paquete seq: quizá su bloque ya se puede reparar (o ya no necesita paridad)
+     */
+    void onData(int seq, PartialFile file) throws IOException {
+        if (k > 0 && !pending.isEmpty()) repair(seq - seq % k, file);
+    }
+
+    int repaired() {
+        return repaired;
+    }
+
+    private void repair(int first, PartialFile file) throws IOException {
+        Block block = pending.get(first);
+        if (block == null) return;
+        ByteBuffer info = ByteBuffer.wrap(block.data);
+        int count = info.getInt(0);
+        int lastLength = info.getInt(4);
+        int mtu = block.data.length - MappedFile.PARITY_INFO;
+        int end = first + count - 1;
+
+        int missing = -1;
+        for (int s = first; s <= end; s++) {
+            if (file.has(s)) continue;
+            if (missing >= 0) return;       // faltan dos o más: hay que esperar retransmisiones
+            missing = s;
+        }
+        pending.remove(first);
+        if (missing < 0) return;
+
+        byte[] xor = block.data;
+        if (other == null || other.capacity() != mtu) other = ByteBuffer.allocate(mtu);
+        for (int s = first; s <= end; s++) {
+            if (s == missing) continue;
+            other.clear().limit(s == end ? lastLength : mtu);
+            file.read(s, other);
+            byte[] bytes = other.array();
+            for (int i = 0; i < other.limit(); i++) xor[MappedFile.PARITY_INFO + i] ^= bytes[i];
+        }
+        int length = missing == end ? lastLength : mtu;
+        file.write(missing, block.includesLast && missing == end, ByteBuffer.wrap(xor, MappedFile.PARITY_INFO, length));
+        repaired++;
+    }
+}
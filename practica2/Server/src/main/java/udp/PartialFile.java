@@ -0,0 +1,235 @@
+package udp;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Archivo que se está recibiendo: cada paquete se escribe directo en su posición
+ * (seq * mtu) de "<destino>.part", llegue en orden o no; al terminar se publica
+ * con un rename atómico, así nunca se ve en el destino un archivo a medias.
+ *
+ * - El protocolo no manda el mtu: todos los paquetes menos el último traen exactamente
+ *   mtu bytes, así que se toma del primero que llegue. Un último paquete con seq > 0
+ *   que llegue antes que cualquier otro no se puede ubicar y se descarta (el sender lo reenvía)
+ * - El tamaño final se conoce con el último paquete; escribirlo en su posición ya deja
+ *   el archivo de su tamaño final, los demás paquetes van llenando los huecos
+ *
+ * Progreso reanudable: cada CHECKPOINT_MS se baja a disco el .part y después se guarda
+ * en "<destino>.part.progress" qué paquetes tiene (así el progreso nunca promete datos
+ * que no estén en disco). Si el proceso muere, la siguiente vez se continúa desde ahí.
+ *
+ * Progreso (DataOutputStream): MAGIC mtu(int) size(long) lastSeq(int) prefix(int)
+ * n(int) n bytes = BitSet de los paquetes recibidos después de prefix (bit i = seq prefix + i);
+ * del 0 a prefix - 1 llegó todo, así que el archivo ocupa poco aunque la canción sea grande
+ */
+final class PartialFile implements Closeable {
+    private static final int MAGIC = 0x55445031;        // "UDP1"
+    private static final long CHECKPOINT_NANOS = 1_000_000_000L;
+
+    private final Path dest;
+    private final Path part;
+    private final Path progress;
+    private final FileChannel channel;
+    private final BitSet received = new BitSet();
+    private int mtu;                // 0 = aún no se conoce
+    private long size = -1;         // -1 = aún no llega el último paquete
+    private int lastSeq = -1;
+    private boolean dirty;
+    private long lastCheckpoint = System.nanoTime();
+
+    /**
+     * resume: si hay un .part con su progreso se continúa; si no (o si resume es false) se empieza de cero
+     */
+    PartialFile(Path dest, boolean resume) throws IOException {
+        this.dest = dest;
+        this.part = dest.resolveSibling(dest.getFileName() + ".part");
+        this.progress = dest.resolveSibling(dest.getFileName() + ".part.progress");
+        boolean resumed = resume && Files.exists(part) && loadProgress();
+        if (!resumed) Files.deleteIfExists(progress);
+        this.channel = resumed
+                ? FileChannel.open(part, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * mtu y tamaño ya conocidos (por el manifiesto del sender) antes de que llegue ningún paquete
+     */
+    void expect(int mtu, long size) {
+        this.mtu = mtu;
+        this.size = size;
+        this.lastSeq = (int) ((size + mtu - 1) / mtu) - 1;
+    }
+
+    /**
+     * Escribe los bytes restantes de data como el paquete seq
+     * @return false si el paquete todavía no se puede ubicar
+     */
+    boolean write(int seq, boolean last, ByteBuffer data) throws IOException {
+        int length = data.remaining();
+        if (!last) {
+            if (mtu == 0) mtu = length;
+            else if (length != mtu)
+                throw new IOException("Paquete " + seq + " de " + length + " bytes, se esperaban " + mtu);
+        } else if (mtu == 0 && seq > 0) {
+            return false;
+        }
+        long position = (long) seq * mtu;
+        if (last) {
+            size = position + length;
+            lastSeq = seq;
+        }
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+        received.set(seq);
+        dirty = true;
+        if (System.nanoTime() - lastCheckpoint >= CHECKPOINT_NANOS) checkpoint();
+        return true;
+    }
+
+    /**
+     * Lee del .part el paquete seq (ya recibido) hasta llenar into
+     */
+    void read(int seq, ByteBuffer into) throws IOException {
+        long position = (long) seq * mtu;
+        while (into.hasRemaining()) {
+            int n = channel.read(into, position);
+            if (n < 0) throw new EOFException("Paquete " + seq + " fuera del archivo");
+            position += n;
+        }
+    }
+
+    // SHA-256 de lo recibido, para compararlo con el del sender antes de publicar
+    String sha256() throws IOException {
+        return Manifest.sha256(part);
+    }
+
+    boolean has(int seq) {
+        return received.get(seq);
+    }
+
+    // Primer paquete que falta (todo lo anterior ya está en disco)
+    int firstMissing() {
+        return received.nextClearBit(0);
+    }
+
+    boolean resumed() {
+        return !received.isEmpty();
+    }
+
+    int mtu() {
+        return mtu;
+    }
+
+    long size() {
+        return size;
+    }
+
+    // seq del último paquete, -1 si todavía no llega
+    int lastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Paquetes que ya se tienen como "desde-hasta,desde-hasta..." (a lo más maxRanges;
+     * lo que no quepa simplemente se vuelve a recibir)
+     */
+    String ranges(int maxRanges) {
+        StringBuilder sb = new StringBuilder();
+        int from = received.nextSetBit(0);
+        for (int n = 0; from >= 0 && n < maxRanges; n++) {
+            int to = received.nextClearBit(from) - 1;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(from).append('-').append(to);
+            from = received.nextSetBit(to + 1);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Baja a disco lo escrito y después guarda el progreso
+     */
+    void checkpoint() throws IOException {
+        lastCheckpoint = System.nanoTime();
+        if (!dirty) return;
+        channel.force(false);
+        int prefix = firstMissing();
+        byte[] bits = received.get(prefix, Math.max(prefix, received.length())).toByteArray();
+        Path tmp = progress.resolveSibling(progress.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(MAGIC);
+            out.writeInt(mtu);
+            out.writeLong(size);
+            out.writeInt(lastSeq);
+            out.writeInt(prefix);
+            out.writeInt(bits.length);
+            out.write(bits);
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, progress, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+    }
+
+    // false si no hay progreso o no se puede leer (se empieza de cero)
+    private boolean loadProgress() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(progress)))) {
+            if (in.readInt() != MAGIC) return false;
+            mtu = in.readInt();
+            size = in.readLong();
+            lastSeq = in.readInt();
+            int prefix = in.readInt();
+            byte[] bits = new byte[in.readInt()];
+            in.readFully(bits);
+            received.set(0, prefix);
+            BitSet rest = BitSet.valueOf(bits);
+            for (int i = rest.nextSetBit(0); i >= 0; i = rest.nextSetBit(i + 1)) received.set(prefix + i);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            received.clear();
+            mtu = 0;
+            size = -1;
+            lastSeq = -1;
+            return false;
+        }
+    }
+
+    /**
+     * Baja a disco lo escrito y lo mueve al destino (reemplazándolo si existe)
+     */
+    Path publish() throws IOException {
+        if (size < 0 || firstMissing() <= lastSeq)
+            throw new IOException("Archivo incompleto: faltan paquetes desde el " + firstMissing());
+        channel.force(true);
+        channel.close();
+        Path published = Files.move(part, dest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(progress);
+        return published;
+    }
+
+    // Borra el .part y su progreso sin publicar (el destino ya estaba al día)
+    void discard() throws IOException {
+        channel.close();
+        Files.deleteIfExists(part);
+        Files.deleteIfExists(progress);
+    }
+
+    // Si no se publicó, el .part y su progreso se quedan en disco para continuar después
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) return;
+        try {
+            checkpoint();
+        } finally {
+            channel.close();
+        }
+    }
+}
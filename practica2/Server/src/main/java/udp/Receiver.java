@@ -3,14 +3,26 @@ package udp;
 import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32C;
 import com.google.gson.*;
 
 public class Receiver {
     private static final int DEFAULT_LISTEN_PORT = 6000;
     private static final String DEFAULT_SENDER_IP = "127.0.0.1";
     private static final int DEFAULT_SENDER_PORT = 5000;
+    private static final int DEFAULT_WINDOW = 64;   // buffer de reordenamiento (Selective Repeat)
+    private static final int MAX_SACK_RANGES = 16;
+    private static final int MAX_SILENCES = 15;         // timeouts seguidos antes de abandonar
+    private static final int LINGER_MS = 1000;
+    private static final int MAX_RESUME_RANGES = 2048;  // rangos "have" en el READY (caben en un datagrama)
+    private static final int MANIFEST_WAIT_MS = 1000;
+    private static final int MANIFEST_TRIES = 5;
+    private static final int UP_TO_DATE_COPIES = 3;
+    private static final int HEADER = MappedFile.HEADER;  // stream(int) + seq(int) + flags(byte) + crc32c(int)
 
     private final int listenPort;
     private final String senderIp;
@@ -20,13 +32,28 @@ public class Receiver {
     private final String artist;
     private final String mp3Name;
     private final String coverName;
+    private final boolean selectiveRepeat;
+    private final int window;
+    private final boolean resume;
+    private final int fec;                              // pedir paridad cada fec paquetes (solo SR); 0 = sin paridad
+    private final CRC32C crc = new CRC32C();
+    private int corrupt;                                // paquetes descartados por CRC
+    // Identifica esta transferencia en los paquetes y ACKs (un SendServer atiende muchas por el mismo
+    // puerto); positivo y menor que 2^30, así un paquete de datos nunca empieza como "ERROR"
+    private final int stream = ThreadLocalRandom.current().nextInt(1, 1 << 30);
 
     private static final String BASE_DIR = System.getProperty("user.dir");
     private static final String MUSIC_DIR = BASE_DIR + "/musicReceiver";
     private static final String CATALOG_FILE = BASE_DIR + "/catalog.json";
+    private static final Object CATALOG_LOCK = new Object();
 
     public Receiver(int listenPort, String senderIp, int senderPort,
                     int songId, String title, String artist, String mp3Name, String coverName) {
+        this(listenPort, senderIp, senderPort, songId, title, artist, mp3Name, coverName, new Options());
+    }
+
+    public Receiver(int listenPort, String senderIp, int senderPort,
+                    int songId, String title, String artist, String mp3Name, String coverName, Options options) {
         this.listenPort = listenPort;
         this.senderIp = senderIp;
         this.senderPort = senderPort;
@@ -35,6 +62,45 @@ public class Receiver {
         this.artist = artist;
         this.mp3Name = mp3Name;
         this.coverName = coverName;
+        this.selectiveRepeat = options.selectiveRepeat;
+        this.window = options.window;
+        this.resume = options.resume;
+        this.fec = options.fec;
+    }
+
+    /**
+     * Cómo se recibe: modo, ventana, si se continúa lo guardado y paridad. Por omisión
+     * Selective Repeat con DEFAULT_WINDOW, continuando y sin paridad
+     */
+    public static final class Options {
+        private boolean selectiveRepeat = true;
+        private int window = DEFAULT_WINDOW;
+        private boolean resume = true;
+        private int fec;
+
+        // false = Go-Back-N
+        public Options selectiveRepeat(boolean selectiveRepeat) {
+            this.selectiveRepeat = selectiveRepeat;
+            return this;
+        }
+
+        // Buffer de reordenamiento (Selective Repeat)
+        public Options window(int window) {
+            this.window = window;
+            return this;
+        }
+
+        // false = descartar el progreso guardado (--restart)
+        public Options resume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        // Pedir un paquete de paridad cada fec paquetes (solo SR); 0 = sin paridad
+        public Options fec(int fec) {
+            this.fec = fec;
+            return this;
+        }
     }
 
     public void receive() throws IOException {
@@ -44,38 +110,178 @@ public class Receiver {
         InetAddress senderAddr = InetAddress.getByName(senderIp);
         System.out.println("[RECV] Escuchando en puerto " + listenPort);
 
-        // Enviar READY al sender
-        byte[] ready = "READY".getBytes();
-        DatagramPacket readyPacket = new DatagramPacket(ready, ready.length, senderAddr, senderPort);
-        socket.send(readyPacket);
-        System.out.println("[RECV] READY enviado a " + senderIp + ":" + senderPort);
+        // Cada paquete va directo a disco; el MP3 aparece en su lugar solo si llegó completo
+        Path dest = Paths.get(MUSIC_DIR, mp3Name);
+        try (PartialFile file = new PartialFile(dest, resume)) {
+            // Siempre se pide el manifiesto: su SHA-256 verifica el archivo antes de publicarlo. Si ya hay
+            // una versión de la canción y es idéntica no se transfiere nada, y si cambió se copian los
+            // bloques que ya están y solo se piden los demás
+            Manifest manifest = requestManifest(socket, senderAddr);
+            boolean previous = !file.resumed() && Files.exists(dest);
+            if (manifest != null && previous && manifest.matches(dest)) {
+                file.discard();
+                upToDate(socket, senderAddr, manifest);
+                System.out.println("[RECV] La canción ya estaba al día (sha256 " + manifest.sha256 + ")");
+                registerSong(songId, title, artist, mp3Name, coverName);
+                return;
+            }
+            if (manifest != null && !file.resumed()) {
+                file.expect(manifest.mtu, manifest.size);
+                if (previous) {
+                    int copied = manifest.copyMatches(dest, file);
+                    System.out.println("[RECV] " + copied + " de " + manifest.weak.length
+                            + " bloques ya estaban en la versión anterior");
+                }
+            }
+
+            // Enviar READY al sender con el modo pedido (un sender que no lo entiende usa Go-Back-N,
+            // y los ACK con rangos empiezan con el acumulado, así que también los entiende)
+            String hello = hello(file);
+            byte[] ready = hello.getBytes();
+            DatagramPacket readyPacket = new DatagramPacket(ready, ready.length, senderAddr, senderPort);
+            socket.send(readyPacket);
+            System.out.println("[RECV] " + hello + " enviado a " + senderIp + ":" + senderPort);
+
+            if (selectiveRepeat) receiveSelectiveRepeat(socket, readyPacket, file);
+            else receiveGoBackN(socket, readyPacket, file);
+            System.out.println("[RECV] Transferencia terminada, " + file.size() + " bytes"
+                    + (corrupt > 0 ? ", " + corrupt + " paquetes descartados por CRC" : ""));
+
+            // El CRC de cada paquete no ve todo (bloques copiados de la versión anterior, un .part
+            // tocado entre ejecuciones): antes de publicar, el archivo completo debe tener el SHA-256 del sender
+            if (manifest != null) {
+                String sha256 = file.sha256();
+                if (!sha256.equals(manifest.sha256)) {
+                    file.discard();
+                    throw new IOException("El archivo recibido no coincide con el del sender (sha256 "
+                            + sha256 + ", se esperaba " + manifest.sha256 + "); se descartó");
+                }
+                System.out.println("[RECV] sha256 verificado: " + sha256);
+            } else {
+                System.out.println("[RECV] Sin manifiesto: el archivo no se pudo verificar completo");
+            }
+
+            // Publicar MP3
+            System.out.println("[RECV] Canción guardada en " + file.publish());
+        } finally {
+            socket.close();
+        }
+
+        // Actualizar catálogo
+        registerSong(songId, title, artist, mp3Name, coverName);
+
+        System.out.println("[RECV] Listo. Esta canción ya está en el catálogo");
+    }
+
+    /**
+     * "READY stream=ID file=NOMBRE [mode=sr window=N [fec=K]]": el stream con el que vendrán los paquetes,
+     * qué archivo se pide (un SendServer sirve varios; un Sender ignora file), el modo y si se quiere
+     * un paquete de paridad cada K
+     */
+    private StringBuilder ready() {
+        StringBuilder hello = new StringBuilder("READY stream=").append(stream)
+                .append(" file=").append(URLEncoder.encode(mp3Name, StandardCharsets.UTF_8));
+        if (selectiveRepeat) hello.append(" mode=sr window=").append(window);
+        if (selectiveRepeat && fec > 0) hello.append(" fec=").append(fec);
+        return hello;
+    }
+
+    /**
+     * READY con, en una transferencia que continúa, "mtu=M size=S have=desde-hasta,...":
+     * qué paquetes ya están en disco y con qué mtu se enviaron
+     */
+    private String hello(PartialFile file) {
+        StringBuilder hello = ready();
+        if (file.resumed()) {
+            hello.append(" mtu=").append(file.mtu());
+            if (file.size() >= 0) hello.append(" size=").append(file.size());
+            hello.append(" have=").append(file.ranges(MAX_RESUME_RANGES));
+            System.out.println("[RECV] Continuando transferencia: " + file.firstMissing() + " paquetes seguidos ya en disco");
+        }
+        return hello.toString();
+    }
+
+    /**
+     * "READY ... manifest=1" hasta que llegue el "MANIFEST ..." del sender
+     * @return null si el sender no lo mandó (se recibe el archivo completo)
+     */
+    private Manifest requestManifest(DatagramSocket socket, InetAddress senderAddr) throws IOException {
+        byte[] request = ready().append(" manifest=1").toString().getBytes();
+        byte[] buffer = new byte[65535];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        socket.setSoTimeout(MANIFEST_WAIT_MS);
+        for (int i = 0; i < MANIFEST_TRIES; i++) {
+            socket.send(new DatagramPacket(request, request.length, senderAddr, senderPort));
+            try {
+                while (true) {
+                    packet.setLength(buffer.length);
+                    socket.receive(packet);
+                    checkError(buffer, packet.getLength());
+                    String msg = new String(buffer, 0, packet.getLength());
+                    if (msg.startsWith("MANIFEST ")) return Manifest.parse(msg);
+                }
+            } catch (SocketTimeoutException e) {
+                // se pierde la petición o el manifiesto: se vuelve a pedir
+            }
+        }
+        System.out.println("[RECV] El sender no mandó manifiesto, se recibe completa");
+        return null;
+    }
+
+    /*
+     * Le dice al sender que ya tiene todo (have con todos los paquetes). No hay respuesta que
+     * confirme que llegó, así que se manda varias veces
+     */
+    private void upToDate(DatagramSocket socket, InetAddress senderAddr, Manifest manifest) throws IOException {
+        StringBuilder hello = ready();
+        hello.append(" mtu=").append(manifest.mtu).append(" size=").append(manifest.size);
+        long packets = (manifest.size + manifest.mtu - 1) / manifest.mtu;
+        if (packets > 0) hello.append(" have=0-").append(packets - 1);
+        byte[] ready = hello.toString().getBytes();
+        for (int i = 0; i < UP_TO_DATE_COPIES; i++) {
+            socket.send(new DatagramPacket(ready, ready.length, senderAddr, senderPort));
+        }
+    }
 
-        // Variables Go-Back-N
-        int esperado = 0;
-        int ultimoOk = -1;
-        ByteArrayOutputStream fileBytes = new ByteArrayOutputStream();
-        boolean termino = false;
+    private void receiveGoBackN(DatagramSocket socket, DatagramPacket readyPacket, PartialFile file) throws IOException {
+        // Variables Go-Back-N (en una transferencia que continúa se empieza en el primer faltante)
+        int esperado = file.firstMissing();
+        int ultimoOk = esperado - 1;
+        boolean termino = file.lastSeq() >= 0 && esperado > file.lastSeq();
+        int silencios = 0;
+        boolean heard = false;                          // ya llegó un paquete de datos de este stream
+        byte[] buffer = new byte[65535];
+        ByteBuffer view = ByteBuffer.wrap(buffer);
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
 
         socket.setSoTimeout(2000); // 2 segundos
 
         while (!termino) {
             try {
-                byte[] buffer = new byte[65535];
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                packet.setLength(buffer.length);
                 socket.receive(packet);
+                checkError(buffer, packet.getLength());
+                if (!heard && isManifest(buffer, packet.getLength())) {
+                    socket.send(readyPacket);   // el sender reenvía el manifiesto: no le llegó el READY
+                    continue;
+                }
+                if (packet.getLength() < HEADER || view.getInt(0) != stream) continue;
+                if (!intact(buffer, view, packet.getLength())) continue;   // dañado: como si se hubiera perdido
+                silencios = 0;
+                heard = true;
+                int seq = view.getInt(4);
+                byte flags = buffer[8];
+                if ((flags & MappedFile.PARITY) != 0) continue;             // paridad solo en Selective Repeat
+                boolean isLast = (flags & MappedFile.LAST) != 0;
 
-                PacketData pkt = parsePacket(Arrays.copyOf(packet.getData(), packet.getLength()));
-                if (pkt == null) continue;
-
-                System.out.println("[RECV] <- pkt " + pkt.seq + "  bytes=" + pkt.data.length + "  last=" + pkt.isLast);
+                System.out.println("[RECV] <- pkt " + seq + "  bytes=" + (packet.getLength() - HEADER) + "  last=" + isLast);
 
                 // Aceptar solo si es el paquete esperado
-                if (pkt.seq == esperado) {
-                    fileBytes.write(pkt.data);
-                    ultimoOk = pkt.seq;
-                    esperado++;
+                if (seq == esperado && file.write(seq, isLast, payload(view, packet))) {
+                    while (file.has(esperado)) esperado++;
+                    ultimoOk = esperado - 1;
 
-                    if (pkt.isLast) {
+                    if (file.lastSeq() >= 0 && esperado > file.lastSeq()) {
                         termino = true;
                     }
                 }
@@ -84,51 +290,129 @@ public class Receiver {
                 int ackToSend = Math.max(ultimoOk, -1);
                 sendAck(socket, packet.getAddress(), packet.getPort(), ackToSend);
 
-                if (pkt.isLast && pkt.seq <= ultimoOk) {
+                if (isLast && seq <= ultimoOk) {
                     termino = true;
                 }
 
             } catch (SocketTimeoutException e) {
                 if (termino) break;
+                if (++silencios >= MAX_SILENCES) throw new IOException("El sender dejó de enviar");
+                if (!heard) socket.send(readyPacket);    // el READY pudo perderse
             }
         }
+    }
 
-        socket.close();
-        System.out.println("[RECV] Transferencia terminada, guardando archivo...");
+    /**
+     * SELECTIVE REPEAT: los paquetes que llegan fuera de orden (dentro de la ventana) se
+     * escriben en su lugar del archivo y se confirman con rangos (PartialFile recuerda cuáles llegaron)
+     */
+    private void receiveSelectiveRepeat(DatagramSocket socket, DatagramPacket readyPacket, PartialFile file)
+            throws IOException {
+        int esperado = file.firstMissing();
+        ParityRepair parity = new ParityRepair(fec);
+        int silencios = 0;
+        boolean heard = false;                          // ya llegó un paquete de datos de este stream
+        byte[] buffer = new byte[65535];
+        ByteBuffer view = ByteBuffer.wrap(buffer);
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
 
-        // Guardar MP3
-        saveTrackFile(fileBytes.toByteArray(), mp3Name);
+        socket.setSoTimeout(2000); // 2 segundos
 
-        // Actualizar catálogo
-        registerSong(songId, title, artist, mp3Name, coverName);
+        while (file.lastSeq() < 0 || esperado <= file.lastSeq()) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+            } catch (SocketTimeoutException e) {
+                if (++silencios >= MAX_SILENCES) throw new IOException("El sender dejó de enviar");
+                if (!heard) socket.send(readyPacket);    // el READY pudo perderse
+                continue;
+            }
+            // Un manifiesto reenviado o un paquete ajeno no cuentan: el sender pudo no recibir el READY
+            checkError(buffer, packet.getLength());
+            if (!heard && isManifest(buffer, packet.getLength())) {
+                socket.send(readyPacket);   // el sender reenvía el manifiesto: no le llegó el READY
+                continue;
+            }
+            if (packet.getLength() < HEADER || view.getInt(0) != stream) continue;
+            if (!intact(buffer, view, packet.getLength())) continue;   // dañado: como si se hubiera perdido
+            silencios = 0;
+            heard = true;
+            int seq = view.getInt(4);
+            byte flags = buffer[8];
+            boolean isLast = (flags & MappedFile.LAST) != 0;
+
+            if ((flags & MappedFile.PARITY) != 0) {
+                // Paridad del bloque que empieza en seq: si le falta un solo paquete, se reconstruye
+                if (file.mtu() > 0 && seq + window > esperado) parity.onParity(seq, isLast, payload(view, packet), file);
+            } else if (seq >= esperado && seq < esperado + window && !file.has(seq)
+                    && file.write(seq, isLast, payload(view, packet))) {
+                parity.onData(seq, file);
+            }
+            while (file.has(esperado)) esperado++;
+            sendSack(socket, packet.getAddress(), packet.getPort(), esperado, file);
+        }
 
-        System.out.println("[RECV] Listo. Esta canción ya está en el catálogo");
+        if (parity.repaired() > 0) System.out.println("[RECV] " + parity.repaired() + " paquetes reparados con paridad");
+
+        // El último ACK pudo perderse: se sigue confirmando mientras el sender retransmita
+        socket.setSoTimeout(LINGER_MS);
+        try {
+            while (true) {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                sendSack(socket, packet.getAddress(), packet.getPort(), esperado, file);
+            }
+        } catch (SocketTimeoutException e) {
+            // sin retransmisiones: el sender ya terminó
+        }
     }
 
-    private static class PacketData {
-        int seq;
-        boolean isLast;
-        byte[] data;
+    // Los datos del datagrama (sin la cabecera) como vista del buffer de recepción
+    private static ByteBuffer payload(ByteBuffer view, DatagramPacket packet) {
+        view.clear();
+        return view.position(HEADER).limit(packet.getLength());
     }
 
-    private PacketData parsePacket(byte[] pktBytes) {
-        if (pktBytes.length < 5) return null;
+    // CRC32C de la cabecera (sin el propio CRC) y los datos, igual que lo calculó el sender
+    private boolean intact(byte[] buffer, ByteBuffer view, int length) {
+        crc.reset();
+        crc.update(buffer, 0, MappedFile.CHECKED);
+        crc.update(buffer, HEADER, length - HEADER);
+        if ((int) crc.getValue() == view.getInt(MappedFile.CHECKED)) return true;
+        corrupt++;
+        return false;
+    }
 
-        ByteBuffer bb = ByteBuffer.wrap(pktBytes);
-        int seq = bb.getInt();
-        byte lastFlag = bb.get();
-        byte[] data = new byte[pktBytes.length - 5];
-        bb.get(data);
+    // "ERROR <motivo>" del sender (p. ej. un SendServer que no tiene el archivo)
+    private static void checkError(byte[] msg, int length) throws IOException {
+        if (length >= 6 && new String(msg, 0, 6).equals("ERROR ")) {
+            throw new IOException("El sender respondió: " + new String(msg, 6, length - 6).trim());
+        }
+    }
+
+    // "MANIFEST ..." que el sender repite mientras espera el READY
+    private static boolean isManifest(byte[] msg, int length) {
+        return length >= 9 && new String(msg, 0, 9).equals("MANIFEST ");
+    }
 
-        PacketData pkt = new PacketData();
-        pkt.seq = seq;
-        pkt.isLast = (lastFlag == 1);
-        pkt.data = data;
-        return pkt;
+    // "ACK <stream> <acumulado> desde-hasta ..." con los rangos guardados después del primer faltante
+    private void sendSack(DatagramSocket socket, InetAddress addr, int port, int esperado, PartialFile file)
+            throws IOException {
+        StringBuilder msg = new StringBuilder("ACK ").append(stream).append(' ').append(esperado - 1);
+        int ranges = 0;
+        for (int seq = esperado + 1; seq < esperado + window && ranges < MAX_SACK_RANGES; seq++) {
+            if (!file.has(seq)) continue;
+            int from = seq;
+            while (seq + 1 < esperado + window && file.has(seq + 1)) seq++;
+            msg.append(' ').append(from).append('-').append(seq);
+            ranges++;
+        }
+        byte[] data = msg.append('\n').toString().getBytes();
+        socket.send(new DatagramPacket(data, data.length, addr, port));
     }
 
     private void sendAck(DatagramSocket socket, InetAddress addr, int port, int seq) throws IOException {
-        String msg = "ACK " + seq + "\n";
+        String msg = "ACK " + stream + " " + seq + "\n";
         byte[] data = msg.getBytes();
         DatagramPacket packet = new DatagramPacket(data, data.length, addr, port);
         socket.send(packet);
@@ -137,21 +421,24 @@ public class Receiver {
 
     private void ensureDirs() throws IOException {
         Files.createDirectories(Paths.get(MUSIC_DIR));
-        File catalog = new File(CATALOG_FILE);
-        if (!catalog.exists()) {
-            try (FileWriter fw = new FileWriter(catalog)) {
-                fw.write("[]");
+        synchronized (CATALOG_LOCK) {
+            File catalog = new File(CATALOG_FILE);
+            if (!catalog.exists()) {
+                try (FileWriter fw = new FileWriter(catalog)) {
+                    fw.write("[]");
+                }
             }
         }
     }
 
-    private void saveTrackFile(byte[] data, String filename) throws IOException {
-        Path destPath = Paths.get(MUSIC_DIR, filename);
-        Files.write(destPath, data);
-        System.out.println("[RECV] Canción guardada en " + destPath);
+    // Varios Receiver en el mismo proceso (SyncAll) no pueden leer y reescribir el catálogo a la vez
+    private void registerSong(int songId, String titulo, String artista, String mp3Filename, String coverFilename) throws IOException {
+        synchronized (CATALOG_LOCK) {
+            updateCatalog(songId, titulo, artista, mp3Filename, coverFilename);
+        }
     }
 
-    private void registerSong(int songId, String titulo, String artista, String mp3Filename, String coverFilename) throws IOException {
+    private void updateCatalog(int songId, String titulo, String artista, String mp3Filename, String coverFilename) throws IOException {
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
         // Leer catálogo
@@ -193,7 +480,7 @@ public class Receiver {
 
     public static void main(String[] args) {
         if (args.length < 8) {
-            System.out.println("Uso: java Receiver --song-id ID --title TITLE --artist ARTIST --mp3-name MP3 --cover-name COVER [--listen-port PORT] [--sender-ip IP] [--sender-port PORT]");
+            System.out.println("Uso: java Receiver --song-id ID --title TITLE --artist ARTIST --mp3-name MP3 --cover-name COVER [--listen-port PORT] [--sender-ip IP] [--sender-port PORT] [--mode sr|gbn] [--window N] [--fec K] [--restart]");
             return;
         }
 
@@ -205,7 +492,14 @@ public class Receiver {
         String artist = null;
         String mp3Name = null;
         String coverName = null;
+        boolean selectiveRepeat = true;
+        int window = DEFAULT_WINDOW;
+        boolean resume = true;
+        int fec = 0;
 
+        for (String arg : args) {
+            if (arg.equals("--restart")) resume = false;    // descartar el progreso guardado
+        }
         for (int i = 0; i < args.length - 1; i++) {
             switch (args[i]) {
                 case "--listen-port":
@@ -232,6 +526,15 @@ public class Receiver {
                 case "--cover-name":
                     coverName = args[++i];
                     break;
+                case "--mode":
+                    selectiveRepeat = !args[++i].equalsIgnoreCase("gbn");
+                    break;
+                case "--window":
+                    window = Integer.parseInt(args[++i]);
+                    break;
+                case "--fec":
+                    fec = Integer.parseInt(args[++i]);
+                    break;
             }
         }
 
@@ -241,11 +544,13 @@ public class Receiver {
         }
 
         try {
-            Receiver receiver = new Receiver( listenPort, senderIp, senderPort, songId, title, artist, mp3Name, coverName);
+            Receiver receiver = new Receiver(listenPort, senderIp, senderPort, songId, title, artist, mp3Name, coverName,
+                    new Options().selectiveRepeat(selectiveRepeat).window(window).resume(resume).fec(fec));
             receiver.receive();
         } catch (IOException e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
+            System.exit(1);     // SyncAll reintenta (y continúa desde el progreso guardado)
         }
     }
 }
\ No newline at end of file
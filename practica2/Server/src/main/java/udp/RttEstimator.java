@@ -0,0 +1,75 @@
+package udp;
+
+/**
+ * Estimación del RTT y del timeout de retransmisión (RTO) a partir de los ACK,
+ * con el algoritmo de Jacobson/Karels (RFC 6298):
+ *
+ *   SRTT   = 7/8 SRTT + 1/8 R
+ *   RTTVAR = 3/4 RTTVAR + 1/4 |SRTT - R|
+ *   RTO    = SRTT + max(4 RTTVAR, MIN_RTO)      (como mucho MAX_RTO)
+ *
+ * El margen mínimo se suma al SRTT (como Linux) en lugar de acotar el RTO: en un camino
+ * estable RTTVAR es casi 0 y, en cuanto la cola del enlace crece unos milisegundos,
+ * un RTO = SRTT + 4 RTTVAR vence sin que se haya perdido nada.
+ *
+ * - Regla de Karn: solo se toman muestras de paquetes enviados una sola vez
+ *   (el ACK de un paquete retransmitido no dice a cuál de los envíos responde)
+ * - Backoff exponencial: cada timeout duplica el RTO; se deshace en cuanto un ACK
+ *   confirma datos nuevos (como Linux), sin esperar a una muestra válida: tras un
+ *   timeout toda la ventana queda retransmitida y Karn dejaría el RTO inflado mucho tiempo
+ *
+ * Todos los tiempos en nanosegundos (System.nanoTime()).
+ */
+public class RttEstimator {
+    static final long MIN_RTO_NANOS = 20_000_000L;       // 20 ms: cubre pausas del receptor (GC, disco) aunque el RTT sea de microsegundos
+    static final long MAX_RTO_NANOS = 3_000_000_000L;    // 3 s
+
+    private long srtt;          // 0 = aún sin muestras
+    private long rttvar;
+    private long rto;
+
+    // initialRtoNanos: RTO antes de la primera muestra (el --timeout del sender)
+    public RttEstimator(long initialRtoNanos) {
+        this.rto = clamp(initialRtoNanos);
+    }
+
+    // Nueva muestra de RTT (de un paquete que no se retransmitió)
+    public void sample(long rttNanos) {
+        if (rttNanos <= 0) return;
+        if (srtt == 0) {
+            srtt = rttNanos;
+            rttvar = rttNanos / 2;
+        } else {
+            rttvar += (Math.abs(srtt - rttNanos) - rttvar) / 4;
+            srtt += (rttNanos - srtt) / 8;
+        }
+        rto = computed();
+    }
+
+    // Venció un temporizador: se duplica el RTO
+    public void backoff() {
+        rto = clamp(rto * 2);
+    }
+
+    // Un ACK confirmó datos nuevos: el camino funciona, se vuelve al RTO calculado
+    public void progress() {
+        if (srtt != 0) rto = computed();
+    }
+
+    public long rto() { return rto; }
+
+    public long srtt() { return srtt; }
+
+    private long computed() {
+        return clamp(srtt + Math.max(4 * rttvar, MIN_RTO_NANOS));
+    }
+
+    private static long clamp(long nanos) {
+        return Math.max(MIN_RTO_NANOS, Math.min(MAX_RTO_NANOS, nanos));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("srtt=%.2f ms rttvar=%.2f ms rto=%.2f ms", srtt / 1e6, rttvar / 1e6, rto / 1e6);
+    }
+}
@@ -0,0 +1,367 @@
+package udp;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Servidor de canciones por UDP: un solo DatagramChannel (un puerto) atiende a la vez a
+ * todos los receptores que pidan archivos de su directorio; cada transferencia es un
+ * SrStream identificado por el stream id que viaja en cada paquete y cada ACK.
+ *
+ * - Un hilo y un Selector: se leen todos los datagramas pendientes (cada ACK va a su stream),
+ *   se atienden los temporizadores y el envío se reparte en round robin, un paquete por stream
+ *   por vuelta, empezando cada vez por uno distinto: ninguna transferencia acapara el enlace.
+ *   Además cada stream lleva su propio control de congestión y pacing
+ * - El receptor elige el stream y el archivo en el READY ("READY stream=ID file=NOMBRE mode=sr ...");
+ *   si pide el manifiesto (manifest=1) se le contesta y se espera su siguiente READY.
+ *   Un error (archivo que no existe, modo no soportado) se le contesta con "ERROR <motivo>"
+ * - Solo Selective Repeat: en Go-Back-N el sender se queda esperando a su único receptor (Sender)
+ * - Un READY repetido de un stream en curso o recién terminado se ignora
+ * - Un READY con mtu o ventana fuera de rango se rechaza con ERROR, y un stream que falla
+ *   (error de red hacia su receptor, por ejemplo) se descarta sin afectar a los demás
+ * - Los manifiestos (SHA-256 y sumas de bloques) se guardan por archivo, tamaño y fecha de
+ *   modificación: todos los receptores lo piden y leer la canción completa cada vez no sale gratis.
+ *   Se calculan en un pool aparte (MANIFEST_THREADS): el hilo del selector no lee canciones
+ *   completas, y cuando el manifiesto está listo contesta a los receptores que lo pidieron
+ */
+public class SendServer implements Closeable {
+    private static final int DEFAULT_PORT = 5000;
+    private static final String DEFAULT_DIR = "musicSender";
+    private static final int DEFAULT_MTU = 1024;
+    private static final int DEFAULT_WINDOW = 64;   // ventana máxima por stream
+    private static final int DEFAULT_TIMEOUT = 200; // ms, RTO inicial de cada stream
+    private static final String DEFAULT_CONGESTION = "cubic";
+    private static final int RECENT_STREAMS = 1024; // streams terminados que se recuerdan (READY tardíos)
+    private static final int CACHED_MANIFESTS = 256;
+    private static final int MANIFEST_THREADS = 2;
+
+    private final int port;
+    private final Path dir;
+    private final int mtu;
+    private final int windowSize;
+    private final int timeout;
+    private final String congestion;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final Map<Integer, SrStream> streams = new LinkedHashMap<>();
+    private final Set<Integer> finished = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+            return size() > RECENT_STREAMS;
+        }
+    });
+    // Solo los usa el hilo del selector; un manifiesto que todavía se calcula es un futuro sin completar
+    private final Map<String, CompletableFuture<Manifest>> manifests = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Manifest>> eldest) {
+            return size() > CACHED_MANIFESTS;
+        }
+    };
+    private final ExecutorService manifestPool = Executors.newFixedThreadPool(MANIFEST_THREADS, r -> {
+        Thread t = new Thread(r, "manifest");
+        t.setDaemon(true);
+        return t;
+    });
+    // Manifiestos que terminaron de calcularse y el receptor al que hay que mandarlos
+    private final Queue<Answer> answers = new ConcurrentLinkedQueue<>();
+    private final List<SrStream> order = new ArrayList<>();   // reutilizada en cada vuelta del round robin
+    private final ByteBuffer in = ByteBuffer.allocate(65535);
+    private int turn;
+
+    private record Answer(String key, CompletableFuture<Manifest> manifest, SocketAddress to) {}
+
+    public SendServer(int port, Path dir) throws IOException {
+        this(port, dir, DEFAULT_MTU, DEFAULT_WINDOW, DEFAULT_TIMEOUT, DEFAULT_CONGESTION);
+    }
+
+    public SendServer(int port, Path dir, int mtu, int windowSize, int timeout, String congestion) throws IOException {
+        this.port = port;
+        this.dir = dir.toAbsolutePath().normalize();
+        this.mtu = mtu;
+        this.windowSize = windowSize;
+        this.timeout = timeout;
+        this.congestion = congestion;
+        this.channel = DatagramChannel.open();
+        try {
+            channel.bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            this.selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Atiende transferencias hasta que se cierre el servidor (close, desde otro hilo)
+     */
+    public void serve() throws IOException {
+        System.out.println("[SERVER] Sirviendo " + dir + " en puerto " + port);
+        try {
+            while (channel.isOpen()) {
+                long now = System.nanoTime();
+                receiveAll(now);
+                answerManifests();
+                order.clear();
+                order.addAll(streams.values());
+                for (SrStream s : order) {
+                    try {
+                        s.checkTimers(now);
+                    } catch (IOException | RuntimeException e) {
+                        drop(s, e);
+                    }
+                }
+                sendRoundRobin(now);
+                reap(now);
+
+                // Dormir hasta que llegue algo o venza el temporizador / pacing más próximo
+                long deadline = Long.MAX_VALUE;
+                for (SrStream s : streams.values()) deadline = Math.min(deadline, s.deadline());
+                long waitMs = deadline == Long.MAX_VALUE ? 0 : Math.max(1, (deadline - System.nanoTime()) / 1_000_000L);
+                selector.select(waitMs);
+                selector.selectedKeys().clear();
+            }
+        } catch (ClosedChannelException | ClosedSelectorException e) {
+            // close(): el servidor terminó
+        }
+    }
+
+    private void receiveAll(long now) throws IOException {
+        SocketAddress from;
+        while ((from = channel.receive(in)) != null) {
+            byte[] msg = in.array();
+            int length = in.position();
+            if (Sender.ackBody(msg, length) >= 0) {
+                SrStream s = streams.get(Sender.ackStream(msg, length));
+                if (s != null && s.target().equals(from)) {
+                    try {
+                        s.onAck(msg, length, now);
+                    } catch (IOException | RuntimeException e) {
+                        drop(s, e);
+                    }
+                }
+            } else {
+                String text = new String(msg, 0, length).trim();
+                if (text.startsWith("READY")) ready(text, from);
+            }
+            in.clear();
+        }
+    }
+
+    /**
+     * READY de un receptor: le manda el manifiesto o empieza su stream
+     */
+    private void ready(String text, SocketAddress from) throws IOException {
+        Map<String, String> options = Sender.parseHandshake(text);
+        int id;
+        try {
+            id = Integer.parseInt(options.getOrDefault("stream", "0"));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (streams.containsKey(id) || finished.contains(id)) return;     // READY repetido
+
+        try {
+            if (!"sr".equals(options.get("mode")))
+                throw new IOException("este sender solo atiende Selective Repeat (--mode sr)");
+            Path file = resolve(options.get("file"));
+            if (options.containsKey("manifest")) {
+                requestManifest(file, from);
+                return;
+            }
+
+            int packetMtu = Integer.parseInt(options.getOrDefault("mtu", String.valueOf(mtu)));
+            if (packetMtu < 1 || packetMtu > MappedFile.MAX_MTU)
+                throw new IOException("mtu inválido: " + packetMtu + " (de 1 a " + MappedFile.MAX_MTU + ")");
+            int requested = Integer.parseInt(options.getOrDefault("window", String.valueOf(windowSize)));
+            if (requested < 1) throw new IOException("ventana inválida: " + requested);
+            MappedFile chunks = new MappedFile(file, packetMtu);
+            if (options.containsKey("size") && Long.parseLong(options.get("size")) != chunks.size()) {
+                throw new IOException("tiene a medias otro archivo de " + options.get("size")
+                        + " bytes; hay que reiniciarlo con --restart");
+            }
+            int window = Math.min(windowSize, requested);
+            int fec = Math.max(0, Integer.parseInt(options.getOrDefault("fec", "0")));
+            SrStream s = new SrStream(id, chunks, channel, from, window, fec, Sender.parseRanges(options.get("have")),
+                    timeout * 1_000_000L, congestion);
+            streams.put(id, s);
+            System.out.println("[SERVER] Stream " + id + ": " + file.getFileName() + " (" + chunks.packets()
+                    + " paquetes) para " + from + ", " + streams.size() + " activos");
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[SERVER] READY de " + from + " rechazado: " + e.getMessage());
+            sendText("ERROR " + e.getMessage(), from);
+        }
+    }
+
+    // Nombre del READY (URL-encoded) -> archivo dentro de dir
+    private Path resolve(String name) throws IOException {
+        if (name == null) throw new IOException("el READY no dice qué archivo (file=)");
+        String decoded = URLDecoder.decode(name, StandardCharsets.UTF_8);
+        Path file = dir.resolve(decoded).normalize();
+        if (!file.startsWith(dir) || !Files.isRegularFile(file)) throw new FileNotFoundException("no existe " + decoded);
+        return file;
+    }
+
+    /**
+     * Manifiesto del archivo para from: si ya está calculado (y el archivo no cambió) se manda
+     * de inmediato; si no, se calcula en manifestPool y se manda cuando esté listo
+     */
+    private void requestManifest(Path file, SocketAddress from) throws IOException {
+        String key = file + "|" + Files.size(file) + "|" + Files.getLastModifiedTime(file).toMillis();
+        CompletableFuture<Manifest> manifest = manifests.get(key);
+        if (manifest == null) {
+            manifest = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Manifest.of(file, mtu);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, manifestPool);
+            manifests.put(key, manifest);
+        }
+        if (manifest.isDone()) {
+            answer(new Answer(key, manifest, from));
+            return;
+        }
+        Answer pending = new Answer(key, manifest, from);
+        manifest.whenComplete((m, e) -> {
+            answers.add(pending);
+            selector.wakeup();
+        });
+    }
+
+    // Manda los manifiestos que terminaron de calcularse (hilo del selector)
+    private void answerManifests() throws IOException {
+        Answer a;
+        while ((a = answers.poll()) != null) answer(a);
+    }
+
+    private void answer(Answer a) throws IOException {
+        try {
+            sendText(a.manifest.join().encode(), a.to);
+        } catch (CompletionException e) {
+            // No se guarda el error: el siguiente READY lo vuelve a intentar
+            manifests.remove(a.key, a.manifest);
+            Throwable cause = e.getCause() instanceof UncheckedIOException u ? u.getCause() : e.getCause();
+            System.out.println("[SERVER] Manifiesto para " + a.to + " no disponible: " + cause.getMessage());
+            sendText("ERROR " + cause.getMessage(), a.to);
+        }
+    }
+
+    // Un paquete por stream por vuelta hasta que ninguno pueda enviar (ventana llena o pacing)
+    private void sendRoundRobin(long now) {
+        if (streams.isEmpty()) return;
+        order.clear();
+        order.addAll(streams.values());
+        int n = order.size();
+        int start = Math.floorMod(turn++, n);
+        boolean sent = true;
+        while (sent) {
+            sent = false;
+            for (int i = 0; i < n; i++) {
+                SrStream s = order.get((start + i) % n);
+                if (s == null) continue;
+                try {
+                    if (s.sendNext(now)) sent = true;
+                } catch (IOException | RuntimeException e) {
+                    drop(s, e);
+                    order.set((start + i) % n, null);
+                }
+            }
+        }
+    }
+
+    // Un stream que falló se descarta; los demás siguen (si el canal se cerró, el servidor termina)
+    private void drop(SrStream s, Exception e) {
+        if (!channel.isOpen()) return;
+        System.out.println("[SERVER] Stream " + s.stream() + " descartado: " + e);
+        streams.remove(s.stream());
+        finished.add(s.stream());
+    }
+
+    // Quita los streams que terminaron o cuyo receptor ya no responde
+    private void reap(long now) {
+        Iterator<SrStream> it = streams.values().iterator();
+        while (it.hasNext()) {
+            SrStream s = it.next();
+            if (s.done()) {
+                System.out.println("[SERVER] Stream " + s.stream() + " completo: " + s);
+            } else if (s.silent(now)) {
+                System.out.println("[SERVER] Stream " + s.stream() + " abandonado: el receptor dejó de responder");
+            } else {
+                continue;
+            }
+            finished.add(s.stream());
+            it.remove();
+        }
+    }
+
+    // Un error al contestarle a un receptor solo se anota (el canal cerrado sí termina el servidor)
+    private void sendText(String msg, SocketAddress to) throws IOException {
+        try {
+            channel.send(ByteBuffer.wrap(msg.getBytes()), to);
+        } catch (IOException e) {
+            if (!channel.isOpen()) throw e;
+            System.out.println("[SERVER] No se pudo contestar a " + to + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        manifestPool.shutdownNow();
+        channel.close();
+        selector.close();
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 1) {
+            System.out.println("Uso: java SendServer [--port PORT] [--dir DIRECTORIO] [--mtu MTU] [--window MAX_WINDOW] [--timeout RTO_INICIAL_MS] [--cc cubic|aimd|fixed]");
+            return;
+        }
+
+        int port = DEFAULT_PORT;
+        String dir = DEFAULT_DIR;
+        int mtu = DEFAULT_MTU;
+        int window = DEFAULT_WINDOW;
+        int timeout = DEFAULT_TIMEOUT;
+        String congestion = DEFAULT_CONGESTION;
+
+        for (int i = 0; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--dir":
+                    dir = args[++i];
+                    break;
+                case "--mtu":
+                    mtu = Integer.parseInt(args[++i]);
+                    break;
+                case "--window":
+                    window = Integer.parseInt(args[++i]);
+                    break;
+                case "--timeout":
+                    timeout = Integer.parseInt(args[++i]);
+                    break;
+                case "--cc":
+                    congestion = args[++i];
+                    break;
+            }
+        }
+
+        try (SendServer server = new SendServer(port, Paths.get(dir), mtu, window, timeout, congestion)) {
+            server.serve();
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -3,150 +3,377 @@ package udp;
 import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.*;
 
+/**
+ * Envía un archivo por UDP con Go-Back-N o Selective Repeat (lo elige el receptor en el READY).
+ *
+ * El archivo se mapea en memoria (MappedFile) y cada paquete se envía directo desde el mapeo;
+ * el estado por paquete vive en arreglos circulares del tamaño de la ventana: el heap no
+ * depende del tamaño del archivo y enviar, retransmitir o leer un ACK no crea objetos.
+ */
 public class Sender {
     private static final int DEFAULT_PORT = 5000;
     private static final int DEFAULT_MTU = 1024;
-    private static final int DEFAULT_WINDOW = 5;
-    private static final int DEFAULT_TIMEOUT = 200; // ms
+    private static final int DEFAULT_WINDOW = 64;   // ventana máxima; la efectiva la decide el control de congestión
+    private static final int DEFAULT_TIMEOUT = 200; // ms, RTO inicial (después se ajusta con el RTT medido)
+    private static final String DEFAULT_CONGESTION = "cubic";
+    private static final int DUP_THRESH = 3;        // ACKs duplicados (o paquetes confirmados después) para dar uno por perdido
+    private static final long PACING_BURST_NANOS = 1_000_000L; // lo que se puede adelantar el pacing (resolución de setSoTimeout)
+    private static final int NOT_AN_ACK = Integer.MIN_VALUE;
+    private static final int MANIFEST_WAIT_MS = 1000;   // espera del READY después de enviar el manifiesto
+    private static final int MANIFEST_RESENDS = 5;      // manifiestos sin respuesta antes de abandonar
 
     private final int port;
     private final int mtu;
     private final int windowSize;
     private final int timeout;
+    private final String congestion;
     private final String filePath;
 
+    public Sender(String filePath, int port) {
+        this(filePath, port, DEFAULT_MTU, DEFAULT_WINDOW, DEFAULT_TIMEOUT, DEFAULT_CONGESTION);
+    }
+
     public Sender(String filePath, int port, int mtu, int windowSize, int timeout) {
+        this(filePath, port, mtu, windowSize, timeout, DEFAULT_CONGESTION);
+    }
+
+    public Sender(String filePath, int port, int mtu, int windowSize, int timeout, String congestion) {
         this.filePath = filePath;
         this.port = port;
         this.mtu = mtu;
         this.windowSize = windowSize;
         this.timeout = timeout;
+        this.congestion = congestion;
     }
 
     public void send() throws IOException {
+        try (DatagramChannel channel = open()) {
+            send(channel);
+        }
+    }
+
+    /**
+     * Abre el canal en el puerto del sender; quien lance al receptor en el mismo proceso
+     * lo abre antes, así el READY nunca llega a un puerto que todavía no escucha
+     */
+    public DatagramChannel open() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.socket().bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Espera el READY en un canal ya abierto (open) y envía el archivo; cerrar el canal
+     * desde otro hilo cancela el envío
+     */
+    public void send(DatagramChannel channel) throws IOException {
         File file = new File(filePath);
         if (!file.exists()) {
             throw new FileNotFoundException("Archivo no encontrado: " + filePath);
         }
 
-        DatagramSocket socket = new DatagramSocket(port);
+        // Los datos salen por el canal (escritura gather); los ACK se leen por su socket,
+        // que sí respeta setSoTimeout
+        DatagramSocket socket = channel.socket();
         System.out.println("[SEND] Esperando receptor en puerto " + port + "...");
 
-        // Esperar READY del receiver
-        byte[] buffer = new byte[1024];
+        // Esperar READY del receiver (con las opciones que pide: "READY stream=ID mode=sr window=64",
+        // y si continúa una transferencia: "mtu=1024 size=N have=0-99,120-130"). El stream va en
+        // cada paquete y cada ACK; este Sender atiende a un solo receptor (varios: SendServer)
+        byte[] buffer = new byte[65535];
         DatagramPacket readyPacket = new DatagramPacket(buffer, buffer.length);
         socket.receive(readyPacket);
-        InetAddress clientAddr = readyPacket.getAddress();
-        int clientPort = readyPacket.getPort();
-        System.out.println("[SEND] Recibido '" + new String(readyPacket.getData(), 0, readyPacket.getLength())
-                + "' de " + clientAddr + ":" + clientPort);
+        String ready = new String(readyPacket.getData(), 0, readyPacket.getLength()).trim();
+        System.out.println("[SEND] Recibido '" + ready + "' de " + readyPacket.getSocketAddress());
+        Map<String, String> options = parseHandshake(ready);
+        channel.connect(readyPacket.getSocketAddress());
 
-        // Cargar archivo en bloques
-        List<byte[]> chunks = loadFileChunks(file);
-        int totalPackets = chunks.size();
-        System.out.println("[SEND] Archivo dividido en " + totalPackets + " paquetes");
+        // El receptor tiene una versión anterior ("READY manifest=1"): se le manda el manifiesto
+        // (tamaño, SHA-256 y sumas por bloque) y contesta con otro READY que dice qué ya tiene.
+        // Mientras siga pidiéndolo (el manifiesto se perdió) se le vuelve a mandar
+        if (options.containsKey("manifest")) {
+            Manifest manifest = Manifest.of(file.toPath(), mtu);
+            byte[] msg = manifest.encode().getBytes();
+            System.out.println("[SEND] Manifiesto: " + manifest.size + " bytes, sha256 " + manifest.sha256
+                    + ", " + manifest.weak.length + " bloques de " + manifest.blockSize);
+            // El receptor reenvía su READY mientras no le lleguen datos; si tras MANIFEST_RESENDS
+            // manifiestos no contesta (se fue, o estaba al día y se perdieron todas sus copias del
+            // READY) no se sabe si tiene el archivo: es un error, no una transferencia completa
+            socket.setSoTimeout(MANIFEST_WAIT_MS);
+            int silences = 0;
+            while (options.containsKey("manifest")) {
+                channel.write(ByteBuffer.wrap(msg));
+                readyPacket.setLength(buffer.length);
+                try {
+                    socket.receive(readyPacket);
+                } catch (SocketTimeoutException | PortUnreachableException e) {
+                    // sin respuesta, o el receptor ya cerró su puerto
+                    if (++silences >= MANIFEST_RESENDS)
+                        throw new IOException("El receptor no contestó al manifiesto; no se sabe si tiene el archivo");
+                    continue;
+                }
+                silences = 0;
+                ready = new String(readyPacket.getData(), 0, readyPacket.getLength()).trim();
+                options = parseHandshake(ready);
+            }
+            System.out.println("[SEND] Recibido '" + ready + "'");
+        }
+
+        // Mapear el archivo en paquetes de mtu bytes (los de la transferencia que se continúa)
+        int packetMtu = Integer.parseInt(options.getOrDefault("mtu", String.valueOf(mtu)));
+        MappedFile chunks = new MappedFile(file.toPath(), packetMtu);
+        System.out.println("[SEND] Archivo de " + chunks.size() + " bytes en " + chunks.packets() + " paquetes");
+        if (options.containsKey("size") && Long.parseLong(options.get("size")) != chunks.size()) {
+            throw new IOException("El receptor tiene a medias otro archivo de " + options.get("size")
+                    + " bytes; hay que reiniciarlo con --restart");
+        }
+        int[] have = parseRanges(options.get("have"));
+        int stream = Integer.parseInt(options.getOrDefault("stream", "0"));
+        if (have.length > 0) {
+            System.out.println("[SEND] El receptor ya tiene " + options.get("have"));
+        }
+
+        if ("sr".equals(options.get("mode"))) {
+            // La ventana no puede pasar del buffer de reordenamiento del receptor
+            int window = Math.min(windowSize, Integer.parseInt(options.getOrDefault("window", String.valueOf(windowSize))));
+            int fec = Math.max(0, Integer.parseInt(options.getOrDefault("fec", "0")));
+            System.out.println("[SEND] Modo Selective Repeat, ventana máxima " + window + ", control " + congestion
+                    + (fec > 0 ? ", paridad cada " + fec + " paquetes" : ""));
+            sendSelectiveRepeat(channel, chunks, stream, window, fec, have);
+        } else {
+            System.out.println("[SEND] Modo Go-Back-N, ventana máxima " + windowSize + ", control " + congestion);
+            sendGoBackN(channel, chunks, stream, have);
+        }
+
+        System.out.println("[SEND] Transferencia completa.");
+    }
 
-        // Variables Go-Back-N
-        int base = 0;
-        int nextSeq = 0;
-        boolean[] acked = new boolean[totalPackets];
-        Map<Integer, Long> sendTime = new HashMap<>();
+    /**
+     * GO-BACK-N: el receptor descarta lo que llega fuera de orden, así que ante una pérdida
+     * (timeout o 3 ACKs duplicados) se vuelve a enviar todo desde base, dentro de la ventana
+     * que permita el control de congestión. Los paquetes que el receptor ya tiene (have) se saltan
+     */
+    private void sendGoBackN(DatagramChannel channel, MappedFile chunks, int stream, int[] have) throws IOException {
+        DatagramSocket socket = channel.socket();
+        byte[] buffer = new byte[1024];
+        DatagramPacket ackPacket = new DatagramPacket(buffer, buffer.length);
+        int totalPackets = chunks.packets();
 
-        socket.setSoTimeout(timeout);
+        // Variables Go-Back-N (estado del paquete seq en la posición seq % ring)
+        int ring = windowSize;
+        int base = prefix(have);
+        int nextSeq = base;
+        int highestSent = base - 1;
+        long[] sentAt = new long[ring];                    // nanoTime del último envío
+        boolean[] retransmitted = new boolean[ring];
+        RttEstimator rtt = new RttEstimator(timeout * 1_000_000L);
+        CongestionControl cc = CongestionControl.create(congestion, windowSize);
+        long nextSendAt = 0;                               // pacing
+        int dupAcks = 0;
+        int recoveryUntil = 0;                             // una sola reducción por ventana de datos
+        int retransmits = 0;
 
         // Loop principal
         while (base < totalPackets) {
-            // Enviar paquetes nuevos dentro de la ventana
-            while (nextSeq < totalPackets && nextSeq < base + windowSize) {
-                byte[] packet = makePacket(nextSeq, nextSeq == totalPackets - 1, chunks.get(nextSeq));
-                DatagramPacket dp = new DatagramPacket(packet, packet.length, clientAddr, clientPort);
-                socket.send(dp);
-                sendTime.put(nextSeq, System.currentTimeMillis());
-                System.out.println("[SEND] -> pkt " + nextSeq + " (ventana " + base + "-" + nextSeq + ")");
+            // Lo que el receptor ya tiene (have) no se envía ni se espera su ACK: todo lo anterior
+            // a base está confirmado, así que su ACK acumulado ya pasará por encima
+            while (base < totalPackets && covered(have, base)) base++;
+            nextSeq = Math.max(nextSeq, base);
+            if (base >= totalPackets) break;
+
+            // Enviar paquetes dentro de la ventana, espaciados
+            long now = System.nanoTime();
+            while (nextSeq < totalPackets && nextSeq < base + cc.window() && nextSendAt <= now) {
+                if (covered(have, nextSeq)) {
+                    nextSeq++;
+                    continue;
+                }
+                chunks.send(channel, stream, nextSeq);
+                int slot = nextSeq % ring;
+                sentAt[slot] = now;
+                if (nextSeq <= highestSent) {
+                    retransmitted[slot] = true;
+                    retransmits++;
+                    System.out.println("[SEND] -> RE-TX pkt " + nextSeq);
+                } else {
+                    highestSent = nextSeq;
+                    retransmitted[slot] = false;
+                }
+                nextSendAt = Math.max(nextSendAt, now - PACING_BURST_NANOS) + pacingInterval(rtt, cc);
                 nextSeq++;
             }
 
             try {
-                // Recibir ACK
-                DatagramPacket ackPacket = new DatagramPacket(buffer, buffer.length);
+                // Recibir ACK como mucho hasta que venza el RTO del paquete base o toque enviar otro
+                long deadline = base < nextSeq ? sentAt[base % ring] + rtt.rto() : Long.MAX_VALUE;
+                if (nextSeq < totalPackets && nextSeq < base + cc.window()) deadline = Math.min(deadline, nextSendAt);
+                socket.setSoTimeout((int) Math.max(1, (deadline - System.nanoTime()) / 1_000_000L));
+                ackPacket.setLength(buffer.length);
                 socket.receive(ackPacket);
-                Integer acknum = parseAck(new String(ackPacket.getData(), 0, ackPacket.getLength()));
+                int acknum = ackStream(buffer, ackPacket.getLength()) == stream
+                        ? parseAck(buffer, ackPacket.getLength()) : NOT_AN_ACK;
 
-                if (acknum != null) {
-                    System.out.println("[SEND] <- ACK " + acknum);
+                if (acknum != NOT_AN_ACK) {
+                    acknum = Math.min(acknum, highestSent);
 
-                    // Marcar paquetes confirmados
-                    for (int i = base; i <= acknum && i < totalPackets; i++) {
-                        acked[i] = true;
-                    }
+                    if (acknum >= base) {
+                        // Muestra de RTT solo si el paquete confirmado se envió una vez (Karn)
+                        int slot = acknum % ring;
+                        if (!retransmitted[slot] && !covered(have, acknum)) rtt.sample(System.nanoTime() - sentAt[slot]);
+                        else rtt.progress();
 
-                    // Deslizar ventana
-                    while (base < totalPackets && acked[base]) {
-                        base++;
+                        // Deslizar ventana
+                        int newlyAcked = acknum - base + 1;
+                        base = acknum + 1;
+                        nextSeq = Math.max(nextSeq, base);
+                        dupAcks = 0;
+                        if (base >= recoveryUntil) cc.onAck(newlyAcked, rtt.srtt());
+                    } else if (acknum == base - 1 && base < nextSeq && ++dupAcks == DUP_THRESH) {
+                        // ACKs duplicados: se perdió base pero lo que sigue está llegando
+                        if (base >= recoveryUntil) {
+                            cc.onLoss();
+                            recoveryUntil = nextSeq;
+                        }
+                        System.out.println("[SEND] " + DUP_THRESH + " ACKs duplicados en pkt " + base + " (" + cc + ")");
+                        nextSeq = base;
                     }
                 }
             } catch (SocketTimeoutException e) {
-                // Timeout - retransmitir ventana
-                long now = System.currentTimeMillis();
-                if (base < totalPackets) {
-                    Long baseTime = sendTime.get(base);
-                    if (baseTime != null && now - baseTime >= timeout) {
-                        System.out.println("[SEND] TIMEOUT en pkt " + base + ", retransmitiendo desde "
-                                + base + " hasta " + (nextSeq - 1));
-                        for (int seqR = base; seqR < nextSeq; seqR++) {
-                            byte[] packet = makePacket(seqR, seqR == totalPackets - 1, chunks.get(seqR));
-                            DatagramPacket dp = new DatagramPacket(packet, packet.length, clientAddr, clientPort);
-                            socket.send(dp);
-                            sendTime.put(seqR, System.currentTimeMillis());
-                            System.out.println("[SEND] -> RE-TX pkt " + seqR);
-                        }
-                    }
+                // Timeout - volver a enviar desde base
+                long now2 = System.nanoTime();
+                if (base < nextSeq && now2 - sentAt[base % ring] >= rtt.rto()) {
+                    rtt.backoff();
+                    cc.onTimeout();
+                    recoveryUntil = nextSeq;
+                    dupAcks = 0;
+                    System.out.println("[SEND] TIMEOUT en pkt " + base + ", retransmitiendo desde "
+                            + base + " hasta " + (nextSeq - 1) + " (" + rtt + ", " + cc + ")");
+                    nextSeq = base;
                 }
             }
         }
-
-        System.out.println("[SEND] Transferencia completa. Cerrando socket.");
-        socket.close();
+        System.out.println("[SEND] " + totalPackets + " paquetes, " + retransmits + " retransmisiones, " + rtt + ", " + cc);
     }
 
-    private List<byte[]> loadFileChunks(File file) throws IOException {
-        List<byte[]> chunks = new ArrayList<>();
-        try (FileInputStream fis = new FileInputStream(file)) {
-            byte[] buffer = new byte[mtu];
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                byte[] chunk = Arrays.copyOf(buffer, bytesRead);
-                chunks.add(chunk);
+    /**
+     * SELECTIVE REPEAT (ver SrStream): un solo stream, esperando cada ACK con un receive
+     * que vence cuando toca retransmitir o enviar el siguiente paquete
+     */
+    private void sendSelectiveRepeat(DatagramChannel channel, MappedFile chunks, int stream, int window, int fec, int[] have)
+            throws IOException {
+        DatagramSocket socket = channel.socket();
+        SrStream sr = new SrStream(stream, chunks, channel, null, window, fec, have, timeout * 1_000_000L, congestion);
+        byte[] buffer = new byte[1024];
+        DatagramPacket ackPacket = new DatagramPacket(buffer, buffer.length);
+
+        while (true) {
+            long now = System.nanoTime();
+            while (sr.sendNext(now)) { }
+            if (sr.done()) break;
+
+            socket.setSoTimeout((int) Math.max(1, (sr.deadline() - now) / 1_000_000L));
+            try {
+                ackPacket.setLength(buffer.length);
+                socket.receive(ackPacket);
+                if (ackStream(buffer, ackPacket.getLength()) == stream) {
+                    sr.onAck(buffer, ackPacket.getLength(), System.nanoTime());
+                }
+            } catch (SocketTimeoutException e) {
+                if (sr.silent(System.nanoTime())) throw new IOException("El receptor dejó de responder");
             }
+            sr.checkTimers(System.nanoTime());
         }
-        return chunks;
+        System.out.println("[SEND] " + sr);
     }
 
-    private byte[] makePacket(int seq, boolean isLast, byte[] payload) {
-        ByteBuffer bb = ByteBuffer.allocate(5 + payload.length);
-        bb.putInt(seq);
-        bb.put((byte) (isLast ? 1 : 0));
-        bb.put(payload);
-        return bb.array();
+    // Espaciado entre envíos: la ventana repartida en un SRTT, con margen para que pueda
+    // crecer (x2 en arranque lento, x1.25 después); 0 mientras no haya muestras de RTT
+    static long pacingInterval(RttEstimator rtt, CongestionControl cc) {
+        long interval = rtt.srtt() / cc.window();
+        return cc.inSlowStart() ? interval / 2 : interval * 4 / 5;
     }
 
-    private Integer parseAck(String msg) {
-        try {
-            String[] parts = msg.trim().split(" ");
-            if (parts.length >= 2 && parts[0].equals("ACK")) {
-                return Integer.parseInt(parts[1]);
-            }
-        } catch (Exception e) {
-            // Ignorar
+    // "ACK <stream> ..." -> stream; NOT_AN_ACK si no es un ACK
+    static int ackStream(byte[] msg, int length) {
+        if (ackBody(msg, length) < 0) return NOT_AN_ACK;
+        int value = 0;
+        for (int i = 4; msg[i] != ' '; i++) value = value * 10 + (msg[i] - '0');
+        return value;
+    }
+
+    // Posición donde empieza el acumulado en "ACK <stream> <acumulado> ..."; -1 si no es un ACK
+    static int ackBody(byte[] msg, int length) {
+        if (length < 7 || msg[0] != 'A' || msg[1] != 'C' || msg[2] != 'K' || msg[3] != ' ') return -1;
+        int i = 4;
+        while (i < length && msg[i] >= '0' && msg[i] <= '9') i++;
+        return i > 4 && i < length && msg[i] == ' ' ? i + 1 : -1;
+    }
+
+    // "ACK <stream> <n>" -> n (Go-Back-N: solo importa el acumulado); NOT_AN_ACK si no es un ACK
+    private static int parseAck(byte[] msg, int length) {
+        int i = ackBody(msg, length);
+        if (i < 0) return NOT_AN_ACK;
+        boolean negative = i < length && msg[i] == '-';
+        if (negative) i++;
+        int value = 0;
+        int start = i;
+        while (i < length && msg[i] >= '0' && msg[i] <= '9') value = value * 10 + (msg[i++] - '0');
+        if (i == start) return NOT_AN_ACK;
+        return negative ? -value : value;
+    }
+
+    // "desde-hasta,desde-hasta..." (ordenados) -> {desde, hasta, desde, hasta...}; vacío si no hay
+    static int[] parseRanges(String ranges) {
+        if (ranges == null || ranges.isEmpty()) return new int[0];
+        String[] parts = ranges.split(",");
+        int[] pairs = new int[parts.length * 2];
+        for (int i = 0; i < parts.length; i++) {
+            int dash = parts[i].indexOf('-');
+            pairs[2 * i] = Integer.parseInt(parts[i].substring(0, dash));
+            pairs[2 * i + 1] = Integer.parseInt(parts[i].substring(dash + 1));
+        }
+        return pairs;
+    }
+
+    // Primer paquete que le falta al receptor
+    static int prefix(int[] have) {
+        return have.length > 0 && have[0] == 0 ? have[1] + 1 : 0;
+    }
+
+    // true si seq está en alguno de los rangos (búsqueda binaria por el inicio)
+    static boolean covered(int[] have, int seq) {
+        int lo = 0;
+        int hi = have.length / 2 - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (seq < have[2 * mid]) hi = mid - 1;
+            else if (seq > have[2 * mid + 1]) lo = mid + 1;
+            else return true;
         }
-        return null;
+        return false;
+    }
+
+    // "READY clave=valor ..." -> opciones del receptor (un READY sin opciones es Go-Back-N)
+    static Map<String, String> parseHandshake(String msg) {
+        Map<String, String> options = new HashMap<>();
+        for (String part : msg.trim().split("\\s+")) {
+            int eq = part.indexOf('=');
+            if (eq > 0) options.put(part.substring(0, eq), part.substring(eq + 1));
+        }
+        return options;
     }
 
     public static void main(String[] args) {
         if (args.length < 1) {
-            System.out.println("Uso: java Sender <archivo> [--port PORT] [--mtu MTU] [--window WINDOW] [--timeout TIMEOUT_MS]");
+            System.out.println("Uso: java Sender <archivo> [--port PORT] [--mtu MTU] [--window MAX_WINDOW] [--timeout RTO_INICIAL_MS] [--cc cubic|aimd|fixed]");
             return;
         }
 
@@ -155,6 +382,7 @@ public class Sender {
         int mtu = DEFAULT_MTU;
         int window = DEFAULT_WINDOW;
         int timeout = DEFAULT_TIMEOUT;
+        String congestion = DEFAULT_CONGESTION;
 
         // Parse argumentos
         for (int i = 1; i < args.length - 1; i++) {
@@ -171,15 +399,19 @@ public class Sender {
                 case "--timeout":
                     timeout = Integer.parseInt(args[++i]);
                     break;
+                case "--cc":
+                    congestion = args[++i];
+                    break;
             }
         }
 
         try {
-            Sender sender = new Sender(file, port, mtu, window, timeout);
+            Sender sender = new Sender(file, port, mtu, window, timeout, congestion);
             sender.send();
-        } catch (IOException e) {
+        } catch (IOException | IllegalArgumentException e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
+            System.exit(1);
         }
     }
 }
\ No newline at end of file
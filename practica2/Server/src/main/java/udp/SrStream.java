@@ -0,0 +1,256 @@
+package udp;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Lado que envía de una transferencia SELECTIVE REPEAT: cada paquete tiene su propio
+ * temporizador y solo se retransmite el que venció; el receptor guarda los paquetes fuera
+ * de orden y confirma con ACK acumulado + rangos (SACK), así un datagrama perdido cuesta
+ * un solo reenvío. Un paquete también se da por perdido (sin esperar su timeout) cuando ya
+ * se confirmó otro enviado después de él y al menos DUP_THRESH posiciones más adelante.
+ * Los paquetes que el receptor ya tiene (have) cuentan como confirmados y no se envían.
+ * Con fec > 0, al enviar por primera vez el último paquete de cada bloque de fec paquetes se
+ * manda también su paridad: una pérdida por bloque se repara sin retransmitir.
+ *
+ * No lee del socket ni espera: quien la usa le pasa los ACK de su stream (onAck) y la llama
+ * cuando toca (sendNext, checkTimers, deadline). El Sender atiende una sola con un receive
+ * bloqueante; el SendServer, muchas desde un solo hilo.
+ */
+final class SrStream {
+    private static final int DUP_THRESH = 3;        // paquetes confirmados después para dar uno por perdido
+    private static final long PACING_BURST_NANOS = 1_000_000L; // lo que se puede adelantar el pacing (resolución de setSoTimeout)
+    private static final long MAX_SILENCE_NANOS = 10_000_000_000L; // sin ACKs: el receptor se fue
+
+    private final int stream;
+    private final MappedFile chunks;
+    private final DatagramChannel channel;
+    private final SocketAddress target;             // null: el canal ya está conectado al receptor
+    private final int window;
+    private final int fec;                          // paquetes por bloque de paridad; 0 = sin paridad
+    private final int[] have;
+    private final int totalPackets;
+    // Estado del paquete seq en la posición seq % window (nunca hay más de window en vuelo)
+    private final boolean[] acked;
+    private final long[] sentAt;                    // nanoTime del último envío de cada paquete
+    private final boolean[] retransmitted;
+    private final RttEstimator rtt;
+    private final CongestionControl cc;
+    private final AckScan ack = new AckScan();
+    private int base;
+    private int nextSeq;
+    private int highestAcked = -1;
+    private int recoveryUntil;                      // una sola reducción por ventana de datos
+    private int retransmits;
+    private long nextSendAt;                        // pacing
+    private long lastHeard = System.nanoTime();
+
+    SrStream(int stream, MappedFile chunks, DatagramChannel channel, SocketAddress target,
+             int window, int fec, int[] have, long initialRtoNanos, String congestion) {
+        this.stream = stream;
+        this.chunks = chunks;
+        this.channel = channel;
+        this.target = target;
+        this.window = window;
+        this.fec = fec;
+        this.have = have;
+        this.totalPackets = chunks.packets();
+        this.acked = new boolean[window];
+        this.sentAt = new long[window];
+        this.retransmitted = new boolean[window];
+        this.rtt = new RttEstimator(initialRtoNanos);
+        this.cc = CongestionControl.create(congestion, window);
+        this.base = Sender.prefix(have);
+        this.nextSeq = base;
+    }
+
+    int stream() {
+        return stream;
+    }
+
+    SocketAddress target() {
+        return target;
+    }
+
+    boolean done() {
+        return base >= totalPackets;
+    }
+
+    // Demasiado tiempo sin un ACK: el receptor se fue
+    boolean silent(long now) {
+        return now - lastHeard > MAX_SILENCE_NANOS;
+    }
+
+    /**
+     * Envía el siguiente paquete nuevo si la ventana y el pacing lo permiten
+     * @return false si por ahora no toca enviar nada
+     */
+    boolean sendNext(long now) throws IOException {
+        boolean sent = false;
+        while (!sent && nextSeq < totalPackets && nextSeq < base + cc.window() && nextSendAt <= now) {
+            int slot = nextSeq % window;
+            retransmitted[slot] = false;
+            acked[slot] = Sender.covered(have, nextSeq);
+            if (!acked[slot]) {
+                send(nextSeq);
+                if (fec > 0 && ((nextSeq + 1) % fec == 0 || nextSeq == totalPackets - 1)) {
+                    int first = nextSeq - nextSeq % fec;
+                    chunks.sendParity(channel, stream, first, nextSeq - first + 1, target);
+                }
+                sentAt[slot] = now;
+                nextSendAt = Math.max(nextSendAt, now - PACING_BURST_NANOS) + Sender.pacingInterval(rtt, cc);
+                sent = true;
+            }
+            nextSeq++;
+        }
+        while (base < nextSeq && acked[base % window]) base++;
+        return sent;
+    }
+
+    /**
+     * Procesa un "ACK <stream> <acumulado> [desde-hasta ...]" de este stream y reenvía
+     * lo que el SACK ya da por perdido
+     */
+    void onAck(byte[] msg, int length, long now) throws IOException {
+        if (!applyAck(msg, length, acked, base, nextSeq - 1, ack)) return;
+        lastHeard = now;
+        if (ack.count > 0) {
+            // Muestra de RTT con el paquete más nuevo que confirmó este ACK (Karn)
+            int slot = ack.newest % window;
+            if (!retransmitted[slot]) rtt.sample(now - sentAt[slot]);
+            else rtt.progress();
+            highestAcked = Math.max(highestAcked, ack.newest);
+            while (base < nextSeq && acked[base % window]) base++;
+            if (base >= recoveryUntil) cc.onAck(ack.count, rtt.srtt());
+        }
+
+        // Pérdidas detectadas por SACK: se reenvían ya y se reduce la ventana. Con paridad se
+        // cuenta desde el final del bloque (antes, la paridad todavía puede repararlo)
+        for (int s = base; s <= highestAcked - DUP_THRESH; s++) {
+            int slot = s % window;
+            int horizon = fec > 0 ? Math.min(s - s % fec + fec - 1, totalPackets - 1) : s;
+            if (!acked[slot] && horizon <= highestAcked - DUP_THRESH && sentAt[slot] < sentAt[highestAcked % window]) {
+                if (s >= recoveryUntil) {
+                    cc.onLoss();
+                    recoveryUntil = nextSeq;
+                }
+                send(s);
+                sentAt[slot] = now;
+                retransmitted[slot] = true;
+                retransmits++;
+                System.out.println("[SEND] -> RE-TX pkt " + s + " (SACK, stream " + stream + ")");
+            }
+        }
+    }
+
+    /**
+     * Retransmite los paquetes cuyo temporizador venció (un backoff por ronda)
+     */
+    void checkTimers(long now) throws IOException {
+        long rto = rtt.rto();
+        boolean expired = false;
+        for (int s = base; s < nextSeq; s++) {
+            int slot = s % window;
+            if (!acked[slot] && now - sentAt[slot] >= rto) {
+                send(s);
+                sentAt[slot] = now;
+                retransmitted[slot] = true;
+                retransmits++;
+                expired = true;
+                System.out.println("[SEND] -> RE-TX pkt " + s + " (stream " + stream + ")");
+            }
+        }
+        if (expired) {
+            rtt.backoff();
+            cc.onTimeout();
+            recoveryUntil = nextSeq;
+        }
+    }
+
+    /**
+     * nanoTime en que vence el temporizador más próximo o toca enviar otro paquete
+     */
+    long deadline() {
+        long rto = rtt.rto();
+        long deadline = Long.MAX_VALUE;
+        for (int s = base; s < nextSeq; s++) {
+            if (!acked[s % window]) deadline = Math.min(deadline, sentAt[s % window] + rto);
+        }
+        if (nextSeq < totalPackets && nextSeq < base + cc.window()) deadline = Math.min(deadline, nextSendAt);
+        return deadline;
+    }
+
+    private void send(int seq) throws IOException {
+        if (target == null) chunks.send(channel, stream, seq);
+        else chunks.send(channel, stream, seq, target);
+    }
+
+    @Override
+    public String toString() {
+        return totalPackets + " paquetes, " + retransmits + " retransmisiones, " + rtt + ", " + cc;
+    }
+
+    // Resultado de un ACK (se reutiliza): cuántos paquetes confirmó por primera vez y el más alto
+    private static final class AckScan {
+        int count;
+        int newest;
+    }
+
+    /**
+     * "ACK <stream> <acumulado> [desde-hasta ...]": llegó todo hasta <acumulado> y además los
+     * rangos. Se lee directo de los bytes del datagrama (el stream ya lo revisó quien lo recibió).
+     * acked es circular (seq % acked.length); solo se marcan paquetes entre base y last
+     * @return false si el mensaje no es un ACK
+     */
+    private static boolean applyAck(byte[] msg, int length, boolean[] acked, int base, int last, AckScan scan) {
+        int i = Sender.ackBody(msg, length);
+        if (i < 0) return false;
+        scan.count = 0;
+        scan.newest = -1;
+        boolean cumulative = true;      // el primer número es el acumulado
+        int from = -1;                  // inicio del rango en curso
+        int value = 0;
+        boolean digits = false;
+        boolean negative = false;
+        for (; i <= length; i++) {
+            int b = i < length ? msg[i] : ' ';
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                digits = true;
+            } else if (b == '-' && !digits) {
+                negative = true;        // solo el acumulado puede ser -1
+            } else if (digits) {
+                int n = negative ? -value : value;
+                value = 0;
+                digits = false;
+                negative = false;
+                if (b == '-' && !cumulative && from < 0) {
+                    from = n;
+                } else if (cumulative) {
+                    mark(acked, base, n, last, scan);
+                    cumulative = false;
+                } else if (from >= 0) {
+                    mark(acked, Math.max(from, base), n, last, scan);
+                    from = -1;
+                } else {
+                    return !cumulative;
+                }
+            } else if (b != ' ' && b != '\n' && b != '\r') {
+                return !cumulative;
+            }
+        }
+        return !cumulative;
+    }
+
+    private static void mark(boolean[] acked, int from, int to, int last, AckScan scan) {
+        for (int i = from; i <= Math.min(to, last); i++) {
+            int slot = i % acked.length;
+            if (!acked[slot]) {
+                scan.count++;
+                scan.newest = Math.max(scan.newest, i);
+                acked[slot] = true;
+            }
+        }
+    }
+}
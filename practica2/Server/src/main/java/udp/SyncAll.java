@@ -3,13 +3,39 @@ package udp;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import com.google.gson.*;
 
+/**
+ * Sincroniza todo el catálogo dentro de este mismo proceso (sin lanzar JVMs), varias
+ * canciones a la vez: un SendServer en SENDER_PORT sirve musicSender y cada hilo del pool
+ * corre un Receiver que le pide una canción.
+ *
+ * - Cada hilo del pool escucha en su propio puerto (RECEIVER_BASE_PORT + k); el servidor
+ *   distingue las transferencias por su stream id
+ * - Cada segundo se imprime el progreso total
+ * - Con --fec K cada Receiver pide un paquete de paridad cada K (repara una pérdida por bloque)
+ *
+ * Uso: java udp.SyncAll [--parallel N] [--fec K]
+ */
 public class SyncAll {
     private static final String BASE_DIR = System.getProperty("user.dir");
     private static final String CATALOG_FILE = BASE_DIR + "/catalog.json";
+    private static final int MAX_ATTEMPTS = 3;      // el Receiver continúa desde lo que ya tiene en disco
+    private static final int DEFAULT_PARALLEL = 4;
+    private static final int SENDER_PORT = 5000;
+    private static final int RECEIVER_BASE_PORT = 6000;
 
     public static void main(String[] args) throws Exception {
+        int parallel = DEFAULT_PARALLEL;
+        int fec = 0;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--parallel")) parallel = Math.max(1, Integer.parseInt(args[++i]));
+            else if (args[i].equals("--fec")) fec = Math.max(0, Integer.parseInt(args[++i]));
+        }
+        int parityBlock = fec;     // la lambda del pool necesita una variable que no cambie
+
         File catalogFile = new File(CATALOG_FILE);
         if (!catalogFile.exists()) {
             System.err.println("[SYNC] No existe catalog.json");
@@ -25,62 +51,133 @@ public class SyncAll {
             return;
         }
 
-        System.out.println("[SYNC] Se van a transferir " + catalog.size() + " canciones en orden...");
+        System.out.println("[SYNC] Se van a sincronizar " + catalog.size() + " canciones, " + parallel + " a la vez...");
+
+        SendServer server = new SendServer(SENDER_PORT, Paths.get(BASE_DIR, "musicSender"));
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                System.out.println("[SYNC] El servidor falló: " + e);
+            }
+        }, "send-server");
+        serverThread.start();
+
+        // Puertos libres: cada transferencia toma uno y lo devuelve al terminar
+        BlockingQueue<Integer> slots = new ArrayBlockingQueue<>(parallel);
+        for (int k = 0; k < parallel; k++) slots.add(k);
+
+        Progress progress = new Progress(catalog.size());
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(progress::report, 1, 1, TimeUnit.SECONDS);
+        ExecutorService pool = Executors.newFixedThreadPool(parallel);
 
         for (int i = 0; i < catalog.size(); i++) {
             JsonObject song = catalog.get(i).getAsJsonObject();
+            pool.submit(() -> {
+                int slot = slots.take();
+                try {
+                    syncSong(song, slot, parityBlock, progress);
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("[SYNC] Canción " + song.get("id") + ": " + e);
+                    progress.failed.incrementAndGet();
+                } finally {
+                    slots.add(slot);
+                }
+                return null;
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        reporter.shutdownNow();
+        server.close();
+        serverThread.join();
 
-            int songId = song.get("id").getAsInt();
-            String title = song.get("titulo").getAsString();
-            String artist = song.get("artista").getAsString();
-            String mp3Name = song.get("archivo").getAsString();
-            String coverName = song.get("cover").getAsString();
-            String filePath = "musicSender/" + mp3Name;
-
-            System.out.println();
-            System.out.println("[SYNC] ***** Canción ID=" + songId + " *****");
-            System.out.println("       title: " + title);
-            System.out.println("       artist: " + artist);
-            System.out.println("       source file: " + filePath);
-            System.out.println("       dest mp3_name: " + mp3Name);
-            System.out.println("       cover: " + coverName);
-
-            // Lanzar Sender
-            ProcessBuilder senderPb = new ProcessBuilder(
-                    "mvn", "exec:java",
-                    "-Dexec.mainClass=udp.Sender",
-                    "-Dexec.args=" + filePath
-            );
-            senderPb.directory(new File(BASE_DIR));
-            senderPb.inheritIO();
-            Process senderProc = senderPb.start();
-
-            // Esperar un poco
-            Thread.sleep(200);
-
-            // Lanzar Receiver
-            ProcessBuilder receiverPb = new ProcessBuilder(
-                    "mvn", "exec:java",
-                    "-Dexec.mainClass=udp.Receiver",
-                    "-Dexec.args=--listen-port 6000 --sender-ip 127.0.0.1 --sender-port 5000 " +
-                            "--song-id " + songId + " " +
-                            "--title " + title + " " +
-                            "--artist " + artist + " " +
-                            "--mp3-name " + mp3Name + " " +
-                            "--cover-name " + coverName
-            );
-            receiverPb.directory(new File(BASE_DIR));
-            receiverPb.inheritIO();
-            Process receiverProc = receiverPb.start();
-
-            // Esperar a que terminen
-            int receiverRet = receiverProc.waitFor();
-            int senderRet = senderProc.waitFor();
-
-            System.out.println("[SYNC] receiver terminó con " + receiverRet + ", sender terminó con " + senderRet);
-            System.out.println("[SYNC] Canción ID=" + songId + " terminada y registrada.\n");
+        progress.report();
+        System.out.println("[SYNC] TODAS LAS CANCIONES LISTAS (" + progress.skipped + " ya estaban al día, "
+                + progress.failed + " fallaron)");
+    }
+
+    private static void syncSong(JsonObject song, int slot, int fec, Progress progress) throws IOException {
+        int songId = song.get("id").getAsInt();
+        String title = song.get("titulo").getAsString();
+        String artist = song.get("artista").getAsString();
+        String mp3Name = song.get("archivo").getAsString();
+        String coverName = song.get("cover").getAsString();
+        String filePath = "musicSender/" + mp3Name;
+
+        System.out.println("[SYNC] ***** Canción ID=" + songId + " (" + title + " - " + artist + ", "
+                + filePath + " -> " + mp3Name + ", cover " + coverName + ") *****");
+
+        // Mismo tamaño y mismo SHA-256 en los dos lados: no hace falta transferir
+        Path source = Paths.get(BASE_DIR, filePath);
+        if (upToDate(source, Paths.get(BASE_DIR, "musicReceiver", mp3Name))) {
+            System.out.println("[SYNC] Canción ID=" + songId + " sin cambios, se omite.");
+            progress.skipped.incrementAndGet();
+            return;
         }
 
-        System.out.println("[SYNC] TODAS LAS CANCIONES LISTAS");
+        boolean ok = false;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !ok; attempt++) {
+            if (attempt > 1) System.out.println("[SYNC] Canción ID=" + songId + ": reintento " + attempt + " (continúa donde se quedó)");
+            ok = transfer(slot, fec, songId, title, artist, mp3Name, coverName);
+        }
+        if (!ok) {
+            System.out.println("[SYNC] Canción ID=" + songId + " falló después de " + MAX_ATTEMPTS + " intentos");
+            progress.failed.incrementAndGet();
+            return;
+        }
+        progress.done.incrementAndGet();
+        progress.bytes.addAndGet(Files.size(source));
+        System.out.println("[SYNC] Canción ID=" + songId + " terminada y registrada.");
+    }
+
+    /**
+     * Un intento de transferencia desde el puerto del slot; true si el Receiver registró la canción
+     */
+    private static boolean transfer(int slot, int fec, int songId, String title, String artist,
+                                    String mp3Name, String coverName) {
+        try {
+            Receiver receiver = new Receiver(RECEIVER_BASE_PORT + slot, "127.0.0.1", SENDER_PORT,
+                    songId, title, artist, mp3Name, coverName, new Receiver.Options().fec(fec));
+            receiver.receive();
+            return true;
+        } catch (IOException e) {
+            System.out.println("[SYNC] Receiver de la canción ID=" + songId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * true si el destino ya es idéntico al origen (primero el tamaño, que es gratis, y luego SHA-256).
+     * Si cambió, el Receiver pide el manifiesto al Sender y solo se envían los bloques distintos
+     */
+    private static boolean upToDate(Path source, Path dest) throws IOException {
+        if (!Files.exists(source) || !Files.exists(dest)) return false;
+        if (Files.size(source) != Files.size(dest)) return false;
+        return Manifest.sha256(source).equals(Manifest.sha256(dest));
+    }
+
+    // Progreso de todo el catálogo (lo actualizan los hilos del pool)
+    private static final class Progress {
+        final int total;
+        final long start = System.nanoTime();
+        final AtomicInteger done = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicLong bytes = new AtomicLong();
+
+        Progress(int total) {
+            this.total = total;
+        }
+
+        void report() {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double mb = bytes.get() / 1e6;
+            System.out.println(String.format("[SYNC] Progreso: %d/%d canciones (%d transferidas, %d al día, %d fallidas), "
+                            + "%.1f MB sincronizados en %.0f s (%.1f MB/s)",
+                    done.get() + skipped.get() + failed.get(), total, done.get(), skipped.get(), failed.get(),
+                    mb, seconds, mb / Math.max(seconds, 1e-3)));
+        }
     }
-}
\ No newline at end of file
+}